@@ -0,0 +1,158 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.CompressedFastHashtable;
+import fastHashtable.FastHashtable;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class CompressedFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Test put, containsKey & get against a FastHashtable. keys are put in
+	 * random order so new keys land before, between and after the packed
+	 * values of their block, and existing keys are overwritten.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 18;
+			CompressedFastHashtable cft = new CompressedFastHashtable(N);
+			FastHashtable ft = new FastHashtable(N);
+			Random rand = new Random(17);
+			for (int i = 0; i < N / 2; ++i) {
+				int key = rand.nextInt(N);
+				long value = rand.nextLong();
+				cft.put(key, value);
+				ft.put(key, value);
+			}
+			assert cft.size() == ft.size();
+			long[] a = new long[2];
+			long[] b = new long[2];
+			for (int key = 0; key < N; ++key) {
+				assert cft.containsKey(key) == ft.containsKey(key);
+				assert cft.get(key, a) == ft.get(key, b);
+				if (ft.containsKey(key)) {
+					assert a[1] == b[1];
+				}
+			}
+			assert !cft.containsKey(-1);
+			assert !cft.get(cft.maxKey() + 1, a);
+			return true;
+		}
+	}
+
+	/*
+	 * Test growing the table far past its initial capacity.
+	 */
+	public class TestGrow extends TestAbstract {
+		public boolean run() {
+			CompressedFastHashtable cft = new CompressedFastHashtable();
+			int k = cft.maxSize();
+			cft.put(1, 1);
+			cft.put(100 * k, 2);
+			assert cft.maxKey() >= 100 * k;
+			assert cft.size() == 2;
+			long[] r = new long[2];
+			assert cft.get(1, r) && r[1] == 1;
+			assert cft.get(100 * k, r) && r[1] == 2;
+			try {
+				cft.put(-1, -1);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * the string form matches FastHashtable's for keys in ascending order.
+	 */
+	public class TestToString extends TestAbstract {
+		public boolean run() {
+			CompressedFastHashtable cft = new CompressedFastHashtable();
+			FastHashtable ft = new FastHashtable();
+			for (int i = 14; i >= 0; i -= 2) {
+				cft.put(i, i);
+				ft.put(i, i);
+			}
+			assert cft.toString().equals(ft.toString());
+			return true;
+		}
+	}
+
+	/*
+	 * 1M entries spread over a 64M key space.
+	 */
+	public class TestMemory extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 26;
+			CompressedFastHashtable cft = new CompressedFastHashtable();
+			for (int key = 0; key < N; key += 64) {
+				cft.put(key, key);
+			}
+			long bytes = cft.getMemoryUsage();
+			System.out.println(this.getClass().getName() + ":memory usage:\t"
+					+ bytes + " bytes for " + cft.size() + " entries");
+			assert bytes < 32L * cft.size();
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestGrow());
+		tests.add(new TestToString());
+		tests.add(new TestMemory());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		CompressedFastHashtableTest test = new CompressedFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
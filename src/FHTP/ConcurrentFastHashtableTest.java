@@ -0,0 +1,170 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.ConcurrentFastHashtable;
+import fastHashtable.IntLongConsumer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Test put, containsKey & get on a single thread.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			ConcurrentFastHashtable cft = new ConcurrentFastHashtable();
+			long[] r = new long[2];
+			assert !cft.containsKey(0);
+			assert !cft.get(Integer.MAX_VALUE, r);
+			cft.put(0, 1);
+			cft.put(Integer.MAX_VALUE, 2);
+			cft.put(0, 3);
+			assert cft.size() == 2;
+			assert cft.get(0, r) && r[1] == 3;
+			assert cft.get(Integer.MAX_VALUE, r) && r[1] == 2;
+			assert !cft.containsKey(-1);
+			try {
+				cft.put(-1, -1);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Writers put overlapping key ranges while readers check every key they
+	 * find. the value of a key is a function of the key, so a reader that
+	 * sees a bit before its value was published sees a wrong value.
+	 */
+	public class TestStress extends TestAbstract {
+		public boolean run() {
+			final int WRITERS = 4;
+			final int READERS = 4;
+			final int N = 1 << 21;
+			final ConcurrentFastHashtable cft = new ConcurrentFastHashtable();
+			final AtomicInteger errors = new AtomicInteger();
+			final AtomicInteger writersDone = new AtomicInteger();
+
+			Thread[] threads = new Thread[WRITERS + READERS];
+			for (int t = 0; t < WRITERS; ++t) {
+				final int offset = t * (N / (2 * WRITERS));
+				threads[t] = new Thread() {
+					public void run() {
+						/*
+						 * each writer covers N/2 keys, half of them shared
+						 * with the next writer.
+						 */
+						for (int i = 0; i < N / 2; ++i) {
+							int key = (offset + i) % N * 3;
+							cft.put(key, ~(long) key);
+						}
+						writersDone.incrementAndGet();
+					}
+				};
+			}
+			for (int t = WRITERS; t < threads.length; ++t) {
+				final int seed = t;
+				threads[t] = new Thread() {
+					public void run() {
+						long[] r = new long[2];
+						java.util.Random rand = new java.util.Random(seed);
+						while (writersDone.get() < WRITERS) {
+							int key = rand.nextInt(3 * N);
+							if (cft.get(key, r)) {
+								if (r[1] != ~(long) key || key % 3 != 0) {
+									errors.incrementAndGet();
+								}
+							}
+						}
+					}
+				};
+			}
+			for (Thread t : threads) {
+				t.start();
+			}
+			for (Thread t : threads) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					assert false;
+				}
+			}
+			assert errors.get() == 0;
+
+			final int expected = (WRITERS - 1) * (N / (2 * WRITERS)) + N / 2;
+			assert cft.size() == expected;
+			final BitSet seen = new BitSet();
+			cft.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					assert p_value == ~(long) p_key;
+					seen.set(p_key);
+				}
+			});
+			assert seen.cardinality() == cft.size();
+			long[] r = new long[2];
+			for (int i = 0; i < 3 * N; ++i) {
+				assert cft.get(i, r) == seen.get(i);
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestStress());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		ConcurrentFastHashtableTest test = new ConcurrentFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
@@ -6,6 +6,8 @@
 package FHTP;
 
 import fastHashtable.FastHashtable;
+import fastHashtable.FastHashtableMetrics;
+import fastHashtable.IntLongConsumer;
 
 import java.util.ArrayList;
 
@@ -62,6 +64,80 @@ public class FHTest {
 		}
 	}
 
+	/*
+	 * Test growing the table by more than one doubling in a single put.
+	 */
+	public class TestGrowMany extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			int k = ft.maxSize();
+			for (int i = 0; i < 1024; ++i) {
+				ft.put(i, -i);
+			}
+			ft.put(8 * k, 8 * k);
+			assert ft.maxSize() == 16 * k;
+			assert ft.size() == 1025;
+			long[] r = new long[2];
+			for (int i = 0; i < 1024; ++i) {
+				assert ft.get(i, r);
+				assert r[1] == -i;
+			}
+			assert ft.get(8 * k, r);
+			assert r[1] == 8 * k;
+			return true;
+		}
+	}
+
+	/*
+	 * Test incremental growth. keys are put in a scrambled order so that
+	 * lookups hit both split and not yet split buckets while a growth is
+	 * pending.
+	 */
+	public class TestIncrementalGrowth extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			ft.setIncrementalGrowth(true);
+			final int N = 1 << 20;
+			long[] r = new long[2];
+			for (int i = 0; i < N; ++i) {
+				int key = (int) ((i * 0x9E3779B1L) & (N - 1));
+				ft.put(key, key + 1);
+				if ((i & 1023) == 0) {
+					int[] batch = new int[i / 97 + 1];
+					for (int j = 0; j <= i; j += 97) {
+						int old = (int) ((j * 0x9E3779B1L) & (N - 1));
+						assert ft.get(old, r);
+						assert r[1] == old + 1;
+						batch[j / 97] = old;
+					}
+					/*
+					 * the batch lookups must see the old buckets too, without
+					 * finishing the growth.
+					 */
+					long memory = ft.getMemoryUsage();
+					long[] values = new long[batch.length];
+					java.util.BitSet found = new java.util.BitSet();
+					assert ft.getAll(batch, values, found) == batch.length;
+					for (int n = 0; n < batch.length; ++n) {
+						assert values[n] == batch[n] + 1;
+					}
+					assert ft.containsAll(batch, found) == batch.length;
+					assert ft.containsAll(batch);
+					assert ft.getMemoryUsage() == memory;
+				}
+			}
+			assert ft.size() == N;
+			assert ft.maxSize() == N;
+			for (int key = 0; key < N; ++key) {
+				assert ft.containsKey(key);
+				assert ft.get(key, r);
+				assert r[1] == key + 1;
+			}
+			assert !ft.containsKey(N);
+			return true;
+		}
+	}
+
 	/*
 	 * Test put & containsKey
 	 */
@@ -200,6 +276,614 @@ public class FHTest {
 		}
 	}
 
+	/*
+	 * Test forEach, keys, values and the cursor against the keys that were
+	 * put.
+	 */
+	public class TestIteration extends TestAbstract {
+		public boolean run() {
+			final FastHashtable ft = new FastHashtable();
+			final java.util.BitSet expected = new java.util.BitSet();
+			for (int i = 0; i < 200000; i += 3) {
+				ft.put(i, 2L * i);
+				expected.set(i);
+			}
+
+			final java.util.BitSet seen = new java.util.BitSet();
+			ft.forEach(new fastHashtable.IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					assert !seen.get(p_key);
+					assert p_value == 2L * p_key;
+					seen.set(p_key);
+				}
+			});
+			assert seen.equals(expected);
+
+			int[] keys = ft.keys();
+			long[] values = ft.values();
+			assert keys.length == ft.size();
+			assert values.length == ft.size();
+
+			FastHashtable.Cursor c = ft.cursor();
+			for (int pass = 0; pass < 2; ++pass) {
+				int n = 0;
+				while (c.hasNext()) {
+					int key = c.nextKey();
+					assert key == keys[n];
+					assert c.value() == values[n];
+					assert values[n] == 2L * key;
+					++n;
+				}
+				assert n == ft.size();
+				c.reset();
+			}
+
+			assert !new FastHashtable().cursor().hasNext();
+			assert new FastHashtable().keys().length == 0;
+			return true;
+		}
+	}
+
+	/*
+	 * Test putAll, getAll and containsAll against per-key put and get, on a
+	 * power of 2 bucket count and on one that is not.
+	 */
+	public class TestBatch extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 16;
+			java.util.Random rand = new java.util.Random(11);
+			int[] keys = new int[N];
+			long[] values = new long[N];
+			for (int n = 0; n < N; ++n) {
+				keys[n] = rand.nextInt(4 * N);
+				values[n] = rand.nextLong();
+			}
+			for (FastHashtable ft : new FastHashtable[] { new FastHashtable(),
+					new FastHashtable(1000) }) {
+				FastHashtable expected = new FastHashtable();
+				for (int n = 0; n < N; ++n) {
+					expected.put(keys[n], values[n]);
+				}
+				ft.putAll(keys, values);
+				assert ft.size() == expected.size();
+
+				int[] probe = new int[8 * N];
+				for (int n = 0; n < probe.length; ++n) {
+					probe[n] = rand.nextInt(8 * N) - N;
+				}
+				long[] result = new long[probe.length];
+				java.util.BitSet found = new java.util.BitSet();
+				java.util.BitSet contained = new java.util.BitSet();
+				found.set(0, probe.length);
+				int hits = ft.getAll(probe, result, found);
+				assert hits == ft.containsAll(probe, contained);
+				assert found.equals(contained);
+				assert hits == found.cardinality();
+				long[] r = new long[2];
+				for (int n = 0; n < probe.length; ++n) {
+					assert found.get(n) == expected.get(probe[n], r);
+					if (found.get(n)) {
+						assert result[n] == r[1];
+					}
+				}
+				assert ft.containsAll(keys);
+				assert !ft.containsAll(new int[] { keys[0], -1 });
+			}
+			try {
+				new FastHashtable().putAll(new int[] { 1, -1 }, new long[2]);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test signed keys: negative keys behave like positive ones in put, get,
+	 * the batch methods and iteration.
+	 */
+	public class TestSignedKeys extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			assert !ft.setSignedKeys(true);
+			int count = 0;
+			for (int key = -100000; key < 100000; key += 3) {
+				ft.put(key, 5L * key);
+				++count;
+			}
+			assert ft.size() == count;
+			long[] r = new long[2];
+			for (int key = -100002; key < 100002; ++key) {
+				boolean expected = (key + 100000) % 3 == 0 && key >= -100000 && key < 100000;
+				assert ft.containsKey(key) == expected;
+				assert ft.get(key, r) == expected;
+				if (expected) {
+					assert r[1] == 5L * key;
+				}
+			}
+			assert !ft.containsKey(Integer.MIN_VALUE);
+
+			int[] keys = ft.keys();
+			long[] values = ft.values();
+			assert keys.length == count;
+			FastHashtable.Cursor c = ft.cursor();
+			for (int n = 0; n < count; ++n) {
+				assert c.nextKey() == keys[n];
+				assert c.value() == values[n];
+				assert values[n] == 5L * keys[n];
+			}
+			assert !c.hasNext();
+
+			FastHashtable batch = new FastHashtable();
+			batch.setSignedKeys(true);
+			batch.putAll(keys, values);
+			assert batch.size() == count;
+			java.util.BitSet found = new java.util.BitSet();
+			long[] result = new long[keys.length];
+			assert batch.getAll(keys, result, found) == count;
+			assert java.util.Arrays.equals(result, values);
+			assert batch.containsAll(keys);
+			assert !batch.containsAll(new int[] { -1, -2 });
+
+			FastHashtable small = new FastHashtable();
+			small.setSignedKeys(true);
+			small.put(2, 2);
+			small.put(-3, -3);
+			small.put(0, 0);
+			small.put(-1, -1);
+			assert small.toString().equals("((-3,-3)(-1,-1)(0,0)(2,2))");
+
+			try {
+				small.setSignedKeys(false);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			FastHashtable positive = new FastHashtable();
+			positive.setSignedKeys(true);
+			positive.put(1, 1);
+			assert positive.setSignedKeys(false);
+			assert !positive.containsKey(-1);
+			return true;
+		}
+	}
+
+	/*
+	 * Test addTo, getOrDefault, putIfAbsent and merge, including keys in
+	 * buckets that a pending incremental growth has not split yet.
+	 */
+	public class TestCounters extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			ft.setIncrementalGrowth(true);
+			ft.setSignedKeys(true);
+			final int N = 100000;
+			for (int n = 0; n < 3; ++n) {
+				for (int key = -N; key < N; key += 7) {
+					assert ft.addTo(key, key) == (long) n * key;
+				}
+			}
+			long[] r = new long[2];
+			for (int key = -N; key < N; ++key) {
+				long expected = (key + N) % 7 == 0 ? 3L * key : -1;
+				assert ft.getOrDefault(key, -1) == expected;
+				assert ft.get(key, r) == (expected != -1);
+			}
+			assert ft.getOrDefault(Integer.MAX_VALUE, 42) == 42;
+
+			FastHashtable counts = new FastHashtable();
+			counts.setIncrementalGrowth(true);
+			for (int key = 0; key < 4096; ++key) {
+				counts.put(key, key);
+			}
+			// grow, then ask for keys of buckets that are not split yet.
+			counts.put(1 << 20, 0);
+			for (int key = 0; key < 4096; ++key) {
+				assert counts.getOrDefault(key, -1) == key;
+			}
+			assert !counts.putIfAbsent(5, 0);
+			assert counts.putIfAbsent(5000, 1);
+			assert counts.getOrDefault(5000, 0) == 1;
+			assert counts.size() == 4098;
+
+			java.util.function.LongBinaryOperator max = new java.util.function.LongBinaryOperator() {
+				public long applyAsLong(long p_left, long p_right) {
+					return Math.max(p_left, p_right);
+				}
+			};
+			assert counts.merge(7, 3, max) == 7;
+			assert counts.merge(7, 30, max) == 30;
+			assert counts.merge(6000, 9, max) == 9;
+			assert counts.size() == 4099;
+			assert counts.getOrDefault(7, 0) == 30;
+
+			try {
+				counts.addTo(-1, 1);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test nextKey, prevKey, forEachInRange and countInRange against a
+	 * TreeMap holding the same keys, with signed keys and a growth pending.
+	 */
+	public class TestRange extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			ft.setSignedKeys(true);
+			ft.setIncrementalGrowth(true);
+			java.util.TreeMap<Integer, Long> expected = new java.util.TreeMap<Integer, Long>();
+			java.util.Random rand = new java.util.Random(29);
+			for (int n = 0; n < 20000; ++n) {
+				int key = rand.nextInt(400000) - 100000;
+				ft.put(key, 3L * key);
+				expected.put(key, 3L * key);
+			}
+			assert ft.nextKey(Integer.MIN_VALUE) == expected.firstKey();
+			assert ft.prevKey(Integer.MAX_VALUE) == expected.lastKey();
+			assert ft.nextKey(expected.lastKey() + 1) == FastHashtable.NO_KEY;
+			assert ft.prevKey(expected.firstKey() - 1) == FastHashtable.NO_KEY;
+			for (int n = 0; n < 2000; ++n) {
+				int lo = rand.nextInt(440000) - 120000;
+				int hi = lo + (n % 2 == 0 ? rand.nextInt(100) : rand.nextInt(200000));
+				Integer next = expected.ceilingKey(lo);
+				Integer prev = expected.floorKey(lo);
+				assert ft.nextKey(lo) == (next == null ? FastHashtable.NO_KEY : next);
+				assert ft.prevKey(lo) == (prev == null ? FastHashtable.NO_KEY : prev);
+
+				final java.util.Iterator<java.util.Map.Entry<Integer, Long>> it =
+						expected.subMap(lo, hi).entrySet().iterator();
+				ft.forEachInRange(lo, hi, new IntLongConsumer() {
+					public void accept(int p_key, long p_value) {
+						java.util.Map.Entry<Integer, Long> e = it.next();
+						assert e.getKey() == p_key;
+						assert e.getValue() == p_value;
+					}
+				});
+				assert !it.hasNext();
+				assert ft.countInRange(lo, hi) == expected.subMap(lo, hi).size();
+			}
+			assert ft.countInRange(Integer.MIN_VALUE, Integer.MAX_VALUE) == ft.size();
+			assert ft.countInRange(5, 5) == 0;
+
+			FastHashtable unsigned = new FastHashtable();
+			unsigned.put(70000, 1);
+			assert unsigned.nextKey(-5) == 70000;
+			assert unsigned.prevKey(69999) == FastHashtable.NO_KEY;
+			assert unsigned.countInRange(-5, 1 << 30) == 1;
+			return true;
+		}
+	}
+
+	/*
+	 * true if p_ft holds exactly the entries of p_expected.
+	 */
+	private boolean same(FastHashtable p_ft, java.util.Map<Integer, Long> p_expected) {
+		long[] r = new long[2];
+		for (java.util.Map.Entry<Integer, Long> e : p_expected.entrySet()) {
+			if (!p_ft.get(e.getKey(), r) || r[1] != e.getValue()) {
+				return false;
+			}
+		}
+		return p_ft.size() == p_expected.size();
+	}
+
+	/*
+	 * Test intersectKeys, unionKeys, andNot and intersect for tables with the
+	 * same bucket count, combined word by word, and with different bucket
+	 * counts, combined by probing.
+	 */
+	public class TestSetAlgebra extends TestAbstract {
+		public boolean run() {
+			java.util.Random rand = new java.util.Random(37);
+			FastHashtable a = new FastHashtable();
+			FastHashtable b = new FastHashtable();
+			FastHashtable c = new FastHashtable(3000);
+			a.setSignedKeys(true);
+			b.setSignedKeys(true);
+			java.util.TreeMap<Integer, Long> ma = new java.util.TreeMap<Integer, Long>();
+			java.util.TreeMap<Integer, Long> mb = new java.util.TreeMap<Integer, Long>();
+			for (int n = 0; n < 20000; ++n) {
+				int key = rand.nextInt(100000) - 20000;
+				a.put(key, key);
+				ma.put(key, (long) key);
+				key = rand.nextInt(100000) - 20000;
+				b.put(key, -key);
+				mb.put(key, (long) -key);
+				if (key >= 0) {
+					c.put(key, -key);
+				}
+			}
+			java.util.TreeMap<Integer, Long> and = new java.util.TreeMap<Integer, Long>();
+			java.util.TreeMap<Integer, Long> or = new java.util.TreeMap<Integer, Long>(mb);
+			java.util.TreeMap<Integer, Long> andNot = new java.util.TreeMap<Integer, Long>();
+			for (java.util.Map.Entry<Integer, Long> e : ma.entrySet()) {
+				or.put(e.getKey(), e.getValue());
+				(mb.containsKey(e.getKey()) ? and : andNot).put(e.getKey(), e.getValue());
+			}
+			assert same(a.intersectKeys(b), and);
+			assert same(a.unionKeys(b), or);
+			assert same(a.andNot(b), andNot);
+
+			final java.util.TreeMap<Integer, Long> joined = new java.util.TreeMap<Integer, Long>();
+			a.intersect(b, new fastHashtable.IntLongLongConsumer() {
+				public void accept(int p_key, long p_left, long p_right) {
+					assert p_left == p_key && p_right == -p_key;
+					assert joined.put(p_key, p_left) == null;
+				}
+			});
+			assert joined.equals(and);
+
+			// c has no negative keys and another bucket count.
+			java.util.SortedMap<Integer, Long> positive = and.tailMap(0);
+			assert same(a.intersectKeys(c), positive);
+			java.util.TreeMap<Integer, Long> cOr = new java.util.TreeMap<Integer, Long>(mb.tailMap(0));
+			cOr.putAll(ma);
+			assert same(a.unionKeys(c), cOr);
+			java.util.TreeMap<Integer, Long> cAndNot = new java.util.TreeMap<Integer, Long>(andNot);
+			cAndNot.putAll(and.headMap(0));
+			assert same(a.andNot(c), cAndNot);
+			final int[] count = { 0 };
+			a.intersect(c, new fastHashtable.IntLongLongConsumer() {
+				public void accept(int p_key, long p_left, long p_right) {
+					assert p_key >= 0 && p_left == p_key && p_right == -p_key;
+					++count[0];
+				}
+			});
+			assert count[0] == positive.size();
+			assert c.unionKeys(a).containsKey(-1) == ma.containsKey(-1);
+			return true;
+		}
+	}
+
+	/*
+	 * Test the metrics gauges and the JMX registration, and the counters when
+	 * the JVM runs with -DfastHashtable.metrics=true.
+	 */
+	public class TestMetrics extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable();
+			ft.setSignedKeys(true);
+			int k = ft.maxSize();
+			for (int key = -10; key < k; ++key) {
+				ft.put(key, key);
+			}
+			ft.put(k, k);
+			long[] r = new long[2];
+			for (int key = -20; key < 20; ++key) {
+				ft.get(key, r);
+			}
+			ft.containsKey(3 * k);
+			FastHashtableMetrics m = ft.getMetrics();
+			assert m.getSize() == k + 11;
+			assert m.getCapacity() == 2 * k;
+			assert m.getOccupancy() > 0.5 && m.getOccupancy() < 0.51;
+			assert m.getMemoryUsage() > 8L * m.getCapacity();
+			assert m.getPageCount() == 1;
+			if (FastHashtableMetrics.ENABLED) {
+				assert m.getPuts() == k + 11;
+				assert m.getGets() == 41;
+				assert m.getHits() == 30;
+				assert m.getMisses() == 11;
+				assert m.getRehashes() == 1;
+				assert m.getRehashNanos() > 0;
+			} else {
+				assert m.getPuts() == 0 && m.getGets() == 0 && m.getRehashes() == 0;
+			}
+			try {
+				javax.management.ObjectName name = m.register("FHTest");
+				javax.management.MBeanServer server =
+						java.lang.management.ManagementFactory.getPlatformMBeanServer();
+				assert server.getAttribute(name, "Size").equals(k + 11);
+				assert server.getAttribute(name, "Enabled").equals(FastHashtableMetrics.ENABLED);
+				FastHashtableMetrics.unregister(name);
+				assert !server.isRegistered(name);
+			} catch (javax.management.JMException e) {
+				assert false : e;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test writeTo and readFrom: two tables and trailing data on one stream,
+	 * values of every size, a table spanning many chunks, and broken streams.
+	 */
+	public class TestSerialization extends TestAbstract {
+		public boolean run() {
+			try {
+				FastHashtable a = new FastHashtable();
+				a.setSignedKeys(true);
+				a.setIncrementalGrowth(true);
+				java.util.Random rand = new java.util.Random(43);
+				for (int n = 0; n < 1 << 18; ++n) {
+					a.put(rand.nextInt(1 << 22) - (1 << 20), rand.nextLong() >> rand.nextInt(64));
+				}
+				a.put(1, Long.MIN_VALUE);
+				a.put(2, Long.MAX_VALUE);
+				a.put(1 << 23, 0);
+				FastHashtable b = new FastHashtable(100);
+				b.put(99, -1);
+
+				java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+				java.nio.channels.WritableByteChannel out = java.nio.channels.Channels.newChannel(bytes);
+				a.writeTo(out);
+				b.writeTo(out);
+				bytes.write(42);
+				byte[] stream = bytes.toByteArray();
+				// at most 10 bytes per value plus the bucket words.
+				assert stream.length < 10L * a.size() + (a.maxSize() >> 3) + (1 << 16);
+
+				java.io.ByteArrayInputStream input = new java.io.ByteArrayInputStream(stream);
+				java.nio.channels.ReadableByteChannel in = java.nio.channels.Channels.newChannel(input);
+				FastHashtable a2 = FastHashtable.readFrom(in);
+				FastHashtable b2 = FastHashtable.readFrom(in);
+				assert input.read() == 42;
+				assert a2.size() == a.size();
+				assert java.util.Arrays.equals(a2.keys(), a.keys());
+				assert java.util.Arrays.equals(a2.values(), a.values());
+				assert a2.toString().equals(a.toString());
+				assert b2.toString().equals("((99,-1))");
+				assert b2.maxSize() == b.maxSize();
+
+				try {
+					FastHashtable.readFrom(java.nio.channels.Channels.newChannel(
+							new java.io.ByteArrayInputStream(stream, 0, stream.length / 2)));
+					assert false;
+				} catch (java.io.EOFException e) {
+
+				}
+				stream[4] ^= 1;
+				try {
+					FastHashtable.readFrom(java.nio.channels.Channels.newChannel(
+							new java.io.ByteArrayInputStream(stream)));
+					assert false;
+				} catch (java.io.IOException e) {
+					assert !(e instanceof java.io.EOFException);
+				}
+			} catch (java.io.IOException e) {
+				assert false : e;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test that a snapshot keeps its view while the table is written and
+	 * grows, and that released snapshots are empty.
+	 */
+	public class TestSnapshot extends TestAbstract {
+		public boolean run() {
+			final FastHashtable a = new FastHashtable();
+			a.setSignedKeys(true);
+			a.setIncrementalGrowth(true);
+			java.util.Random rand = new java.util.Random(47);
+			for (int n = 0; n < 1 << 14; ++n) {
+				a.put(rand.nextInt(1 << 16) - (1 << 12), n);
+			}
+			final FastHashtable s1 = a.snapshot();
+			final String before = a.toString();
+			assert s1.isSnapshot() && !a.isSnapshot();
+			assert s1.toString().equals(before);
+
+			// every kind of write, and a growth that splits the shared rows.
+			a.put(5, -5);
+			a.addTo(6, 1);
+			a.putIfAbsent(7, 7);
+			a.merge(8, 2, new java.util.function.LongBinaryOperator() {
+				public long applyAsLong(long p_a, long p_b) {
+					return p_a * p_b;
+				}
+			});
+			a.putAll(new int[] { 9, -9, 1 << 20 }, new long[] { 9, -9, 1 << 20 });
+			a.put(-100000, 1);
+			for (int n = 0; n < 1 << 12; ++n) {
+				a.put(rand.nextInt(1 << 21), -n);
+			}
+			assert s1.toString().equals(before);
+			assert a.containsKey(1 << 20) && !s1.containsKey(1 << 20);
+			assert a.size() > s1.size();
+
+			final FastHashtable s2 = a.snapshot();
+			final FastHashtable s3 = s2.snapshot();
+			final String middle = a.toString();
+			a.put(5, 55);
+			a.put(-5, 55);
+			assert s2.toString().equals(middle) && s3.toString().equals(middle);
+			assert s1.toString().equals(before);
+
+			try {
+				s2.put(1, 1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			try {
+				s2.put(-1, 1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			try {
+				a.release();
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+
+			// a reader sees the same view while the table is written.
+			final boolean[] same = { true };
+			Thread reader = new Thread() {
+				public void run() {
+					for (int n = 0; n < 20; ++n) {
+						same[0] &= s2.toString().equals(middle);
+					}
+				}
+			};
+			reader.start();
+			for (int n = 0; n < 1 << 16; ++n) {
+				a.put(rand.nextInt(1 << 22) - (1 << 21), n);
+			}
+			try {
+				reader.join();
+			} catch (InterruptedException e) {
+				assert false;
+			}
+			assert same[0];
+
+			s1.release();
+			s1.release();
+			assert s1.size() == 0 && !s1.containsKey(5) && s1.toString().equals("()");
+			s2.release();
+			s3.release();
+			long[] r = new long[2];
+			a.put(5, 555);
+			assert a.get(5, r) && r[1] == 555;
+			assert a.get(-5, r) && r[1] == 55;
+			return true;
+		}
+	}
+
+	/*
+	 * Test remove, also while a growth is pending and with a snapshot.
+	 */
+	public class TestRemove extends TestAbstract {
+		public boolean run() {
+			FastHashtable ft = new FastHashtable(64);
+			ft.setSignedKeys(true);
+			ft.setIncrementalGrowth(true);
+			for (int key = -100; key < 5000; ++key) {
+				ft.put(key, key);
+			}
+			FastHashtable view = ft.snapshot();
+			for (int key = -100; key < 5000; key += 2) {
+				assert ft.remove(key);
+				assert !ft.remove(key);
+			}
+			assert !ft.remove(5000) && !ft.remove(Integer.MAX_VALUE);
+			assert ft.size() == 2550 && view.size() == 5100;
+			for (int key = -100; key < 5000; ++key) {
+				assert ft.containsKey(key) == ((key & 1) != 0);
+				assert view.containsKey(key);
+			}
+			try {
+				view.remove(1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			view.release();
+			ft.put(0, 7);
+			assert ft.size() == 2551 && ft.getOrDefault(0, -1) == 7;
+			return true;
+		}
+	}
+
 	/*
 	 * Returns the list of unit tests to run. Add new tests here.
 	 */
@@ -208,11 +892,23 @@ public class FHTest {
 		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
 
 		tests.add(new TestGrow());
+		tests.add(new TestGrowMany());
+		tests.add(new TestIncrementalGrowth());
 		tests.add(new TestPut());
 		tests.add(new TestCollision());
 		tests.add(new TestForMissingKey());
 		tests.add(new TestInvalidKey());
 		tests.add(new TestToString());
+		tests.add(new TestIteration());
+		tests.add(new TestBatch());
+		tests.add(new TestSignedKeys());
+		tests.add(new TestCounters());
+		tests.add(new TestRange());
+		tests.add(new TestSetAlgebra());
+		tests.add(new TestMetrics());
+		tests.add(new TestSerialization());
+		tests.add(new TestSnapshot());
+		tests.add(new TestRemove());
 
 		return tests;
 
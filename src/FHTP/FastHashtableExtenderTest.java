@@ -0,0 +1,757 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.FastHashtableExtender;
+import fastHashtable.FastHashtableMetrics;
+import fastHashtable.IntLongConsumer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+public class FastHashtableExtenderTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Fill pages 0, 2 and 5, leaving pages 1, 3 and 4 empty.
+	 */
+	private FastHashtableExtender sample(BitSet p_expected) {
+		FastHashtableExtender fte = new FastHashtableExtender();
+		int[] pages = {0, 2, 5};
+		for (int p : pages) {
+			for (int i = 0; i < (1 << 16); i += 7) {
+				int key = (p << 16) + i;
+				fte.put(key, 3L * key);
+				p_expected.set(key);
+			}
+		}
+		return fte;
+	}
+
+	/*
+	 * Test put, containsKey & get across pages.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			BitSet expected = new BitSet();
+			FastHashtableExtender fte = sample(expected);
+			assert fte.size() == expected.cardinality();
+			long[] r = new long[2];
+			for (int key = 0; key < 6 << 16; ++key) {
+				assert fte.containsKey(key) == expected.get(key);
+				assert fte.get(key, r) == expected.get(key);
+				if (expected.get(key)) {
+					assert r[1] == 3L * key;
+				}
+			}
+			assert !fte.containsKey(6 << 16);
+			return true;
+		}
+	}
+
+	/*
+	 * Test forEach, keys, values and the cursor against the keys that were
+	 * put.
+	 */
+	public class TestIteration extends TestAbstract {
+		public boolean run() {
+			final BitSet expected = new BitSet();
+			FastHashtableExtender fte = sample(expected);
+
+			final BitSet seen = new BitSet();
+			fte.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					assert !seen.get(p_key);
+					assert p_value == 3L * p_key;
+					seen.set(p_key);
+				}
+			});
+			assert seen.equals(expected);
+
+			int[] keys = fte.keys();
+			long[] values = fte.values();
+			assert keys.length == fte.size();
+			assert values.length == fte.size();
+
+			FastHashtableExtender.Cursor c = fte.cursor();
+			for (int pass = 0; pass < 2; ++pass) {
+				int n = 0;
+				while (c.hasNext()) {
+					int key = c.nextKey();
+					assert key == keys[n];
+					assert c.value() == values[n];
+					assert values[n] == 3L * key;
+					++n;
+				}
+				assert n == fte.size();
+				c.reset();
+			}
+
+			assert !new FastHashtableExtender().cursor().hasNext();
+			return true;
+		}
+	}
+
+	/*
+	 * Test putAll, getAll and containsAll against per-key put and get, for
+	 * a batch spread over pages and for a batch within one page.
+	 */
+	public class TestBatch extends TestAbstract {
+		public boolean run() {
+			java.util.Random rand = new java.util.Random(13);
+			for (int range : new int[] { 1 << 16, 1 << 22 }) {
+				final int N = 1 << 18;
+				int[] keys = new int[N];
+				long[] values = new long[N];
+				for (int n = 0; n < N; ++n) {
+					keys[n] = rand.nextInt(range);
+					values[n] = rand.nextLong();
+				}
+				FastHashtableExtender expected = new FastHashtableExtender();
+				for (int n = 0; n < N; ++n) {
+					expected.put(keys[n], values[n]);
+				}
+				FastHashtableExtender fte = new FastHashtableExtender();
+				fte.putAll(keys, values);
+				assert fte.size() == expected.size();
+
+				int[] probe = new int[N];
+				for (int n = 0; n < N; ++n) {
+					probe[n] = rand.nextInt(2 * range) - range / 2;
+				}
+				long[] result = new long[N];
+				BitSet found = new BitSet();
+				BitSet contained = new BitSet();
+				int hits = fte.getAll(probe, result, found);
+				assert hits == fte.containsAll(probe, contained);
+				assert found.equals(contained);
+				long[] r = new long[2];
+				for (int n = 0; n < N; ++n) {
+					assert found.get(n) == expected.get(probe[n], r);
+					if (found.get(n)) {
+						assert result[n] == r[1];
+					}
+				}
+				assert fte.containsAll(keys);
+				assert !fte.containsAll(new int[] { keys[0], -1 });
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test signed keys over the whole int range.
+	 */
+	public class TestSignedKeys extends TestAbstract {
+		public boolean run() {
+			FastHashtableExtender fte = new FastHashtableExtender();
+			assert !fte.setSignedKeys(true);
+			int[] keys = { Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -65537, -65536,
+					-1, 0, 1, 65535, 65536, Integer.MAX_VALUE };
+			long[] values = new long[keys.length];
+			for (int n = 0; n < keys.length; ++n) {
+				values[n] = 7L * keys[n];
+				fte.put(keys[n], values[n]);
+			}
+			assert fte.size() == keys.length;
+			long[] r = new long[2];
+			for (int n = 0; n < keys.length; ++n) {
+				assert fte.containsKey(keys[n]);
+				assert fte.get(keys[n], r) && r[1] == values[n];
+			}
+			assert !fte.containsKey(-2);
+			assert !fte.containsKey(-65535);
+			// every page in ascending key order, with the full keys.
+			String expected = "((" + Integer.MIN_VALUE + "," + 7L * Integer.MIN_VALUE + ")("
+					+ (Integer.MIN_VALUE + 1) + "," + 7L * (Integer.MIN_VALUE + 1) + "))"
+					+ "((-65537," + 7L * -65537 + "))((-65536," + 7L * -65536 + ")(-1,-7))"
+					+ "((0,0)(1,7)(65535," + 7L * 65535 + "))((65536," + 7L * 65536 + "))(("
+					+ Integer.MAX_VALUE + "," + 7L * Integer.MAX_VALUE + "))";
+			assert fte.toString().equals(expected);
+
+			final BitSet seen = new BitSet();
+			int[] exported = fte.keys();
+			long[] exportedValues = fte.values();
+			assert exported.length == keys.length;
+			FastHashtableExtender.Cursor c = fte.cursor();
+			for (int n = 0; n < exported.length; ++n) {
+				assert c.nextKey() == exported[n];
+				assert c.value() == exportedValues[n];
+				assert exportedValues[n] == 7L * exported[n];
+				seen.set(java.util.Arrays.binarySearch(keys, exported[n]));
+			}
+			assert !c.hasNext();
+			assert seen.cardinality() == keys.length;
+
+			FastHashtableExtender batch = new FastHashtableExtender();
+			batch.setSignedKeys(true);
+			batch.putAll(keys, values);
+			assert batch.size() == keys.length;
+			long[] result = new long[keys.length];
+			BitSet found = new BitSet();
+			assert batch.getAll(keys, result, found) == keys.length;
+			assert java.util.Arrays.equals(result, values);
+			assert batch.containsAll(keys);
+
+			try {
+				fte.setSignedKeys(false);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test that an unsigned table rejects negative keys, whether they would
+	 * land in a sparse page or a dense one, and is left unchanged.
+	 */
+	public class TestInvalidKey extends TestAbstract {
+		public boolean run() {
+			FastHashtableExtender fte = new FastHashtableExtender();
+			fte.put(3, 3);
+			int[] keys = { -5, -65536, -65537, Integer.MIN_VALUE };
+			for (int key : keys) {
+				try {
+					fte.put(key, 7);
+					assert false;
+				} catch (ArrayIndexOutOfBoundsException e) {
+
+				}
+				assert !fte.containsKey(key);
+				assert !fte.remove(key);
+			}
+			try {
+				fte.putAll(new int[] { 1, -5 }, new long[] { 1, 7 });
+				assert false;
+			} catch (ArrayIndexOutOfBoundsException e) {
+
+			}
+			for (int i = 4; i < (1 << 14); ++i) {
+				fte.put(i, i);
+			}
+			try {
+				fte.put(-5, 7);
+				assert false;
+			} catch (ArrayIndexOutOfBoundsException e) {
+
+			}
+			assert fte.size() == (1 << 14) - 3;
+			assert !fte.containsKey(1) && !fte.containsKey((1 << 16) - 5);
+			assert fte.toString().indexOf("(65531,") < 0;
+			return true;
+		}
+	}
+
+	/*
+	 * Test nextKey, prevKey, forEachInRange and countInRange across pages,
+	 * against a TreeMap holding the same keys.
+	 */
+	public class TestRange extends TestAbstract {
+		public boolean run() {
+			FastHashtableExtender fte = new FastHashtableExtender();
+			fte.setSignedKeys(true);
+			java.util.TreeMap<Integer, Long> expected = new java.util.TreeMap<Integer, Long>();
+			java.util.Random rand = new java.util.Random(31);
+			int[] pages = { -9, -2, -1, 0, 2, 5, 6 };
+			for (int p : pages) {
+				for (int n = 0; n < 3000; ++n) {
+					int key = (p << 16) + rand.nextInt(1 << 16);
+					fte.put(key, 5L * key);
+					expected.put(key, 5L * key);
+				}
+			}
+			fte.put(Integer.MAX_VALUE, 1);
+			expected.put(Integer.MAX_VALUE, 1L);
+			fte.put(Integer.MIN_VALUE, 2);
+			expected.put(Integer.MIN_VALUE, 2L);
+			assert fte.nextKey(Integer.MIN_VALUE) == Integer.MIN_VALUE;
+			assert fte.prevKey(Integer.MAX_VALUE) == Integer.MAX_VALUE;
+			for (int n = 0; n < 2000; ++n) {
+				int lo = rand.nextInt(15 << 16) - (10 << 16);
+				int hi = lo + (n % 2 == 0 ? rand.nextInt(3000) : rand.nextInt(8 << 16));
+				Integer next = expected.ceilingKey(lo);
+				Integer prev = expected.floorKey(lo);
+				assert fte.nextKey(lo) == (next == null ? FastHashtable.NO_KEY : next);
+				assert fte.prevKey(lo) == (prev == null ? FastHashtable.NO_KEY : prev);
+
+				final java.util.Iterator<java.util.Map.Entry<Integer, Long>> it =
+						expected.subMap(lo, hi).entrySet().iterator();
+				fte.forEachInRange(lo, hi, new IntLongConsumer() {
+					public void accept(int p_key, long p_value) {
+						java.util.Map.Entry<Integer, Long> e = it.next();
+						assert e.getKey() == p_key;
+						assert e.getValue() == p_value;
+					}
+				});
+				assert !it.hasNext();
+				assert fte.countInRange(lo, hi) == expected.subMap(lo, hi).size();
+			}
+			assert fte.countInRange(Integer.MIN_VALUE, Integer.MAX_VALUE) == fte.size() - 1;
+			return true;
+		}
+	}
+
+	/*
+	 * Test intersectKeys, unionKeys, andNot and intersect page by page,
+	 * sequential and parallel, against the same operations on FastHashtable.
+	 */
+	public class TestSetAlgebra extends TestAbstract {
+		public boolean run() {
+			java.util.Random rand = new java.util.Random(41);
+			FastHashtableExtender a = new FastHashtableExtender();
+			FastHashtableExtender b = new FastHashtableExtender();
+			FastHashtable fa = new FastHashtable();
+			FastHashtable fb = new FastHashtable();
+			a.setSignedKeys(true);
+			fa.setSignedKeys(true);
+			for (int n = 0; n < 200000; ++n) {
+				int key = rand.nextInt(40 << 16) - (4 << 16);
+				a.put(key, key);
+				fa.put(key, key);
+				key = rand.nextInt(50 << 16);
+				b.put(key, -key);
+				fb.put(key, -key);
+			}
+			FastHashtable[] expected = { fa.intersectKeys(fb), fa.unionKeys(fb), fa.andNot(fb) };
+			for (int parallel = 0; parallel < 2; ++parallel) {
+				FastHashtableExtender[] actual = { a.intersectKeys(b, parallel == 1),
+						a.unionKeys(b, parallel == 1), a.andNot(b, parallel == 1) };
+				for (int n = 0; n < expected.length; ++n) {
+					assert actual[n].size() == expected[n].size();
+					assert java.util.Arrays.equals(sorted(actual[n].keys()),
+							sorted(expected[n].keys()));
+					long[] r = new long[2];
+					for (int key : actual[n].keys()) {
+						assert expected[n].get(key, r);
+						assert actual[n].get(key, r) && r[1] == (fa.containsKey(key) ? key : -key);
+					}
+				}
+			}
+			final int[] count = { 0 };
+			a.intersect(b, new fastHashtable.IntLongLongConsumer() {
+				public void accept(int p_key, long p_left, long p_right) {
+					assert p_left == p_key && p_right == -p_key;
+					++count[0];
+				}
+			});
+			assert count[0] == expected[0].size();
+			return true;
+		}
+	}
+
+	private static int[] sorted(int[] p_keys) {
+		java.util.Arrays.sort(p_keys);
+		return p_keys;
+	}
+
+	/*
+	 * Test the page count and, with -DfastHashtable.metrics=true, the
+	 * counters of the Extender.
+	 */
+	public class TestMetrics extends TestAbstract {
+		public boolean run() {
+			BitSet expected = new BitSet();
+			FastHashtableExtender fte = sample(expected);
+			fte.setSignedKeys(true);
+			fte.put(-1, -1);
+			long[] r = new long[2];
+			for (int key = 0; key < 1000; ++key) {
+				fte.get(key, r);
+			}
+			fte.containsKey(-2);
+			FastHashtableMetrics m = fte.getMetrics();
+			assert m.getPageCount() == 4;
+			assert m.getSize() == expected.cardinality() + 1;
+			assert m.getOccupancy() > 0 && m.getOccupancy() < 1;
+			// three dense pages, the page of the negative key is sparse.
+			assert m.getMemoryUsage() > 3 * (8L << 16);
+			assert m.getMemoryUsage() < 4 * (8L << 16);
+			if (FastHashtableMetrics.ENABLED) {
+				assert m.getPuts() == expected.cardinality() + 1;
+				assert m.getGets() == 1001;
+				assert m.getHits() == 143;
+				// pages 0, 2 and 5, and page 0 of the negative keys.
+				assert m.getRehashes() == 4;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test writeTo and readFrom with missing pages and signed keys.
+	 */
+	public class TestSerialization extends TestAbstract {
+		public boolean run() {
+			BitSet expected = new BitSet();
+			FastHashtableExtender fte = sample(expected);
+			fte.setSignedKeys(true);
+			fte.put(Integer.MIN_VALUE, 1);
+			fte.put(-5, -5);
+			try {
+				java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+				fte.writeTo(java.nio.channels.Channels.newChannel(bytes));
+				FastHashtableExtender copy = FastHashtableExtender.readFrom(
+						java.nio.channels.Channels.newChannel(
+								new java.io.ByteArrayInputStream(bytes.toByteArray())));
+				assert copy.size() == fte.size();
+				assert copy.maxKey() == fte.maxKey();
+				assert java.util.Arrays.equals(copy.keys(), fte.keys());
+				assert java.util.Arrays.equals(copy.values(), fte.values());
+				assert copy.containsKey(Integer.MIN_VALUE) && !copy.containsKey(-1);
+				try {
+					FastHashtable.readFrom(java.nio.channels.Channels.newChannel(
+							new java.io.ByteArrayInputStream(bytes.toByteArray())));
+					assert false;
+				} catch (java.io.IOException e) {
+
+				}
+			} catch (java.io.IOException e) {
+				assert false : e;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test that a snapshot keeps its view while pages, the directory and the
+	 * negative keys are written.
+	 */
+	public class TestSnapshot extends TestAbstract {
+		public boolean run() {
+			BitSet expected = new BitSet();
+			FastHashtableExtender fte = sample(expected);
+			fte.setSignedKeys(true);
+			fte.put(-7, 7);
+			FastHashtableExtender s1 = fte.snapshot();
+			int[] keys = fte.keys();
+			long[] values = fte.values();
+			assert s1.isSnapshot();
+
+			fte.put(0, -1);
+			fte.put(3 << 16, 3);
+			fte.put(9 << 16, 9);
+			fte.put(-7, 8);
+			fte.putAll(new int[] { 7, (2 << 16) + 7, (5 << 16) + 1 }, new long[] { 1, 2, 3 });
+			assert java.util.Arrays.equals(s1.keys(), keys);
+			assert java.util.Arrays.equals(s1.values(), values);
+			assert s1.maxKey() == (6 << 16) - 1;
+
+			FastHashtableExtender s2 = fte.snapshot();
+			int[] keys2 = fte.keys();
+			long[] values2 = fte.values();
+			fte.put(0, -2);
+			fte.put(7, -2);
+			long[] r = new long[2];
+			assert s2.get(0, r) && r[1] == -1;
+			assert fte.get(0, r) && r[1] == -2;
+			assert java.util.Arrays.equals(s2.keys(), keys2);
+			assert java.util.Arrays.equals(s2.values(), values2);
+			assert java.util.Arrays.equals(s1.keys(), keys);
+
+			try {
+				s1.put(1, 1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			try {
+				s1.putAll(new int[] { 1 }, new long[] { 1 });
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			s1.release();
+			s2.release();
+			assert s1.size() == 0 && !s2.containsKey(0);
+			fte.put(0, -3);
+			assert fte.get(0, r) && r[1] == -3;
+			assert fte.get(-7, r) && r[1] == 8;
+			return true;
+		}
+	}
+
+	/*
+	 * true if p_fte holds exactly the entries of p_map, through every way of
+	 * reading it.
+	 */
+	private static boolean same(FastHashtableExtender p_fte,
+			final java.util.TreeMap<Integer, Long> p_map) {
+		assert p_fte.size() == p_map.size();
+		int[] keys = p_fte.keys();
+		long[] values = p_fte.values();
+		long[] r = new long[2];
+		for (int n = 0; n < keys.length; ++n) {
+			assert values[n] == p_map.get(keys[n]);
+			assert p_fte.get(keys[n], r) && r[1] == values[n];
+		}
+		int n = 0;
+		for (FastHashtableExtender.Cursor c = p_fte.cursor(); c.hasNext(); ++n) {
+			assert c.nextKey() == keys[n] && c.value() == values[n];
+		}
+		assert n == keys.length;
+		final java.util.Iterator<java.util.Map.Entry<Integer, Long>> it = p_map.entrySet()
+				.iterator();
+		p_fte.forEachInRange(Integer.MIN_VALUE, Integer.MAX_VALUE, new IntLongConsumer() {
+			public void accept(int p_key, long p_value) {
+				java.util.Map.Entry<Integer, Long> e = it.next();
+				assert e.getKey() == p_key && e.getValue() == p_value;
+			}
+		});
+		assert !it.hasNext();
+		java.util.Random rand = new java.util.Random(p_map.size());
+		for (int m = 0; m < 1000; ++m) {
+			int lo = rand.nextInt(12 << 16);
+			int hi = lo + rand.nextInt(3 << 16);
+			assert p_fte.countInRange(lo, hi) == p_map.subMap(lo, hi).size();
+			Integer next = p_map.ceilingKey(lo);
+			Integer prev = p_map.floorKey(lo);
+			assert p_fte.nextKey(lo) == (next != null ? next : FastHashtable.NO_KEY);
+			assert p_fte.prevKey(lo) == (prev != null ? prev : FastHashtable.NO_KEY);
+			assert p_fte.containsKey(lo) == p_map.containsKey(lo);
+		}
+		return true;
+	}
+
+	/*
+	 * Test pages that are promoted from sparse to dense and demoted back,
+	 * against a TreeMap.
+	 */
+	public class TestSparsePages extends TestAbstract {
+		public boolean run() {
+			java.util.Random rand = new java.util.Random(53);
+			FastHashtableExtender fte = new FastHashtableExtender();
+			java.util.TreeMap<Integer, Long> map = new java.util.TreeMap<Integer, Long>();
+
+			// a long tail of pages with one key each is cheap.
+			for (int j = 16; j < 1016; ++j) {
+				fte.put((j << 16) + j, j);
+				map.put((j << 16) + j, (long) j);
+			}
+			assert fte.getMemoryUsage() < 1000 * 1024;
+			assert same(fte, map);
+
+			// page j gets about 100*j*j keys, so the first pages stay sparse.
+			for (int j = 0; j < 12; ++j) {
+				int count = 100 * j * j;
+				int[] keys = new int[count];
+				long[] values = new long[count];
+				for (int n = 0; n < count; ++n) {
+					keys[n] = (j << 16) + rand.nextInt(1 << 16);
+					values[n] = rand.nextLong();
+				}
+				if (j % 2 == 0) {
+					fte.putAll(keys, values);
+				} else {
+					for (int n = 0; n < count; ++n) {
+						fte.put(keys[n], values[n]);
+					}
+				}
+				for (int n = 0; n < count; ++n) {
+					map.put(keys[n], values[n]);
+				}
+			}
+			assert same(fte, map);
+			long dense = fte.getMemoryUsage();
+
+			// shrink every page to at most 300 keys, and empty page 3.
+			for (int j = 0; j < 12; ++j) {
+				java.util.List<Integer> keys = new ArrayList<Integer>(
+						map.subMap(j << 16, (j + 1) << 16).keySet());
+				java.util.Collections.shuffle(keys, rand);
+				for (int n = j == 3 ? 0 : 300; n < keys.size(); ++n) {
+					assert fte.remove(keys.get(n));
+					assert !fte.remove(keys.get(n));
+					map.remove(keys.get(n));
+				}
+			}
+			assert !fte.remove(-1) && !fte.remove(Integer.MAX_VALUE);
+			assert same(fte, map);
+			assert fte.getMemoryUsage() < dense / 10;
+			assert fte.nextKey(3 << 16) == map.ceilingKey(3 << 16);
+
+			try {
+				java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+				fte.writeTo(java.nio.channels.Channels.newChannel(bytes));
+				assert same(FastHashtableExtender.readFrom(java.nio.channels.Channels.newChannel(
+						new java.io.ByteArrayInputStream(bytes.toByteArray()))), map);
+			} catch (java.io.IOException e) {
+				assert false : e;
+			}
+
+			// set algebra between sparse and dense pages.
+			FastHashtableExtender other = new FastHashtableExtender();
+			java.util.TreeMap<Integer, Long> other_map = new java.util.TreeMap<Integer, Long>();
+			for (int n = 0; n < 40000; ++n) {
+				int key = rand.nextInt(14 << 16);
+				key = (key & 0x70000) == 0 ? key : key & ~0x3ff;
+				other.put(key, -key);
+				other_map.put(key, (long) -key);
+			}
+			java.util.TreeMap<Integer, Long> and = new java.util.TreeMap<Integer, Long>(map);
+			and.keySet().retainAll(other_map.keySet());
+			java.util.TreeMap<Integer, Long> or = new java.util.TreeMap<Integer, Long>(other_map);
+			or.putAll(map);
+			java.util.TreeMap<Integer, Long> andNot = new java.util.TreeMap<Integer, Long>(map);
+			andNot.keySet().removeAll(other_map.keySet());
+			assert same(fte.intersectKeys(other), and);
+			assert same(fte.unionKeys(other), or);
+			assert same(fte.andNot(other), andNot);
+			java.util.TreeMap<Integer, Long> and2 = new java.util.TreeMap<Integer, Long>(other_map);
+			and2.keySet().retainAll(map.keySet());
+			assert same(other.intersectKeys(fte), and2);
+			final int[] count = { 0 };
+			other.intersect(fte, new fastHashtable.IntLongLongConsumer() {
+				public void accept(int p_key, long p_left, long p_right) {
+					assert p_left == -p_key;
+					++count[0];
+				}
+			});
+			assert count[0] == and.size();
+			return true;
+		}
+	}
+
+	/*
+	 * Test the parallel batch put, forEach and reductions against putAll and
+	 * a TreeMap, with dense, sparse and negative pages and a snapshot.
+	 */
+	public class TestParallel extends TestAbstract {
+		public boolean run() {
+			java.util.Random rand = new java.util.Random(59);
+			final int N = 600000;
+			int[] keys = new int[N];
+			long[] values = new long[N];
+			java.util.TreeMap<Integer, Long> map = new java.util.TreeMap<Integer, Long>();
+			map.put(5, 5L);
+			map.put(-5, 5L);
+			for (int n = 0; n < N; ++n) {
+				// pages 0 to 7 dense, a few keys on pages 8 to 11, some negative.
+				int key = n % 100 == 0 ? (8 << 16) + rand.nextInt(4 << 16) : rand.nextInt(8 << 16);
+				keys[n] = n % 7 == 0 ? ~key : key;
+				values[n] = rand.nextLong();
+				map.put(keys[n], values[n]);
+			}
+
+			FastHashtableExtender fte = new FastHashtableExtender();
+			try {
+				fte.parallelPutAll(keys, values);
+				assert false;
+			} catch (ArrayIndexOutOfBoundsException e) {
+
+			}
+			assert fte.size() == 0;
+			fte.setSignedKeys(true);
+			fte.put(5, 5);
+			fte.put(-5, 5);
+			FastHashtableExtender view = fte.snapshot();
+			fte.parallelPutAll(keys, values);
+			assert same(fte, map);
+			assert view.size() == 2;
+			view.release();
+
+			FastHashtableExtender sequential = new FastHashtableExtender();
+			sequential.setSignedKeys(true);
+			sequential.put(5, 5);
+			sequential.put(-5, 5);
+			sequential.putAll(keys, values);
+			assert java.util.Arrays.equals(fte.keys(), sequential.keys());
+			assert java.util.Arrays.equals(fte.values(), sequential.values());
+
+			final java.util.concurrent.atomic.AtomicLong sum = new java.util.concurrent.atomic.AtomicLong();
+			final java.util.concurrent.atomic.AtomicInteger count = new java.util.concurrent.atomic.AtomicInteger();
+			fte.parallelForEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					sum.addAndGet(p_key ^ p_value);
+					count.incrementAndGet();
+				}
+			});
+			long expected = 0;
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			long total = 0;
+			for (java.util.Map.Entry<Integer, Long> e : map.entrySet()) {
+				expected += e.getKey() ^ e.getValue();
+				min = Math.min(min, e.getValue());
+				max = Math.max(max, e.getValue());
+				total += e.getValue();
+			}
+			assert sum.get() == expected && count.get() == map.size();
+			assert fte.parallelSum() == total;
+			assert fte.parallelMin() == min;
+			assert fte.parallelMax() == max;
+
+			FastHashtableExtender empty = new FastHashtableExtender();
+			assert empty.parallelSum() == 0;
+			assert empty.parallelMin() == Long.MAX_VALUE;
+			assert empty.parallelMax() == Long.MIN_VALUE;
+			empty.parallelPutAll(new int[] { 3 }, new long[] { 4 });
+			assert empty.parallelSum() == 4;
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestIteration());
+		tests.add(new TestBatch());
+		tests.add(new TestSignedKeys());
+		tests.add(new TestInvalidKey());
+		tests.add(new TestRange());
+		tests.add(new TestSetAlgebra());
+		tests.add(new TestMetrics());
+		tests.add(new TestSerialization());
+		tests.add(new TestSnapshot());
+		tests.add(new TestSparsePages());
+		tests.add(new TestParallel());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		FastHashtableExtenderTest test = new FastHashtableExtenderTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
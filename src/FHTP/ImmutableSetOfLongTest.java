@@ -164,6 +164,197 @@ public class ImmutableSetOfLongTest {
 		}
 	}
 
+	/*
+	 * Test the minimal perfect hash mode with values added in several arrays,
+	 * duplicates and extreme values.
+	 */
+	public class TestPerfect extends TestAbstract {
+		public boolean run() {
+			ImmutableSetOfLong isol = new ImmutableSetOfLong();
+			assert !isol.setMinimalPerfectHash(true);
+			isol.finalizeSet();
+			assert isol.size() == 0 && !isol.contains(0) && !isol.contains(-1);
+
+			final int N = 1 << 20;
+			java.util.Random rand = new java.util.Random(79);
+			java.util.HashSet<Long> included = new java.util.HashSet<Long>();
+			isol = new ImmutableSetOfLong();
+			isol.setMinimalPerfectHash(true);
+			for (int j = 0; j < 4; ++j) {
+				long[] l = new long[N / 4];
+				for (int i = 0; i < l.length; ++i) {
+					l[i] = i % 10 == 0 && !included.isEmpty() ? l[rand.nextInt(i + 1)] : rand.nextLong();
+					included.add(l[i]);
+				}
+				isol.add(l);
+			}
+			isol.add(new long[] { Long.MIN_VALUE, Long.MAX_VALUE, 0, Long.MIN_VALUE });
+			included.add(Long.MIN_VALUE);
+			included.add(Long.MAX_VALUE);
+			included.add(0L);
+			isol.finalizeSet();
+
+			assert isol.size() == included.size();
+			for (long l : included) {
+				assert isol.contains(l);
+			}
+			for (int i = 0; i < N; ++i) {
+				long l = rand.nextLong();
+				assert isol.contains(l) == included.contains(l);
+			}
+			assert isol.getMaxCollisions() == 0;
+			assert isol.getMemoryUsage() < (Long.SIZE + 5L) * isol.size();
+			try {
+				isol.setMinimalPerfectHash(false);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * the arrays of a finalized set's table, to compare two builds.
+	 */
+	private static Object[] table(ImmutableSetOfLong p_isol) {
+		String[] names = { "_offsets", "_values", "_pilots", "_keys", "_free" };
+		Object[] table = new Object[names.length];
+		try {
+			for (int i = 0; i < names.length; ++i) {
+				java.lang.reflect.Field f = ImmutableSetOfLong.class.getDeclaredField(names[i]);
+				f.setAccessible(true);
+				table[i] = f.get(p_isol);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+		return table;
+	}
+
+	/*
+	 * Test values added in several arrays, one of them empty. the collisions
+	 * are counted over all of the arrays, and the table is the same whatever
+	 * the number of chunks and of table sizes tried at once.
+	 */
+	public class TestArrays extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 18;
+			java.util.Random rand = new java.util.Random(83);
+			long[][] arrays = { new long[N], new long[0], new long[N / 3], new long[N] };
+			for (long[] l : arrays) {
+				for (int i = 0; i < l.length; ++i) {
+					l[i] = rand.nextLong();
+				}
+			}
+			arrays[2][0] = arrays[0][0];
+
+			// parallelism, candidates and perfect for each build.
+			int[][] builds = { { 1, 1, 0 }, { 3, 1, 0 }, { 8, 3, 0 }, { 0, 2, 0 }, { 1, 1, 1 }, { 8, 1, 1 } };
+			Object[][] tables = new Object[2][];
+			for (int[] build : builds) {
+				ImmutableSetOfLong isol = new ImmutableSetOfLong();
+				assert isol.setParallelism(build[0]) == 0;
+				assert isol.setConcurrentCandidates(build[1]) == 1;
+				isol.setMinimalPerfectHash(build[2] == 1);
+				for (long[] l : arrays) {
+					isol.add(l);
+				}
+				isol.finalizeSet();
+				assert isol.size() == (build[2] == 1 ? N + N / 3 + N - 1 : N + N / 3 + N);
+				for (long[] l : arrays) {
+					for (long v : l) {
+						assert isol.contains(v);
+					}
+				}
+				assert isol.getMaxCollisions() <= 4;
+				Object[] table = table(isol);
+				assert table[build[2] == 1 ? 3 : 0] != null;
+				if (tables[build[2]] == null) {
+					tables[build[2]] = table;
+				}
+				assert java.util.Arrays.deepEquals(table, tables[build[2]]);
+			}
+			try {
+				new ImmutableSetOfLong().setConcurrentCandidates(0);
+				assert false;
+			} catch (IllegalArgumentException e) {
+
+			}
+			try {
+				new ImmutableSetOfLong().setParallelism(-1);
+				assert false;
+			} catch (IllegalArgumentException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test containsAll and filter against contains, for every kind of
+	 * table and for query counts that are not a multiple of 64.
+	 */
+	public class TestBatch extends TestAbstract {
+		public boolean run() {
+			final int N = 100000;
+			java.util.Random rand = new java.util.Random(97);
+			long[] l = new long[N];
+			for (int i = 0; i < N; ++i) {
+				l[i] = rand.nextLong();
+			}
+			long[] queries = new long[2 * N + 37];
+			for (int i = 0; i < queries.length; ++i) {
+				queries[i] = rand.nextBoolean() ? l[rand.nextInt(N)] : rand.nextLong();
+			}
+
+			for (int mode = 0; mode < 3; ++mode) {
+				ImmutableSetOfLong isol = new ImmutableSetOfLong();
+				isol.setMinimalPerfectHash(mode == 1);
+				try {
+					isol.containsAll(queries, new long[queries.length]);
+					assert false;
+				} catch (IllegalStateException e) {
+
+				}
+				if (mode != 2) {
+					isol.add(l);
+				}
+				isol.finalizeSet();
+
+				long[] bits = new long[(queries.length + 63) / 64];
+				java.util.Arrays.fill(bits, -1);
+				long[] out = new long[queries.length];
+				int found = isol.containsAll(queries, bits);
+				assert isol.filter(queries, out) == found;
+				int n = 0;
+				for (int i = 0; i < queries.length; ++i) {
+					boolean b = isol.contains(queries[i]);
+					assert b == ((bits[i >>> 6] & (1L << i)) != 0);
+					if (b) {
+						assert out[n++] == queries[i];
+					}
+				}
+				assert n == found && (mode == 2 ? found == 0 : found > N / 2);
+				assert (bits[bits.length - 1] >>> (queries.length % 64)) == 0;
+
+				long[] copy = queries.clone();
+				assert isol.filter(copy, copy) == found;
+				for (int i = 0; i < found; ++i) {
+					assert copy[i] == out[i];
+				}
+				assert isol.containsAll(new long[0], new long[0]) == 0;
+				try {
+					isol.containsAll(queries, new long[bits.length - 1]);
+					assert false;
+				} catch (IllegalArgumentException e) {
+
+				}
+			}
+			return true;
+		}
+	}
+
 	/*
 	 * Returns the list of unit tests to run. Add new tests here.
 	 */
@@ -174,6 +365,9 @@ public class ImmutableSetOfLongTest {
 		tests.add(new TestCollision());
 		tests.add(new TestForMissingKey());
 		tests.add(new TestInvalidKey());
+		tests.add(new TestPerfect());
+		tests.add(new TestArrays());
+		tests.add(new TestBatch());
 //		tests.add(new TestToString());
 
 		return tests;
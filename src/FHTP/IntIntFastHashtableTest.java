@@ -0,0 +1,156 @@
+/*
+ * GENERATED by FastHashtableGenerator from PrimitiveFastHashtableTest.template,
+ * do not edit. Change the template and run the generator instead.
+ *
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.IntIntFastHashtable;
+import fastHashtable.FastHashtable;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class IntIntFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Test put & lookups against a FastHashtable holding the same keys.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 18;
+			IntIntFastHashtable t = new IntIntFastHashtable();
+			FastHashtable ft = new FastHashtable();
+			Random rand = new Random(23);
+			for (int n = 0; n < N / 4; ++n) {
+				int key = rand.nextInt(N);
+				t.put(key, (3 * key));
+				ft.put(key, key);
+			}
+			assert t.size() == ft.size();
+			int[] r = new int[2];
+			for (int key = -1; key <= N; ++key) {
+				assert t.containsKey(key) == ft.containsKey(key);
+				assert t.get(key, r) == ft.containsKey(key);
+				if (ft.containsKey(key)) {
+					assert r[1] == (3 * key);
+				}
+			}
+			try {
+				int key = -1;
+				t.put(key, (3 * key));
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test growing the table.
+	 */
+	public class TestGrow extends TestAbstract {
+		public boolean run() {
+			IntIntFastHashtable t = new IntIntFastHashtable(0);
+			for (int key = 0; key < 100000; key += 7) {
+				t.put(key, (3 * key));
+			}
+			assert t.size() == (100000 + 6) / 7;
+			for (int key = 0; key < 100000; ++key) {
+				assert t.containsKey(key) == (key % 7 == 0);
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * the keys in forEach order match keys() and the string form matches
+	 * FastHashtable's.
+	 */
+	public class TestIteration extends TestAbstract {
+		public boolean run() {
+			IntIntFastHashtable t = new IntIntFastHashtable();
+			FastHashtable ft = new FastHashtable();
+			for (int key = 0; key < 16; key += 2) {
+				t.put(key, (3 * key));
+				ft.put(key, key);
+			}
+			final int[] keys = t.keys();
+			assert java.util.Arrays.equals(keys, ft.keys());
+			final int[] n = { 0 };
+			t.forEach(new IntIntFastHashtable.Consumer() {
+				public void accept(int key, int p_value) {
+					assert p_value == (3 * key);
+					assert keys[n[0]++] == key;
+				}
+			});
+			assert n[0] == keys.length;
+			int[] values = t.values();
+			for (int i = 0; i < keys.length; ++i) {
+				int key = keys[i];
+				assert values[i] == (3 * key);
+			}
+			StringBuilder sb = new StringBuilder("(");
+			for (int key = 0; key < 16; key += 2) {
+				sb.append('(').append(key).append(',').append((3 * key)).append(')');
+			}
+			assert t.toString().equals(sb.append(')').toString());
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestGrow());
+		tests.add(new TestIteration());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		IntIntFastHashtableTest test = new IntIntFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
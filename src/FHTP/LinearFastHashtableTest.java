@@ -0,0 +1,158 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.LinearFastHashtable;
+import fastHashtable.FastHashtable;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class LinearFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Test put, containsKey & get against a FastHashtable, with keys put in
+	 * random order and existing keys overwritten.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 18;
+			LinearFastHashtable lft = new LinearFastHashtable(N);
+			FastHashtable ft = new FastHashtable(N);
+			Random rand = new Random(19);
+			for (int i = 0; i < N / 2; ++i) {
+				int key = rand.nextInt(N);
+				long value = rand.nextLong();
+				lft.put(key, value);
+				ft.put(key, value);
+			}
+			assert lft.size() == ft.size();
+			long[] a = new long[2];
+			long[] b = new long[2];
+			for (int key = 0; key < N; ++key) {
+				assert lft.containsKey(key) == ft.containsKey(key);
+				assert lft.get(key, a) == ft.get(key, b);
+				if (ft.containsKey(key)) {
+					assert a[1] == b[1];
+				}
+			}
+			assert !lft.containsKey(-1);
+			assert !lft.get(lft.maxKey() + 1, a);
+			return true;
+		}
+	}
+
+	/*
+	 * Test growing the table far past its initial capacity.
+	 */
+	public class TestGrow extends TestAbstract {
+		public boolean run() {
+			LinearFastHashtable lft = new LinearFastHashtable(0);
+			assert lft.maxSize() == 64;
+			lft.put(1, 1);
+			lft.put(100000, 2);
+			assert lft.maxKey() == (1 << 17) - 1;
+			assert lft.size() == 2;
+			long[] r = new long[2];
+			assert lft.get(1, r) && r[1] == 1;
+			assert lft.get(100000, r) && r[1] == 2;
+			try {
+				lft.put(-1, -1);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			try {
+				lft.put(1 << 30, 0);
+				assert false;
+			} catch (java.lang.ArrayIndexOutOfBoundsException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * iteration is in ascending key order and the string form matches
+	 * FastHashtable's for keys in ascending order.
+	 */
+	public class TestIteration extends TestAbstract {
+		public boolean run() {
+			LinearFastHashtable lft = new LinearFastHashtable();
+			FastHashtable ft = new FastHashtable();
+			for (int i = 14; i >= 0; i -= 2) {
+				lft.put(i, i);
+				ft.put(i, i);
+			}
+			assert lft.toString().equals(ft.toString());
+			for (int i = 0; i < 1000; i += 3) {
+				lft.put(i, -i);
+			}
+			int[] keys = lft.keys();
+			long[] values = lft.values();
+			assert keys.length == lft.size();
+			for (int n = 1; n < keys.length; ++n) {
+				assert keys[n - 1] < keys[n];
+			}
+			for (int n = 0; n < keys.length; ++n) {
+				long[] r = new long[2];
+				assert lft.get(keys[n], r) && r[1] == values[n];
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestGrow());
+		tests.add(new TestIteration());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		LinearFastHashtableTest test = new LinearFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.LongFastHashtableExtender;
+import fastHashtable.LongLongConsumer;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class LongFastHashtableExtenderTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * keys like our ids: a millisecond timestamp in the high bits and shard
+	 * bits in the low ones, plus keys anywhere in the long range.
+	 */
+	private static long id(Random p_rand) {
+		switch (p_rand.nextInt(8)) {
+		case 0:
+			return p_rand.nextLong();
+		case 1:
+			return -1 - p_rand.nextInt(1 << 20);
+		default:
+			return ((1700000000000L + p_rand.nextInt(1 << 24)) << 12) | p_rand.nextInt(1 << 12);
+		}
+	}
+
+	/*
+	 * Test put, containsKey, get and remove against a TreeMap.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			LongFastHashtableExtender lfte = new LongFastHashtableExtender();
+			TreeMap<Long, Long> map = new TreeMap<Long, Long>();
+			Random rand = new Random(71);
+			long[] edges = { Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1L << 32, -(1L << 32) };
+			for (long key : edges) {
+				lfte.put(key, ~key);
+				map.put(key, ~key);
+			}
+			for (int n = 0; n < 300000; ++n) {
+				long key = id(rand);
+				long value = rand.nextLong();
+				lfte.put(key, value);
+				map.put(key, value);
+			}
+			assert lfte.size() == map.size();
+			long[] r = new long[2];
+			for (Map.Entry<Long, Long> e : map.entrySet()) {
+				assert lfte.get(e.getKey(), r) && r[1] == e.getValue();
+			}
+			for (int n = 0; n < 100000; ++n) {
+				long key = id(rand);
+				assert lfte.containsKey(key) == map.containsKey(key);
+			}
+
+			for (int n = 0; n < 200000; ++n) {
+				Long next = map.ceilingKey(rand.nextLong());
+				long key = n % 2 == 0 || next == null ? id(rand) : next;
+				assert lfte.remove(key) == (map.remove(key) != null);
+				assert !lfte.containsKey(key);
+			}
+			assert lfte.size() == map.size();
+			for (Map.Entry<Long, Long> e : map.entrySet()) {
+				assert lfte.get(e.getKey(), r) && r[1] == e.getValue();
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Test that forEach visits every entry once, pages in signed key order.
+	 */
+	public class TestForEach extends TestAbstract {
+		public boolean run() {
+			LongFastHashtableExtender lfte = new LongFastHashtableExtender();
+			final TreeMap<Long, Long> map = new TreeMap<Long, Long>();
+			Random rand = new Random(73);
+			for (int n = 0; n < 100000; ++n) {
+				long key = id(rand);
+				lfte.put(key, n);
+				map.put(key, (long) n);
+			}
+			final TreeMap<Long, Long> seen = new TreeMap<Long, Long>();
+			final long[] page = { Long.MIN_VALUE };
+			lfte.forEach(new LongLongConsumer() {
+				public void accept(long p_key, long p_value) {
+					assert (p_key >> 16) >= page[0];
+					page[0] = p_key >> 16;
+					assert seen.put(p_key, p_value) == null;
+				}
+			});
+			assert seen.equals(map);
+
+			LongFastHashtableExtender small = new LongFastHashtableExtender();
+			small.put(5, 1);
+			small.put(-5, 2);
+			small.put(Long.MAX_VALUE, 3);
+			assert small.toString().equals("((-5,2)(5,1)(" + Long.MAX_VALUE + ",3))");
+			return true;
+		}
+	}
+
+	/*
+	 * Test that clustered keys take few nodes, and that removing every key
+	 * gives the directory back.
+	 */
+	public class TestMemory extends TestAbstract {
+		public boolean run() {
+			LongFastHashtableExtender lfte = new LongFastHashtableExtender();
+			long empty = lfte.getMemoryUsage();
+			long base = (1700000000000L << 12) & ~0xffffL;
+			for (long key = base; key < base + (1 << 20); key += 3) {
+				lfte.put(key, key);
+			}
+			assert lfte.getNodeCount() <= 1 + 2 * 3;
+			assert lfte.getPageCount() == 16;
+			lfte.put(Long.MIN_VALUE, 0);
+			lfte.put(Long.MAX_VALUE, 0);
+			assert lfte.getNodeCount() <= 1 + 4 * 3;
+
+			for (long key = base; key < base + (1 << 20); key += 3) {
+				assert lfte.remove(key);
+			}
+			assert lfte.remove(Long.MIN_VALUE) && lfte.remove(Long.MAX_VALUE);
+			assert !lfte.remove(Long.MAX_VALUE);
+			assert lfte.size() == 0;
+			assert lfte.getNodeCount() == 1 && lfte.getPageCount() == 0;
+			assert lfte.getMemoryUsage() == empty;
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestForEach());
+		tests.add(new TestMemory());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		LongFastHashtableExtenderTest test = new LongFastHashtableExtenderTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
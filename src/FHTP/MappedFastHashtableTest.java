@@ -0,0 +1,189 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.MappedFastHashtable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class MappedFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run() throws IOException;
+	}
+
+	/*
+	 * Test save and reopen against the saved FastHashtable.
+	 */
+	public class TestSaveOpen extends TestAbstract {
+		public boolean run() throws IOException {
+			final int N = 1 << 20;
+			FastHashtable ft = new FastHashtable(N);
+			Random rand = new Random(3);
+			for (int i = 0; i < N / 8; ++i) {
+				ft.put(rand.nextInt(N), rand.nextLong());
+			}
+			Path file = Files.createTempFile("fht", ".map");
+			try {
+				MappedFastHashtable.save(ft, file);
+				MappedFastHashtable mft = new MappedFastHashtable(file, true);
+				assert mft.isReadOnly();
+				assert mft.size() == ft.size();
+				long[] a = new long[2];
+				long[] b = new long[2];
+				for (int key = 0; key < N; ++key) {
+					assert mft.containsKey(key) == ft.containsKey(key);
+					assert mft.get(key, a) == ft.get(key, b);
+					if (ft.containsKey(key)) {
+						assert a[1] == b[1];
+					}
+				}
+				assert !mft.containsKey(N);
+				assert !mft.containsKey(-1);
+				mft.close();
+			} finally {
+				Files.delete(file);
+			}
+
+			// a signed table is saved unless it holds a negative key, and
+			// then no file is left behind.
+			ft.setSignedKeys(true);
+			MappedFastHashtable.save(ft, file);
+			Files.delete(file);
+			ft.put(-1, 1);
+			try {
+				MappedFastHashtable.save(ft, file);
+				assert false;
+			} catch (IllegalArgumentException e) {
+
+			}
+			assert !Files.exists(file);
+			return true;
+		}
+	}
+
+	/*
+	 * changes made in read-write mode survive close and reopen, including
+	 * pages that extend the file.
+	 */
+	public class TestReadWrite extends TestAbstract {
+		public boolean run() throws IOException {
+			Path file = Files.createTempFile("fht", ".map");
+			Files.delete(file);
+			try {
+				MappedFastHashtable mft = new MappedFastHashtable(file, false);
+				mft.put(1, 10);
+				mft.force();
+				mft.put(5 << 16, 50);
+				mft.put(1, 11);
+				mft.close();
+
+				mft = new MappedFastHashtable(file, false);
+				assert mft.size() == 2;
+				long[] r = new long[2];
+				assert mft.get(1, r) && r[1] == 11;
+				assert mft.get(5 << 16, r) && r[1] == 50;
+				assert !mft.containsKey(2 << 16);
+				mft.put(2 << 16, 20);
+				mft.close();
+
+				mft = new MappedFastHashtable(file, true);
+				assert mft.size() == 3;
+				assert mft.get(2 << 16, r) && r[1] == 20;
+				mft.close();
+			} finally {
+				Files.deleteIfExists(file);
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * a read-only table refuses puts, and a file that is not a table is
+	 * refused.
+	 */
+	public class TestReadOnly extends TestAbstract {
+		public boolean run() throws IOException {
+			Path file = Files.createTempFile("fht", ".map");
+			try {
+				try {
+					new MappedFastHashtable(file, true);
+					assert false;
+				} catch (IOException e) {
+
+				}
+				MappedFastHashtable.save(new FastHashtable(), file);
+				MappedFastHashtable mft = new MappedFastHashtable(file, true);
+				try {
+					mft.put(0, 0);
+					assert false;
+				} catch (IllegalStateException e) {
+
+				}
+				assert mft.size() == 0;
+				mft.close();
+			} finally {
+				Files.delete(file);
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestSaveOpen());
+		tests.add(new TestReadWrite());
+		tests.add(new TestReadOnly());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		MappedFastHashtableTest test = new MappedFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (IOException e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass() + " " + e);
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Measure runtime of the batch putAll/getAll of FastHashtable and
+ * FastHashtableExtender versus a loop of put/get.
+ */
+package FHTP;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.FastHashtableExtender;
+
+public class MeasureBatchPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	/*
+	 * collect garbage left by the previous measurement before starting the
+	 * clock.
+	 */
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 20;
+		final int RANGE = 1 << 24;
+		Random rand = new Random(1);
+		int[] keys = new int[N];
+		long[] values = new long[N];
+		for (int n = 0; n < N; ++n) {
+			keys[n] = rand.nextInt(RANGE);
+			values[n] = n;
+		}
+		long[] result = new long[N];
+		BitSet found = new BitSet(N);
+		long[] r = new long[2];
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+
+			/*
+			 * both tables start small, so the per-key loop also pays for
+			 * growing.
+			 */
+			then = start();
+			FastHashtable ft = new FastHashtable();
+			for (int n = 0; n < N; ++n) {
+				ft.put(keys[n], values[n]);
+			}
+			double ft_put = ms(then);
+
+			then = start();
+			FastHashtable ftb = new FastHashtable();
+			ftb.putAll(keys, values);
+			double ft_putAll = ms(then);
+
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				if (ft.get(keys[n], r)) {
+					result[n] = r[1];
+				}
+			}
+			double ft_get = ms(then);
+
+			then = start();
+			ftb.getAll(keys, result, found);
+			double ft_getAll = ms(then);
+
+			then = start();
+			FastHashtableExtender fte = new FastHashtableExtender();
+			for (int n = 0; n < N; ++n) {
+				fte.put(keys[n], values[n]);
+			}
+			double fte_put = ms(then);
+
+			then = start();
+			FastHashtableExtender fteb = new FastHashtableExtender();
+			fteb.putAll(keys, values);
+			double fte_putAll = ms(then);
+
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				if (fte.get(keys[n], r)) {
+					result[n] = r[1];
+				}
+			}
+			double fte_get = ms(then);
+
+			then = start();
+			fteb.getAll(keys, result, found);
+			double fte_getAll = ms(then);
+
+			System.out.println("N=" + N + ", ft: put " + ft_put + "ms, putAll "
+					+ ft_putAll + "ms, get " + ft_get + "ms, getAll " + ft_getAll
+					+ "ms; fte: put " + fte_put + "ms, putAll " + fte_putAll
+					+ "ms, get " + fte_get + "ms, getAll " + fte_getAll + "ms");
+		}
+
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Measure throughput of ConcurrentFastHashtable versus a FastHashtable behind a
+ * lock and java.util.Hashtable, from 1 to N threads.
+ */
+package FHTP;
+
+import java.util.Hashtable;
+
+import fastHashtable.ConcurrentFastHashtable;
+import fastHashtable.FastHashtable;
+
+public class MeasureConcurrentPerformance {
+
+	/*
+	 * one operation on a shared table. 1 in 8 operations is a put, the rest
+	 * are gets.
+	 */
+	private static abstract class Table {
+		abstract void put(int p_key, long p_value);
+		abstract boolean get(int p_key, long[] p_result);
+	}
+
+	private static final int KEYS = 1 << 22;
+	private static final int OPS_PER_THREAD = 1 << 23;
+
+	/*
+	 * returns operations per second over all threads.
+	 */
+	private static double run(final Table p_table, int p_threads) {
+		Thread[] threads = new Thread[p_threads];
+		for (int t = 0; t < p_threads; ++t) {
+			final int seed = t + 1;
+			threads[t] = new Thread() {
+				public void run() {
+					long[] r = new long[2];
+					int x = seed;
+					for (int i = 0; i < OPS_PER_THREAD; ++i) {
+						x ^= x << 13;
+						x ^= x >>> 17;
+						x ^= x << 5;
+						int key = x & (KEYS - 1);
+						if ((i & 7) == 0) {
+							p_table.put(key, i);
+						} else {
+							p_table.get(key, r);
+						}
+					}
+				}
+			};
+		}
+		long then = System.nanoTime();
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		long now = System.nanoTime();
+		return (double) p_threads * OPS_PER_THREAD / ((now - then) / 1e9);
+	}
+
+	public static void main(String[] args) {
+
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0) {
+			maxThreads = Integer.parseInt(args[0]);
+		}
+		System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+		for (int n = 1; n <= maxThreads; n *= 2) {
+			for (int K = 0; K < 2; K++) {
+				final ConcurrentFastHashtable cft = new ConcurrentFastHashtable();
+				double cft_ops = run(new Table() {
+					void put(int p_key, long p_value) {
+						cft.put(p_key, p_value);
+					}
+					boolean get(int p_key, long[] p_result) {
+						return cft.get(p_key, p_result);
+					}
+				}, n);
+
+				final FastHashtable ft = new FastHashtable(KEYS);
+				double ft_ops = run(new Table() {
+					synchronized void put(int p_key, long p_value) {
+						ft.put(p_key, p_value);
+					}
+					synchronized boolean get(int p_key, long[] p_result) {
+						return ft.get(p_key, p_result);
+					}
+				}, n);
+
+				final Hashtable<Integer, Long> ht = new Hashtable<Integer, Long>(KEYS);
+				double ht_ops = run(new Table() {
+					void put(int p_key, long p_value) {
+						ht.put(p_key, p_value);
+					}
+					boolean get(int p_key, long[] p_result) {
+						Long v = ht.get(p_key);
+						if (v == null) {
+							return false;
+						}
+						p_result[1] = v;
+						return true;
+					}
+				}, n);
+
+				System.out.println("threads=" + n + ", cft: "
+						+ (long) (cft_ops / 1e6) + " Mops/s, locked ft: "
+						+ (long) (ft_ops / 1e6) + " Mops/s, ht: "
+						+ (long) (ht_ops / 1e6) + " Mops/s");
+			}
+		}
+
+	}
+
+}
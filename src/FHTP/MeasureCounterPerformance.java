@@ -0,0 +1,53 @@
+/*
+ * Measure runtime of counting events per key with FastHashtable.addTo versus
+ * get into a scratch array followed by put.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+
+public class MeasureCounterPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 22;
+		final int RANGE = 1 << 20;
+		Random rand = new Random(1);
+		int[] events = new int[N];
+		for (int n = 0; n < N; ++n) {
+			events[n] = rand.nextInt(RANGE);
+		}
+		long[] r = new long[2];
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+
+			then = System.nanoTime();
+			FastHashtable gp = new FastHashtable(RANGE);
+			for (int n = 0; n < N; ++n) {
+				int key = events[n];
+				long c = gp.get(key, r) ? r[1] : 0;
+				gp.put(key, c + 1);
+			}
+			double get_put = ms(then);
+
+			then = System.nanoTime();
+			FastHashtable at = new FastHashtable(RANGE);
+			for (int n = 0; n < N; ++n) {
+				at.addTo(events[n], 1);
+			}
+			double add_to = ms(then);
+
+			System.out.println("N=" + N + ", get+put " + get_put + "ms, addTo "
+					+ add_to + "ms");
+		}
+
+	}
+
+}
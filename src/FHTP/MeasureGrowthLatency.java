@@ -0,0 +1,68 @@
+/*
+ * Measure put latency of FastHashtable across growth points, with and without
+ * incremental growth.
+ */
+package FHTP;
+
+import java.util.Arrays;
+
+import fastHashtable.FastHashtable;
+
+public class MeasureGrowthLatency {
+
+	/*
+	 * put N sequential keys into a default sized table and time every put.
+	 * the puts are grouped by the table size they ran at, so each line is the
+	 * latency profile between two growth points.
+	 */
+	private static void run(boolean p_incremental, int N) {
+
+		FastHashtable ft = new FastHashtable();
+		ft.setIncrementalGrowth(p_incremental);
+
+		long[] latency = new long[N];
+		int[] maxSize = new int[N];
+		for (int i = 0; i < N; ++i) {
+			long then = System.nanoTime();
+			ft.put(i, i);
+			latency[i] = System.nanoTime() - then;
+			maxSize[i] = ft.maxSize();
+		}
+
+		System.out.println("incremental=" + p_incremental);
+		int start = 0;
+		for (int i = 1; i <= N; ++i) {
+			if (i == N || maxSize[i] != maxSize[start]) {
+				long[] window = Arrays.copyOfRange(latency, start, i);
+				Arrays.sort(window);
+				System.out.println("  maxSize=" + maxSize[start] + ", puts="
+						+ window.length + ", p50=" + percentile(window, 0.50)
+						+ "ns, p99=" + percentile(window, 0.99)
+						+ "ns, p99.9=" + percentile(window, 0.999)
+						+ "ns, max=" + window[window.length - 1] + "ns");
+				start = i;
+			}
+		}
+		Arrays.sort(latency);
+		System.out.println("  all: p99=" + percentile(latency, 0.99)
+				+ "ns, p99.9=" + percentile(latency, 0.999) + "ns, max="
+				+ latency[N - 1] + "ns");
+	}
+
+	private static long percentile(long[] p_sorted, double p) {
+		return p_sorted[(int) Math.min(p_sorted.length - 1, p * p_sorted.length)];
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 24;
+		/*
+		 * the first round of each mode warms up the JIT.
+		 */
+		for (int K = 0; K < 2; K++) {
+			run(false, N);
+			run(true, N);
+		}
+	}
+
+}
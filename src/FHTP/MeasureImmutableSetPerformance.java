@@ -0,0 +1,73 @@
+/*
+ * Measure build time, lookup time and memory of ImmutableSetOfLong with the
+ * bucket table and with the minimal perfect hash, for values in the set and
+ * values not in it, one by one with contains and in batches with containsAll.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.ImmutableSetOfLong;
+
+public class MeasureImmutableSetPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 22;
+		Random rand = new Random(1);
+		long[] included = new long[N];
+		long[] excluded = new long[N];
+		for (int n = 0; n < N; ++n) {
+			included[n] = rand.nextLong();
+			excluded[n] = rand.nextLong();
+		}
+
+		for (int K = 0; K < 5; K++) {
+			for (int mode = 0; mode < 2; ++mode) {
+				ImmutableSetOfLong isol = new ImmutableSetOfLong();
+				isol.setMinimalPerfectHash(mode == 1);
+				isol.add(included);
+				long then = start();
+				isol.finalizeSet();
+				double build = ms(then);
+
+				int found = 0;
+				then = start();
+				for (int n = 0; n < N; ++n) {
+					found += isol.contains(included[n]) ? 1 : 0;
+				}
+				double hits = ms(then);
+				then = System.nanoTime();
+				for (int n = 0; n < N; ++n) {
+					found += isol.contains(excluded[n]) ? 1 : 0;
+				}
+				double misses = ms(then);
+
+				long[] bits = new long[N / 64];
+				then = System.nanoTime();
+				found += isol.containsAll(included, bits);
+				double batchHits = ms(then);
+				then = System.nanoTime();
+				found += isol.containsAll(excluded, bits);
+				double batchMisses = ms(then);
+
+				System.out.println((mode == 1 ? "perfect" : "buckets") + " N=" + N + ": build "
+						+ build + "ms, contains " + hits * 1e6 / N + "ns hit, " + misses * 1e6 / N
+						+ "ns miss, containsAll " + batchHits * 1e6 / N + "ns hit, " + batchMisses * 1e6 / N
+						+ "ns miss, " + (double) isol.getMemoryUsage() / N + " bits per value"
+						+ (found == 2 * N ? "" : " ?"));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Measure runtime of joining two FastHashtables by probing one with every key
+ * of the other versus the word-level intersect, and of the set operations of
+ * FastHashtableExtender, sequential and parallel.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.FastHashtableExtender;
+import fastHashtable.IntLongConsumer;
+import fastHashtable.IntLongLongConsumer;
+
+public class MeasureJoinPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 20;
+		final int RANGE = 1 << 23;
+		Random rand = new Random(1);
+		final FastHashtable a = new FastHashtable(RANGE);
+		final FastHashtable b = new FastHashtable(RANGE);
+		FastHashtableExtender ea = new FastHashtableExtender();
+		FastHashtableExtender eb = new FastHashtableExtender();
+		for (int n = 0; n < N; ++n) {
+			int key = rand.nextInt(RANGE);
+			a.put(key, n);
+			ea.put(key, n);
+			key = rand.nextInt(RANGE);
+			b.put(key, n);
+			eb.put(key, n);
+		}
+		System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+			final long[] sum = { 0 };
+
+			then = System.nanoTime();
+			final long[] r = new long[2];
+			a.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					if (b.get(p_key, r)) {
+						sum[0] += p_value + r[1];
+					}
+				}
+			});
+			double probe = ms(then);
+
+			then = System.nanoTime();
+			a.intersect(b, new IntLongLongConsumer() {
+				public void accept(int p_key, long p_left, long p_right) {
+					sum[0] -= p_left + p_right;
+				}
+			});
+			double intersect = ms(then);
+
+			then = System.nanoTime();
+			int and = a.intersectKeys(b).size();
+			double intersectKeys = ms(then);
+
+			then = System.nanoTime();
+			int eand = ea.intersectKeys(eb).size() + ea.unionKeys(eb).size();
+			double fte = ms(then);
+
+			then = System.nanoTime();
+			int pand = ea.intersectKeys(eb, true).size() + ea.unionKeys(eb, true).size();
+			double fte_parallel = ms(then);
+
+			System.out.println("N=" + N + ", ft: probe join " + probe + "ms, intersect "
+					+ intersect + "ms, intersectKeys " + intersectKeys
+					+ "ms; fte: intersectKeys+unionKeys " + fte + "ms, parallel "
+					+ fte_parallel + "ms" + (sum[0] != 0 || eand != pand || and < 0 ? " mismatch" : ""));
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Measure runtime of put and get on FastHashtable versus LinearFastHashtable
+ * for sequential, strided and random key patterns over a dense key range.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.LinearFastHashtable;
+
+public class MeasureLayoutPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 24;
+		final int STRIDE = 4099;
+
+		/*
+		 * every pattern visits every key of [0,N) once. strided visits
+		 * keys STRIDE apart, wrapping around, STRIDE is odd so it covers
+		 * the range.
+		 */
+		int[] sequential = new int[N];
+		int[] strided = new int[N];
+		int[] random = new int[N];
+		for (int n = 0; n < N; ++n) {
+			sequential[n] = n;
+			strided[n] = (int) ((long) n * STRIDE % N);
+			random[n] = n;
+		}
+		Random rand = new Random(1);
+		for (int n = N - 1; n > 0; --n) {
+			int m = rand.nextInt(n + 1);
+			int tmp = random[n];
+			random[n] = random[m];
+			random[m] = tmp;
+		}
+		String[] names = { "sequential", "strided", "random" };
+		int[][] patterns = { sequential, strided, random };
+
+		long[] r = new long[2];
+		for (int K = 0; K < 3; K++) {
+			for (int p = 0; p < patterns.length; ++p) {
+				int[] keys = patterns[p];
+				long then;
+				long sum = 0;
+
+				then = System.nanoTime();
+				FastHashtable ft = new FastHashtable(N);
+				for (int n = 0; n < N; ++n) {
+					ft.put(keys[n], n);
+				}
+				double ft_put = ms(then);
+
+				then = System.nanoTime();
+				for (int n = 0; n < N; ++n) {
+					if (ft.get(keys[n], r)) {
+						sum += r[1];
+					}
+				}
+				double ft_get = ms(then);
+				ft = null;
+
+				then = System.nanoTime();
+				LinearFastHashtable lft = new LinearFastHashtable(N);
+				for (int n = 0; n < N; ++n) {
+					lft.put(keys[n], n);
+				}
+				double lft_put = ms(then);
+
+				then = System.nanoTime();
+				for (int n = 0; n < N; ++n) {
+					if (lft.get(keys[n], r)) {
+						sum -= r[1];
+					}
+				}
+				double lft_get = ms(then);
+				lft = null;
+
+				System.out.println(names[p] + ": N=" + N + ", ft: put " + ft_put
+						+ "ms, get " + ft_get + "ms; lft: put " + lft_put
+						+ "ms, get " + lft_get + "ms" + (sum != 0 ? " mismatch" : ""));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Measure runtime of LongFastHashtableExtender put and get with clustered
+ * long ids, against FastHashtableExtender with the same keys less their
+ * common high bits, and java.util.HashMap.
+ */
+package FHTP;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import fastHashtable.FastHashtableExtender;
+import fastHashtable.LongFastHashtableExtender;
+
+public class MeasureLongKeyPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 22;
+		final long BASE = 1700000000000L << 12;
+		Random rand = new Random(1);
+		long[] keys = new long[N];
+		for (int n = 0; n < N; ++n) {
+			keys[n] = BASE + rand.nextInt(1 << 26);
+		}
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+			long[] r = new long[2];
+			long found = 0;
+
+			LongFastHashtableExtender lfte = new LongFastHashtableExtender();
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				lfte.put(keys[n], n);
+			}
+			double longPut = ms(then);
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				found += lfte.get(keys[n], r) ? 1 : 0;
+			}
+			double longGet = ms(then);
+
+			FastHashtableExtender fte = new FastHashtableExtender();
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				fte.put((int) (keys[n] - BASE), n);
+			}
+			double intPut = ms(then);
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				found += fte.get((int) (keys[n] - BASE), r) ? 1 : 0;
+			}
+			double intGet = ms(then);
+
+			HashMap<Long, Long> map = new HashMap<Long, Long>();
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				map.put(keys[n], (long) n);
+			}
+			double mapPut = ms(then);
+			then = start();
+			for (int n = 0; n < N; ++n) {
+				found += map.get(keys[n]) != null ? 1 : 0;
+			}
+			double mapGet = ms(then);
+
+			System.out.println("N=" + N + " put/get: LongFastHashtableExtender " + longPut + "/"
+					+ longGet + "ms, FastHashtableExtender " + intPut + "/" + intGet
+					+ "ms, HashMap " + mapPut + "/" + mapGet + "ms"
+					+ (found == 3L * N ? "" : " ?"));
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Measure runtime of the parallel bulk operations of FastHashtableExtender
+ * against their sequential versions. the speedup follows the parallelism of
+ * the common ForkJoinPool, which is printed.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.FastHashtableExtender;
+import fastHashtable.IntLongConsumer;
+
+public class MeasureParallelPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 24;
+		final int PAGES = 512;
+		Random rand = new Random(1);
+		int[] keys = new int[N];
+		long[] values = new long[N];
+		for (int n = 0; n < N; ++n) {
+			keys[n] = rand.nextInt(PAGES << 16);
+			values[n] = n;
+		}
+		System.out.println("parallelism " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+
+			FastHashtableExtender a = new FastHashtableExtender();
+			then = start();
+			a.putAll(keys, values);
+			double putAll = ms(then);
+
+			FastHashtableExtender b = new FastHashtableExtender();
+			then = start();
+			b.parallelPutAll(keys, values);
+			double parallelPutAll = ms(then);
+
+			final long[] sum = new long[1];
+			then = start();
+			a.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					sum[0] += p_value;
+				}
+			});
+			double forEach = ms(then);
+
+			then = start();
+			long parallelSum = b.parallelSum();
+			double reduce = ms(then);
+
+			System.out.println("N=" + N + " over " + PAGES + " pages, putAll " + putAll
+					+ "ms, parallelPutAll " + parallelPutAll + "ms; sum by forEach " + forEach
+					+ "ms, parallelSum " + reduce + "ms" + (sum[0] == parallelSum ? "" : " ?"));
+		}
+
+	}
+
+}
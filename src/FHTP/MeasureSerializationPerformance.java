@@ -0,0 +1,101 @@
+/*
+ * Measure throughput of FastHashtable.writeTo and readFrom through an in
+ * memory channel, for values that change little from key to key and for
+ * random values.
+ */
+package FHTP;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+
+public class MeasureSerializationPerformance {
+
+	/*
+	 * a channel over one byte array, written then read.
+	 */
+	private static class MemoryChannel implements WritableByteChannel, ReadableByteChannel {
+		byte[] _bytes = new byte[1 << 20];
+		int _length;
+		int _position;
+
+		public int write(ByteBuffer p_src) {
+			int n = p_src.remaining();
+			if (this._length + n > this._bytes.length) {
+				this._bytes = java.util.Arrays.copyOf(this._bytes,
+						Math.max(2 * this._bytes.length, this._length + n));
+			}
+			p_src.get(this._bytes, this._length, n);
+			this._length += n;
+			return n;
+		}
+
+		public int read(ByteBuffer p_dst) {
+			if (this._position == this._length) {
+				return -1;
+			}
+			int n = Math.min(p_dst.remaining(), this._length - this._position);
+			p_dst.put(this._bytes, this._position, n);
+			this._position += n;
+			return n;
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+	}
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		final int N = 1 << 24;
+		Random rand = new Random(1);
+		FastHashtable counters = new FastHashtable(N);
+		FastHashtable random = new FastHashtable(N);
+		for (int key = 0; key < N; ++key) {
+			counters.put(key, 1000 + rand.nextInt(100));
+			random.put(key, rand.nextLong());
+		}
+		String[] names = { "counters", "random" };
+		FastHashtable[] tables = { counters, random };
+
+		for (int K = 0; K < 5; K++) {
+			for (int t = 0; t < tables.length; ++t) {
+				MemoryChannel channel = new MemoryChannel();
+				channel._bytes = new byte[N * 12];
+				long then = System.nanoTime();
+				tables[t].writeTo(channel);
+				double write = ms(then);
+
+				then = System.nanoTime();
+				FastHashtable copy = FastHashtable.readFrom(channel);
+				double read = ms(then);
+
+				/*
+				 * throughput is given for the encoded stream and for the 8
+				 * bytes of every value of the table.
+				 */
+				double mb = channel._length / 1e6;
+				double table = 8.0 * N / 1e6;
+				System.out.println(names[t] + ": N=" + N + ", " + (long) mb + "MB, write "
+						+ write + "ms (" + (long) (mb * 1000 / write) + " MB/s, table "
+						+ (long) (table * 1000 / write) + " MB/s), read " + read + "ms ("
+						+ (long) (mb * 1000 / read) + " MB/s, table "
+						+ (long) (table * 1000 / read) + " MB/s)"
+						+ (copy.size() != N ? " mismatch" : ""));
+			}
+		}
+
+	}
+
+}
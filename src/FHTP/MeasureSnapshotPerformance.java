@@ -0,0 +1,83 @@
+/*
+ * Measure runtime of FastHashtable.snapshot versus a deep copy of the table,
+ * and what the copy-on-write costs the puts that follow a snapshot.
+ */
+package FHTP;
+
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+
+public class MeasureSnapshotPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) {
+
+		final int N = 1 << 22;
+		final int PUTS = 1 << 16;
+		Random rand = new Random(1);
+		FastHashtable ft = new FastHashtable(N);
+		for (int n = 0; n < N; ++n) {
+			ft.put(n, n);
+		}
+		int[] keys = new int[PUTS];
+		for (int n = 0; n < PUTS; ++n) {
+			keys[n] = rand.nextInt(N);
+		}
+		/*
+		 * unionKeys with an empty table of the same capacity copies the
+		 * bucket words and the values, a deep copy.
+		 */
+		FastHashtable empty = new FastHashtable(N);
+
+		for (int K = 0; K < 5; K++) {
+			long then;
+
+			then = start();
+			FastHashtable copy = ft.unionKeys(empty);
+			double deep = ms(then);
+
+			then = System.nanoTime();
+			for (int n = 0; n < PUTS; ++n) {
+				ft.put(keys[n], n);
+			}
+			double puts = ms(then);
+
+			then = start();
+			FastHashtable view = ft.snapshot();
+			double snapshot = ms(then);
+
+			/*
+			 * the first puts after a snapshot copy the spine and the rows
+			 * they touch.
+			 */
+			then = System.nanoTime();
+			for (int n = 0; n < PUTS; ++n) {
+				ft.put(keys[n], n);
+			}
+			double cow = ms(then);
+
+			then = System.nanoTime();
+			for (int n = 0; n < PUTS; ++n) {
+				ft.put(keys[n], n);
+			}
+			double after = ms(then);
+			view.release();
+
+			System.out.println("N=" + N + ", deep copy " + deep + "ms, snapshot " + snapshot
+					+ "ms; " + PUTS + " puts: " + puts + "ms without a snapshot, " + cow
+					+ "ms first after a snapshot, " + after + "ms second"
+					+ (copy.size() == ft.size() ? "" : " ?"));
+		}
+
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Measure the hit rate and runtime of SpillingFastHashtableExtender gets for
+ * memory budgets of a growing number of pages, with accesses skewed to a hot
+ * set of pages, and against a FastHashtableExtender that holds every page.
+ */
+package FHTP;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.FastHashtableExtender;
+import fastHashtable.SpillingFastHashtableExtender;
+
+public class MeasureSpillPerformance {
+
+	private static double ms(long p_then) {
+		return (System.nanoTime() - p_then) / 1e6;
+	}
+
+	private static long start() {
+		System.gc();
+		return System.nanoTime();
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		final int PAGES = 64;
+		final int GETS = 1 << 16;
+		final long PAGE = new FastHashtable(1 << 16).getMemoryUsage();
+		Random rand = new Random(1);
+
+		/*
+		 * the share of the accesses falls off exponentially with the page, so
+		 * pages 0 to 3 take 63% of them and pages 0 to 7 86%.
+		 */
+		int[] keys = new int[GETS];
+		for (int n = 0; n < GETS; ++n) {
+			int j = (int) Math.min(PAGES - 1, -4 * Math.log(1 - rand.nextDouble()));
+			keys[n] = (j << 16) + 4 * rand.nextInt(1 << 14);
+		}
+
+		FastHashtableExtender fte = new FastHashtableExtender();
+		for (int key = 0; key < (PAGES << 16); key += 4) {
+			fte.put(key, key);
+		}
+		long[] r = new long[2];
+		long then = start();
+		for (int n = 0; n < GETS; ++n) {
+			fte.get(keys[n], r);
+		}
+		System.out.println(GETS + " gets over " + PAGES + " pages, all in memory: " + ms(then)
+				+ "ms");
+
+		for (int budget = 2; budget <= 32; budget *= 2) {
+			SpillingFastHashtableExtender sfte = new SpillingFastHashtableExtender(
+					Files.createTempFile("fht", ".spill"), budget * PAGE);
+			for (int key = 0; key < (PAGES << 16); key += 4) {
+				sfte.put(key, key);
+			}
+			long hits = sfte.getPageHits();
+			long faults = sfte.getPageFaults();
+			then = start();
+			for (int n = 0; n < GETS; ++n) {
+				sfte.get(keys[n], r);
+			}
+			double gets = ms(then);
+			hits = sfte.getPageHits() - hits;
+			faults = sfte.getPageFaults() - faults;
+			System.out.println("budget " + budget + " pages: " + gets + "ms, hit rate "
+					+ (double) hits / (hits + faults) + ", " + faults + " faults, resident "
+					+ sfte.getResidentBytes() / 1024 + "KB");
+			sfte.close();
+		}
+
+	}
+
+}
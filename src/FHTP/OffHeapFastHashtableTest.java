@@ -0,0 +1,174 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.IntLongConsumer;
+import fastHashtable.OffHeapFastHashtable;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class OffHeapFastHashtableTest {
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run();
+	}
+
+	/*
+	 * Test put, containsKey & get against a FastHashtable.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 20;
+			OffHeapFastHashtable oft = new OffHeapFastHashtable();
+			FastHashtable ft = new FastHashtable(N);
+			Random rand = new Random(5);
+			for (int i = 0; i < N / 4; ++i) {
+				int key = rand.nextInt(N);
+				long value = rand.nextLong();
+				oft.put(key, value);
+				ft.put(key, value);
+			}
+			assert oft.size() == ft.size();
+			long[] a = new long[2];
+			long[] b = new long[2];
+			for (int key = 0; key < N; ++key) {
+				assert oft.containsKey(key) == ft.containsKey(key);
+				assert oft.get(key, a) == ft.get(key, b);
+				if (ft.containsKey(key)) {
+					assert a[1] == b[1];
+				}
+			}
+			assert !oft.containsKey(-1);
+			assert !oft.containsKey(Integer.MAX_VALUE);
+			oft.put(Integer.MAX_VALUE, 7);
+			assert oft.get(Integer.MAX_VALUE, a) && a[1] == 7;
+			oft.close();
+			return true;
+		}
+	}
+
+	/*
+	 * forEach visits keys in ascending order.
+	 */
+	public class TestIteration extends TestAbstract {
+		public boolean run() {
+			OffHeapFastHashtable oft = new OffHeapFastHashtable();
+			for (int i = 14; i >= 0; i -= 2) {
+				oft.put(i << 14, i);
+			}
+			final StringBuilder sb = new StringBuilder();
+			oft.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					sb.append(p_key >> 14).append(',').append(p_value).append(';');
+				}
+			});
+			assert sb.toString().equals("0,0;2,2;4,4;6,6;8,8;10,10;12,12;14,14;");
+			oft.close();
+			return true;
+		}
+	}
+
+	/*
+	 * a closed table refuses to be used.
+	 */
+	public class TestClose extends TestAbstract {
+		public boolean run() {
+			OffHeapFastHashtable oft = new OffHeapFastHashtable(1 << 20);
+			oft.put(1, 1);
+			oft.close();
+			oft.close();
+			assert oft.size() == 1;
+			try {
+				oft.containsKey(1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			try {
+				oft.put(1, 1);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * the heap used by a table does not grow with its entries.
+	 */
+	public class TestHeapFootprint extends TestAbstract {
+		public boolean run() {
+			final int N = 1 << 24;
+			Runtime rt = Runtime.getRuntime();
+			OffHeapFastHashtable oft = new OffHeapFastHashtable(N);
+			oft.put(N - 1, 0);
+			System.gc();
+			long before = rt.totalMemory() - rt.freeMemory();
+			for (int key = 0; key < N; ++key) {
+				oft.put(key, key);
+			}
+			System.gc();
+			long after = rt.totalMemory() - rt.freeMemory();
+			System.out.println(this.getClass().getName() + ":heap growth:\t"
+					+ (after - before) + " bytes, native: "
+					+ oft.getMemoryUsage() + " bytes for " + oft.size() + " entries");
+			assert after - before < (1 << 20);
+			oft.close();
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestIteration());
+		tests.add(new TestClose());
+		tests.add(new TestHeapFootprint());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		OffHeapFastHashtableTest test = new OffHeapFastHashtableTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * This mini test harness has a framework for adding new unit tests. The main function automatically
+ * runs each test that is loaded into the tests list.
+ */
+
+package FHTP;
+
+import fastHashtable.FastHashtable;
+import fastHashtable.IntLongConsumer;
+import fastHashtable.SpillingFastHashtableExtender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class SpillingFastHashtableExtenderTest {
+
+	/*
+	 * the bytes of a dense page.
+	 */
+	private static final long PAGE = new FastHashtable(1 << 16).getMemoryUsage();
+
+	/*
+	 * Base class for unit tests.
+	 */
+	private abstract class TestAbstract {
+		public abstract boolean run() throws IOException;
+	}
+
+	/*
+	 * Test put, get, containsKey and forEach against a TreeMap with a budget
+	 * of two dense pages, so pages are spilled and read back all the time.
+	 */
+	public class TestPutGet extends TestAbstract {
+		public boolean run() throws IOException {
+			Path file = Files.createTempFile("fht", ".spill");
+			SpillingFastHashtableExtender sfte = new SpillingFastHashtableExtender(file, 2 * PAGE);
+			TreeMap<Integer, Long> map = new TreeMap<Integer, Long>();
+			Random rand = new Random(61);
+			for (int n = 0; n < 200000; ++n) {
+				// pages 0 to 15 dense and mostly filled in order, pages 20 to
+				// 29 sparse.
+				int key = n % 50 == 0 ? ((20 + rand.nextInt(10)) << 16) + rand.nextInt(1 << 16)
+						: n % 50 == 1 ? rand.nextInt(16 << 16)
+						: ((n / 12500) << 16) + rand.nextInt(1 << 16);
+				long value = rand.nextLong();
+				sfte.put(key, value);
+				map.put(key, value);
+				assert sfte.getResidentBytes() <= 2 * PAGE || sfte.getResidentPages() == 1;
+			}
+			assert sfte.size() == map.size();
+			assert sfte.getPageCount() == 26;
+			assert sfte.getEvictions() > 0 && sfte.getPageFaults() > 0;
+
+			long[] r = new long[2];
+			for (int n = 0; n < 2000; ++n) {
+				int key = rand.nextInt(30 << 16);
+				Long value = map.get(key);
+				assert sfte.containsKey(key) == (value != null);
+				assert sfte.get(key, r) == (value != null);
+				if (value != null) {
+					assert r[1] == value;
+				}
+			}
+			assert !sfte.containsKey(-1) && !sfte.get(Integer.MAX_VALUE, r);
+
+			final TreeMap<Integer, Long> seen = new TreeMap<Integer, Long>();
+			long faults = sfte.getPageFaults();
+			sfte.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					assert seen.put(p_key, p_value) == null;
+				}
+			});
+			assert seen.equals(map);
+			assert sfte.getPageFaults() == faults;
+
+			try {
+				sfte.put(-1, 0);
+				assert false;
+			} catch (ArrayIndexOutOfBoundsException e) {
+
+			}
+			sfte.close();
+			assert !Files.exists(file);
+			try {
+				sfte.get(0, r);
+				assert false;
+			} catch (IllegalStateException e) {
+
+			}
+			sfte.close();
+			return true;
+		}
+	}
+
+	/*
+	 * a page that was read back and not changed is evicted without a write,
+	 * and a changed one is written again.
+	 */
+	public class TestCleanEviction extends TestAbstract {
+		public boolean run() throws IOException {
+			Path file = Files.createTempFile("fht", ".spill");
+			SpillingFastHashtableExtender sfte = new SpillingFastHashtableExtender(file, PAGE);
+			for (int j = 0; j < 4; ++j) {
+				for (int q = 0; q < 4000; ++q) {
+					sfte.put((j << 16) + q, j + q);
+				}
+			}
+			assert sfte.getResidentPages() == 1;
+			assert sfte.getSpillWrites() == 3;
+
+			// the first get writes page 3, which was never spilled.
+			long[] r = new long[2];
+			for (int n = 0; n < 20; ++n) {
+				int j = n % 4;
+				assert sfte.get((j << 16) + n, r) && r[1] == j + n;
+			}
+			assert sfte.getSpillWrites() == 4;
+			assert sfte.getEvictions() == 3 + 20;
+			assert sfte.getPageFaults() == 20;
+
+			sfte.put(1 << 16, -1);
+			sfte.get(0, r);
+			assert sfte.getSpillWrites() == 5;
+			assert sfte.get(1 << 16, r) && r[1] == -1;
+			assert sfte.size() == 16000;
+			sfte.close();
+			return true;
+		}
+	}
+
+	/*
+	 * with accesses skewed to a few hot pages, CLOCK keeps the hot pages in
+	 * memory and most accesses are hits.
+	 */
+	public class TestHotSet extends TestAbstract {
+		public boolean run() throws IOException {
+			Path file = Files.createTempFile("fht", ".spill");
+			SpillingFastHashtableExtender sfte = new SpillingFastHashtableExtender(file, 4 * PAGE);
+			for (int key = 0; key < (24 << 16); key += 16) {
+				sfte.put(key, key);
+			}
+			Random rand = new Random(67);
+			long[] r = new long[2];
+			long hits = sfte.getPageHits();
+			long faults = sfte.getPageFaults();
+			for (int n = 0; n < 100000; ++n) {
+				// 90% of the accesses go to pages 0 and 1.
+				int j = rand.nextInt(10) != 0 ? rand.nextInt(2) : 2 + rand.nextInt(22);
+				int key = (j << 16) + 16 * rand.nextInt(1 << 12);
+				assert sfte.get(key, r) && r[1] == key;
+			}
+			hits = sfte.getPageHits() - hits;
+			faults = sfte.getPageFaults() - faults;
+			assert hits + faults == 100000;
+			assert hits > 0.85 * 100000;
+			assert sfte.getResidentBytes() <= 4 * PAGE;
+			sfte.close();
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the list of unit tests to run. Add new tests here.
+	 */
+	public ArrayList<TestAbstract> getTestsList() {
+
+		ArrayList<TestAbstract> tests = new ArrayList<TestAbstract>();
+
+		tests.add(new TestPutGet());
+		tests.add(new TestCleanEviction());
+		tests.add(new TestHotSet());
+
+		return tests;
+
+	}
+
+	public static void main(String[] args) {
+
+		/*
+		 * iterate over all of the unit tests and count the number of failures,
+		 * then, report the result.
+		 */
+		int failure_count = 0;
+		SpillingFastHashtableExtenderTest test = new SpillingFastHashtableExtenderTest();
+		ArrayList<TestAbstract> tests = test.getTestsList();
+
+		TestAbstract ti = null;
+
+		for (int i = 0; i < tests.size(); ++i) {
+			try {
+				ti = tests.get(i);
+				boolean r = ti.run();
+				assert r;
+			} catch (IOException e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass() + " " + e);
+			} catch (AssertionError e) {
+				++failure_count;
+				System.out.println("failure: " + ti.getClass());
+
+			}
+		}
+		System.out.println("failure count: " + failure_count + " of "
+				+ tests.size() + " unit tests");
+
+	}
+
+}
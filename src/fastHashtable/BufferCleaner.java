@@ -0,0 +1,62 @@
+package fastHashtable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/*
+ * Releases the native memory of a direct or mapped ByteBuffer right away
+ * instead of when the buffer is garbage collected.
+ *
+ * There is no public API for this. Java 9 and later have
+ * sun.misc.Unsafe.invokeCleaner, Java 8 has DirectBuffer.cleaner().clean().
+ * Both are looked up reflectively. If neither is available free does
+ * nothing and the memory is returned by the garbage collector.
+ *
+ * A buffer must not be used after it has been freed.
+ */
+final class BufferCleaner {
+
+	private static final Object _unsafe;
+	private static final Method _invokeCleaner;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+		} catch (Exception e) {
+			invokeCleaner = null;
+		}
+		_unsafe = unsafe;
+		_invokeCleaner = invokeCleaner;
+	}
+
+	private BufferCleaner() {
+	}
+
+	static void free(ByteBuffer p_buffer) {
+		if (p_buffer == null || !p_buffer.isDirect()) {
+			return;
+		}
+		try {
+			if (_invokeCleaner != null) {
+				_invokeCleaner.invoke(_unsafe, p_buffer);
+			} else {
+				Method cleaner = p_buffer.getClass().getMethod("cleaner");
+				cleaner.setAccessible(true);
+				Object c = cleaner.invoke(p_buffer);
+				if (c != null) {
+					c.getClass().getMethod("clean").invoke(c);
+				}
+			}
+		} catch (Exception e) {
+			// leave it to the garbage collector.
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package fastHashtable;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * A hashtable for int keys and long values whose bitmaps and values live in
+ * ByteBuffers outside the Java heap. The heap holds only the page directory,
+ * one reference per page of _PAGE_SIZE keys.
+ *
+ * Page layout, in the buffer's byte order:
+ *
+ *     [0, _BITMAP_BYTES)           _PAGE_SIZE/64 bitmap words. key q of the
+ *                                  page is bit q&63 of word q>>>6.
+ *     [_BITMAP_BYTES, _PAGE_BYTES) _PAGE_SIZE values. the value of key q is
+ *                                  at _BITMAP_BYTES+8*q.
+ *
+ * Subclasses decide where a page comes from. The buffers are released by
+ * close, after which every method but close and size throws.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ */
+abstract class BufferFastHashtable implements Closeable {
+
+	static final int _PAGE_SHIFT = 16;
+	static final int _PAGE_SIZE = 1 << _PAGE_SHIFT;
+	static final int _BITMAP_BYTES = _PAGE_SIZE / Byte.SIZE;
+	static final int _PAGE_BYTES = _BITMAP_BYTES + _PAGE_SIZE * (Long.SIZE / Byte.SIZE);
+
+	/*
+	 * null after close.
+	 */
+	ByteBuffer[] _pages = new ByteBuffer[0];
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	int _size;
+
+	/*
+	 * return a zeroed buffer of _PAGE_BYTES bytes for page p_j.
+	 */
+	abstract ByteBuffer _newPage(int p_j);
+
+	ByteBuffer[] _pages() {
+		if (this._pages == null) {
+			throw new IllegalStateException("table is closed");
+		}
+		return this._pages;
+	}
+
+	/*
+	 * page p_j, creating it and growing the directory as needed.
+	 */
+	ByteBuffer _page(int p_j) {
+		ByteBuffer[] pages = this._pages();
+		if (p_j >= pages.length) {
+			pages = Arrays.copyOf(pages, p_j + 1);
+			this._pages = pages;
+		}
+		if (pages[p_j] == null) {
+			pages[p_j] = this._newPage(p_j);
+		}
+		return pages[p_j];
+	}
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * keys above maxKey() add pages on put.
+	 */
+	public int maxKey() {
+		return this._pages().length * _PAGE_SIZE - 1;
+	}
+
+	/*
+	 * how many bytes of native memory the pages use.
+	 */
+	public long getMemoryUsage() {
+		long total = 0;
+		for (ByteBuffer p : this._pages()) {
+			if (p != null) {
+				total += _PAGE_BYTES;
+			}
+		}
+		return total;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 */
+	public void put(int p_key, long p_value) {
+		if (p_key < 0) {
+			throw new ArrayIndexOutOfBoundsException(p_key);
+		}
+		ByteBuffer p = this._page(p_key >>> _PAGE_SHIFT);
+		int q = p_key & (_PAGE_SIZE - 1);
+		int w = (q >>> 6) << 3;
+		long word = p.getLong(w);
+		long bit = 1L << q;
+		p.putLong(_BITMAP_BYTES + (q << 3), p_value);
+		if ((word & bit) == 0) {
+			p.putLong(w, word | bit);
+			this._size++;
+		}
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		ByteBuffer[] pages = this._pages();
+		int j = p_key >>> _PAGE_SHIFT;
+		if (p_key < 0 || j >= pages.length || pages[j] == null) {
+			return false;
+		}
+		int q = p_key & (_PAGE_SIZE - 1);
+		return (pages[j].getLong((q >>> 6) << 3) & (1L << q)) != 0;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean get(int p_key, long[] p_result) {
+		ByteBuffer[] pages = this._pages();
+		int j = p_key >>> _PAGE_SHIFT;
+		if (p_key < 0 || j >= pages.length || pages[j] == null) {
+			return false;
+		}
+		int q = p_key & (_PAGE_SIZE - 1);
+		if ((pages[j].getLong((q >>> 6) << 3) & (1L << q)) != 0) {
+			p_result[0] = 1;
+			p_result[1] = pages[j].getLong(_BITMAP_BYTES + (q << 3));
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * call p_consumer for every key/value pair in ascending key order.
+	 */
+	public void forEach(IntLongConsumer p_consumer) {
+		ByteBuffer[] pages = this._pages();
+		for (int j = 0; j < pages.length; ++j) {
+			ByteBuffer p = pages[j];
+			if (p == null) {
+				continue;
+			}
+			for (int w = 0; w < _BITMAP_BYTES; w += 8) {
+				for (long bits = p.getLong(w); bits != 0; bits &= bits - 1) {
+					int q = (w << 3) + Long.numberOfTrailingZeros(bits);
+					p_consumer.accept((j << _PAGE_SHIFT) + q, p.getLong(_BITMAP_BYTES + (q << 3)));
+				}
+			}
+		}
+	}
+
+	/*
+	 * release the pages. closing a closed table does nothing.
+	 */
+	public void close() {
+		if (this._pages == null) {
+			return;
+		}
+		ByteBuffer[] pages = this._pages;
+		this._pages = null;
+		for (ByteBuffer p : pages) {
+			BufferCleaner.free(p);
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package fastHashtable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+ * Reads the chunks written by ChunkedOutput from a channel through one buffer
+ * of fixed size. Only the bytes of the chunks are read from the channel,
+ * nothing after the end chunk.
+ */
+final class ChunkedInput {
+
+	private final ReadableByteChannel _channel;
+	private final ByteBuffer _buffer = ByteBuffer.allocate(ChunkedOutput._CHUNK_BYTES).order(
+			ByteOrder.LITTLE_ENDIAN);
+	private final byte[] _bytes = this._buffer.array();
+
+	/*
+	 * the next byte to read and the end of the current chunk.
+	 */
+	private int _position;
+	private int _limit;
+
+	ChunkedInput(ReadableByteChannel p_channel) {
+		this._channel = p_channel;
+	}
+
+	private void _read(int p_length) throws IOException {
+		this._buffer.clear();
+		this._buffer.limit(p_length);
+		while (this._buffer.hasRemaining()) {
+			if (this._channel.read(this._buffer) < 0) {
+				throw new EOFException("stream ends inside a table");
+			}
+		}
+	}
+
+	/*
+	 * the length of the next chunk, its bytes are read if it is not the end
+	 * chunk.
+	 */
+	private int _next() throws IOException {
+		this._read(4);
+		int length = this._buffer.getInt(0);
+		if (length < 0 || length > this._bytes.length) {
+			throw new IOException("corrupt stream, chunk length " + length);
+		}
+		if (length > 0) {
+			this._read(length);
+		}
+		this._position = 0;
+		this._limit = length;
+		return length;
+	}
+
+	/*
+	 * make sure the current chunk has p_bytes more bytes. a value is never
+	 * split across chunks, so a chunk that has some bytes left holds the
+	 * whole value.
+	 */
+	private void _ensure(int p_bytes) throws IOException {
+		if (this._position == this._limit && this._next() == 0) {
+			throw new IOException("corrupt stream, table ends early");
+		}
+		if (this._position + p_bytes > this._limit) {
+			throw new IOException("corrupt stream, value crosses a chunk");
+		}
+	}
+
+	int getInt() throws IOException {
+		this._ensure(4);
+		int value = this._buffer.getInt(this._position);
+		this._position += 4;
+		return value;
+	}
+
+	void getInts(int[] p_values, int p_from, int p_to) throws IOException {
+		while (p_from < p_to) {
+			this._ensure(4);
+			int n = Math.min((this._limit - this._position) >>> 2, p_to - p_from);
+			this._buffer.position(this._position);
+			this._buffer.asIntBuffer().get(p_values, p_from, n);
+			this._position += 4 * n;
+			p_from += n;
+		}
+	}
+
+	/*
+	 * read the values written by ChunkedOutput.putDeltas into the set bits
+	 * of p_bits in p_row. returns the last value.
+	 */
+	long getDeltas(long[] p_row, int p_bits, long p_previous) throws IOException {
+		if (p_bits == 0) {
+			return p_previous;
+		}
+		this._ensure(1);
+		byte[] bytes = this._bytes;
+		int position = this._position;
+		int limit = this._limit;
+		for (int b = p_bits; b != 0; b &= b - 1) {
+			long v = 0;
+			for (int shift = 0;; shift += 7) {
+				if (position == limit || shift > 63) {
+					throw new IOException("corrupt stream, bad varint");
+				}
+				byte x = bytes[position++];
+				v |= (long) (x & 0x7F) << shift;
+				if (x >= 0) {
+					break;
+				}
+			}
+			p_previous += (v >>> 1) ^ -(v & 1);
+			p_row[Integer.numberOfTrailingZeros(b)] = p_previous;
+		}
+		this._position = position;
+		return p_previous;
+	}
+
+	/*
+	 * read the end chunk.
+	 */
+	void finish() throws IOException {
+		if (this._position != this._limit || this._next() != 0) {
+			throw new IOException("corrupt stream, data after the table");
+		}
+	}
+
+}
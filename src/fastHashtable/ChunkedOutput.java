@@ -0,0 +1,125 @@
+package fastHashtable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/*
+ * Writes the binary form of the tables to a channel through one buffer of
+ * fixed size, see FastHashtable.writeTo.
+ *
+ * The stream is a sequence of chunks: a 4 byte length, then that many bytes,
+ * then a chunk of length 0 at the end. A value is never split across two
+ * chunks. The reader reads exactly the chunks of one table, so tables can
+ * follow each other, or other data, on the same channel.
+ *
+ * All numbers are little endian. Values are written as zigzag varints of
+ * their difference to the value before them.
+ */
+final class ChunkedOutput {
+
+	static final int _CHUNK_BYTES = 1 << 16;
+
+	/*
+	 * the longest varint of a long.
+	 */
+	static final int _VARINT_BYTES = 10;
+
+	private final WritableByteChannel _channel;
+	private final ByteBuffer _buffer = ByteBuffer.allocate(4 + _CHUNK_BYTES).order(
+			ByteOrder.LITTLE_ENDIAN);
+	private final byte[] _bytes = this._buffer.array();
+
+	/*
+	 * the end of the data of the chunk being filled. the length of the chunk
+	 * goes before it at 0.
+	 */
+	private int _position = 4;
+
+	ChunkedOutput(WritableByteChannel p_channel) {
+		this._channel = p_channel;
+	}
+
+	void putInt(int p_value) throws IOException {
+		if (this._position + 4 > this._bytes.length) {
+			this._flush();
+		}
+		this._buffer.putInt(this._position, p_value);
+		this._position += 4;
+	}
+
+	/*
+	 * p_values[p_from], ..., p_values[p_to-1], split over as many chunks as
+	 * needed.
+	 */
+	void putInts(int[] p_values, int p_from, int p_to) throws IOException {
+		while (p_from < p_to) {
+			int room = (this._bytes.length - this._position) >>> 2;
+			if (room == 0) {
+				this._flush();
+				continue;
+			}
+			int n = Math.min(room, p_to - p_from);
+			this._buffer.clear();
+			this._buffer.position(this._position);
+			this._buffer.asIntBuffer().put(p_values, p_from, n);
+			this._position += 4 * n;
+			p_from += n;
+		}
+	}
+
+	/*
+	 * the values of the set bits of p_bits in p_row, in bit order, each as
+	 * the difference to the value before it, starting from p_previous.
+	 * returns the last value. the values of one bucket go in one chunk, so
+	 * the room check is made once per bucket and not once per value.
+	 */
+	long putDeltas(long[] p_row, int p_bits, long p_previous) throws IOException {
+		if (this._position + Integer.bitCount(p_bits) * _VARINT_BYTES > this._bytes.length) {
+			this._flush();
+		}
+		byte[] bytes = this._bytes;
+		int position = this._position;
+		for (int b = p_bits; b != 0; b &= b - 1) {
+			long value = p_row[Integer.numberOfTrailingZeros(b)];
+			long d = value - p_previous;
+			long v = (d << 1) ^ (d >> 63);
+			while ((v & ~0x7FL) != 0) {
+				bytes[position++] = (byte) (v | 0x80);
+				v >>>= 7;
+			}
+			bytes[position++] = (byte) v;
+			p_previous = value;
+		}
+		this._position = position;
+		return p_previous;
+	}
+
+	private void _flush() throws IOException {
+		if (this._position == 4) {
+			return;
+		}
+		this._buffer.putInt(0, this._position - 4);
+		this._write(this._position);
+		this._position = 4;
+	}
+
+	private void _write(int p_length) throws IOException {
+		this._buffer.clear();
+		this._buffer.limit(p_length);
+		while (this._buffer.hasRemaining()) {
+			this._channel.write(this._buffer);
+		}
+	}
+
+	/*
+	 * write what is buffered and the end chunk.
+	 */
+	void finish() throws IOException {
+		this._flush();
+		this._buffer.putInt(0, 0);
+		this._write(4);
+	}
+
+}
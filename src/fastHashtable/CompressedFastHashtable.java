@@ -0,0 +1,235 @@
+package fastHashtable;
+
+import java.util.Arrays;
+
+/*
+ * A hashtable for int keys and long values with the same contract as
+ * FastHashtable, for tables whose keys are sparse in the key space.
+ *
+ * FastHashtable keeps a value slot for every possible key. This class keeps
+ * only the bitmap for every possible key and packs the values of the keys that
+ * are present. Memory is one bit per possible key plus 8 bytes per entry.
+ *
+ * Layout:
+ *
+ * 1. key p is bit p&63 of _words[p>>>6].
+ * 2. every _WORDS_PER_BLOCK words form a block. The values of a block are
+ *    packed in key order in _values[block].
+ * 3. _rank[w] is the number of keys in the block of word w that are before
+ *    word w, so the value of key p is at _rank[w] plus the popcount of the
+ *    lower bits of word w.
+ *
+ * get and containsKey are O(1). A put of a new key shifts the values and ranks
+ * that follow it in its block, so its cost is bounded by the block size.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ * 2. The maximum key value is maxKey(). The table grows on put.
+ */
+public class CompressedFastHashtable {
+
+	/*
+	 * 64 words of 64 bits, 4096 keys per block. _rank fits in a short.
+	 */
+	private static final int _WORDS_PER_BLOCK = 64;
+	private static final int _BLOCK_SHIFT = 6;
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	private int _size;
+
+	private long[] _words;
+	private short[] _rank;
+	private long[][] _values;
+
+	/*
+	 * the number of values in use in each block.
+	 */
+	private int[] _count;
+
+	private void _init(int p_blocks) {
+		this._words = new long[p_blocks * _WORDS_PER_BLOCK];
+		this._rank = new short[p_blocks * _WORDS_PER_BLOCK];
+		this._values = new long[p_blocks][];
+		this._count = new int[p_blocks];
+	}
+
+	/*
+	 * the key space is linear, so growing is a copy of the arrays, no entry
+	 * moves.
+	 */
+	private void _grow(int p_key) {
+		int blocks = this._values.length;
+		while ((long) blocks * _WORDS_PER_BLOCK * Long.SIZE <= p_key) {
+			blocks *= 2;
+		}
+		this._words = Arrays.copyOf(this._words, blocks * _WORDS_PER_BLOCK);
+		this._rank = Arrays.copyOf(this._rank, blocks * _WORDS_PER_BLOCK);
+		this._values = Arrays.copyOf(this._values, blocks);
+		this._count = Arrays.copyOf(this._count, blocks);
+	}
+
+	/*
+	 * default constructor.
+	 */
+	public CompressedFastHashtable() {
+		this._init(1);
+	}
+
+	/*
+	 * specify the capacity of the object. the capacity will always round up
+	 * to a whole number of blocks.
+	 */
+	public CompressedFastHashtable(int p_max_entries) {
+		int keys_per_block = _WORDS_PER_BLOCK * Long.SIZE;
+		this._init(Math.max(1, (p_max_entries + keys_per_block - 1) / keys_per_block));
+	}
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * key k must satisfy 0<=k<=maxKey() to be a valid key.
+	 */
+	public int maxKey() {
+		return this.maxSize() - 1;
+	}
+
+	public int maxSize() {
+		return this._words.length * Long.SIZE;
+	}
+
+	/*
+	 * approximately, how many bytes are used by this object.
+	 */
+	public long getMemoryUsage() {
+		long total = 8L * this._words.length + 2L * this._rank.length
+				+ 4L * this._count.length + 8L * this._values.length;
+		for (int b = 0; b < this._values.length; ++b) {
+			if (this._values[b] != null) {
+				total += 8L * this._values[b].length;
+			}
+		}
+		return total;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 */
+	public void put(int p_key, long p_value) {
+		if (p_key < 0) {
+			throw new ArrayIndexOutOfBoundsException(p_key);
+		}
+		if (p_key > this.maxKey()) {
+			this._grow(p_key);
+		}
+		int w = p_key >>> 6;
+		long bit = 1L << p_key;
+		long word = this._words[w];
+		int b = w >>> _BLOCK_SHIFT;
+		int r = this._rank[w] + Long.bitCount(word & (bit - 1));
+
+		if ((word & bit) != 0) {
+			this._values[b][r] = p_value;
+			return;
+		}
+
+		/*
+		 * a new key. make room at r in the block's values and move the rank
+		 * of the following words of the block up by one.
+		 */
+		long[] values = this._values[b];
+		int count = this._count[b];
+		if (values == null || count == values.length) {
+			long[] t = new long[Math.max(4, count + (count >>> 1))];
+			if (values != null) {
+				System.arraycopy(values, 0, t, 0, r);
+			}
+			System.arraycopy(values == null ? t : values, r, t, r + 1, count - r);
+			values = t;
+			this._values[b] = t;
+		} else {
+			System.arraycopy(values, r, values, r + 1, count - r);
+		}
+		values[r] = p_value;
+		this._count[b] = count + 1;
+
+		int end = (b + 1) * _WORDS_PER_BLOCK;
+		for (int i = w + 1; i < end; ++i) {
+			++this._rank[i];
+		}
+		this._words[w] = word | bit;
+		this._size++;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		return (this._words[p_key >>> 6] & (1L << p_key)) != 0;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean get(int p_key, long[] p_result) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		int w = p_key >>> 6;
+		long bit = 1L << p_key;
+		long word = this._words[w];
+		if ((word & bit) != 0) {
+			p_result[0] = 1;
+			p_result[1] = this._values[w >>> _BLOCK_SHIFT][this._rank[w]
+					+ Long.bitCount(word & (bit - 1))];
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * call p_consumer for every key/value pair in ascending key order.
+	 */
+	public void forEach(IntLongConsumer p_consumer) {
+		for (int b = 0; b < this._values.length; ++b) {
+			long[] values = this._values[b];
+			int n = 0;
+			for (int w = b * _WORDS_PER_BLOCK; n < this._count[b]; ++w) {
+				for (long bits = this._words[w]; bits != 0; bits &= bits - 1) {
+					p_consumer.accept((w << 6) + Long.numberOfTrailingZeros(bits), values[n++]);
+				}
+			}
+		}
+	}
+
+	/*
+	 * same format as FastHashtable.toString.
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		this.forEach(new IntLongConsumer() {
+			public void accept(int p_key, long p_value) {
+				sb.append('(');
+				sb.append(p_key);
+				sb.append(',');
+				sb.append(p_value);
+				sb.append(')');
+			}
+		});
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
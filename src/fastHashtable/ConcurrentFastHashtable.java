@@ -0,0 +1,167 @@
+package fastHashtable;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A hashtable for int keys and long values that can be shared by any number of
+ * reading and writing threads without a lock.
+ *
+ * The keys are split into segments of _SEGMENT_SIZE keys, the same as the
+ * pages of FastHashtableExtender. A segment uses FastHashtable's addressing:
+ * key q of the segment is bit q/_BUCKET_COUNT of bucket q%_BUCKET_COUNT.
+ * Neighbouring keys therefore sit in different bucket words and writers of
+ * nearby keys rarely contend on the same word.
+ *
+ * 1. put writes the value with a release store, then sets the bucket bit with
+ *    a CAS. The CAS that takes a bit from 0 to 1 counts the entry.
+ * 2. get and containsKey read the bucket bit, then the value. Seeing the bit
+ *    guarantees seeing a value stored before it. Neither one loops or
+ *    blocks, so both are wait-free.
+ * 3. The segment directory covers every non-negative int. A segment is
+ *    created on the first put into it and installed with a CAS, so growing
+ *    never stops other threads.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ *
+ * Iteration and size() are weakly consistent: they see every put that
+ * finished before they started, and may or may not see puts that are in
+ * flight.
+ */
+public class ConcurrentFastHashtable {
+
+	private static final int _SEGMENT_SHIFT = 16;
+	private static final int _SEGMENT_SIZE = 1 << _SEGMENT_SHIFT;
+	private static final int _BUCKET_COUNT = _SEGMENT_SIZE / Integer.SIZE;
+
+	private static final class Segment {
+		final AtomicIntegerArray _buckets = new AtomicIntegerArray(_BUCKET_COUNT);
+		final AtomicLongArray _values = new AtomicLongArray(_SEGMENT_SIZE);
+	}
+
+	private final AtomicReferenceArray<Segment> _segments =
+			new AtomicReferenceArray<Segment>((Integer.MAX_VALUE >>> _SEGMENT_SHIFT) + 1);
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	private final LongAdder _size = new LongAdder();
+
+	private Segment _segment(int p_j) {
+		Segment s = this._segments.get(p_j);
+		if (s == null) {
+			Segment t = new Segment();
+			if (this._segments.compareAndSet(p_j, null, t)) {
+				s = t;
+			} else {
+				s = this._segments.get(p_j);
+			}
+		}
+		return s;
+	}
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public int size() {
+		return this._size.intValue();
+	}
+
+	/*
+	 * every non-negative int is a valid key.
+	 */
+	public int maxKey() {
+		return Integer.MAX_VALUE;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 */
+	public void put(int p_key, long p_value) {
+		if (p_key < 0) {
+			throw new ArrayIndexOutOfBoundsException(p_key);
+		}
+		Segment s = this._segment(p_key >>> _SEGMENT_SHIFT);
+		int q = p_key & (_SEGMENT_SIZE - 1);
+		int i = q % _BUCKET_COUNT;
+		int k = q / _BUCKET_COUNT;
+		int bit = 1 << k;
+
+		s._values.lazySet(i * Integer.SIZE + k, p_value);
+
+		int w = s._buckets.get(i);
+		while ((w & bit) == 0) {
+			if (s._buckets.compareAndSet(i, w, w | bit)) {
+				this._size.increment();
+				return;
+			}
+			w = s._buckets.get(i);
+		}
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		if (p_key < 0) {
+			return false;
+		}
+		Segment s = this._segments.get(p_key >>> _SEGMENT_SHIFT);
+		if (s == null) {
+			return false;
+		}
+		int q = p_key & (_SEGMENT_SIZE - 1);
+		int i = q % _BUCKET_COUNT;
+		int k = q / _BUCKET_COUNT;
+		return (s._buckets.get(i) & (1 << k)) != 0;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean get(int p_key, long[] p_result) {
+		if (p_key < 0) {
+			return false;
+		}
+		Segment s = this._segments.get(p_key >>> _SEGMENT_SHIFT);
+		if (s == null) {
+			return false;
+		}
+		int q = p_key & (_SEGMENT_SIZE - 1);
+		int i = q % _BUCKET_COUNT;
+		int k = q / _BUCKET_COUNT;
+		if ((s._buckets.get(i) & (1 << k)) != 0) {
+			p_result[0] = 1;
+			p_result[1] = s._values.get(i * Integer.SIZE + k);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * call p_consumer for every key/value pair, segment by segment in the
+	 * same order as FastHashtableExtender.forEach.
+	 */
+	public void forEach(IntLongConsumer p_consumer) {
+		for (int j = 0; j < this._segments.length(); ++j) {
+			Segment s = this._segments.get(j);
+			if (s == null) {
+				continue;
+			}
+			int base = j << _SEGMENT_SHIFT;
+			for (int i = 0; i < _BUCKET_COUNT; ++i) {
+				for (int b = s._buckets.get(i); b != 0; b &= b - 1) {
+					int k = Integer.numberOfTrailingZeros(b);
+					p_consumer.accept(base + k * _BUCKET_COUNT + i,
+							s._values.get(i * Integer.SIZE + k));
+				}
+			}
+		}
+	}
+
+}
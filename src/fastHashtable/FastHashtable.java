@@ -1,12 +1,19 @@
 package fastHashtable;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongBinaryOperator;
+
 /*
  * A hashtable for int keys and long values. This class has enough of the methods of Java's Hashtable
  * to allow a performance comparison.
  * 
  * Requirements:
  * 
- * 1. Negative ints are not supported.
+ * 1. Negative ints are not supported, unless setSignedKeys(true) is called.
  * 2. The maximum key value is _bit_vector_size*_BUCKET_COUNT-1.
  * 
  * Some methods of this class throw a runtime exception if those requirements are not met.
@@ -34,37 +41,216 @@ public class FastHashtable {
 
 	private final int _bit_vector_size = Integer.SIZE;
 
+	/*
+	 * Growth state. Doubling _BUCKET_COUNT moves key p from bucket p%B, bit
+	 * p/B to bucket p%(2B), bit p/(2B). So the even bits of old bucket i
+	 * become the low half of new bucket i and the odd bits become the low
+	 * half of new bucket i+B, and a growth is a per-bucket bit split rather
+	 * than a re-insert of every entry.
+	 * 
+	 * While a growth is pending, _old_buckets and _old_values hold the old
+	 * table and a row of _values is null until its old bucket has been split.
+	 * With _incremental_growth set, the split is spread over later puts,
+	 * otherwise the growth completes before put returns.
+	 */
+	private boolean _incremental_growth = false;
+	private int _old_BUCKET_COUNT;
+	private int[] _old_buckets;
+	private long[][] _old_values;
+	private int _migrated;
+
+	/*
+	 * with signed keys, negative key p is stored in _negative as ~p. ~ maps
+	 * -1,-2,...,MIN_VALUE onto 0,1,...,MAX_VALUE, so a dense range of
+	 * negative keys is a dense range of keys in _negative. null unless signed
+	 * keys are enabled.
+	 */
+	private FastHashtable _negative;
+
+	/*
+	 * the number of old buckets each put splits while a growth is pending.
+	 */
+	private static final int _MIGRATION_STEP = 8;
+
+	/*
+	 * the counters of getMetrics. always set when
+	 * FastHashtableMetrics.ENABLED, otherwise made on the first getMetrics.
+	 */
+	private FastHashtableMetrics _metrics;
+
+	/*
+	 * Copy-on-write state, see snapshot. _live counts the snapshots that have
+	 * not been released and is null while no snapshot shares the arrays of
+	 * this table. _buckets and the row spine _values are shared while
+	 * _shared_spine is set, row i is shared unless _row_epoch[i]==_epoch.
+	 * taking a snapshot bumps _epoch, which makes every row shared in O(1).
+	 */
+	private AtomicInteger _live;
+	private boolean _shared_spine;
+	private int _epoch;
+	private int[] _row_epoch;
+
+	/*
+	 * for a snapshot, the _live counter of the table it was taken from, null
+	 * for a table that can be written to.
+	 */
+	private AtomicInteger _snapshot;
+	private boolean _released;
+
 	private void _init() {
 		this._buckets = new int[this._BUCKET_COUNT];
 		this._values = new long[this._BUCKET_COUNT][_bit_vector_size];
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics = new FastHashtableMetrics(this);
+		}
 	}
 
-	private void _rehash() {
-		FastHashtable ft = new FastHashtable(2*(this.maxSize()));
-		int[] bitmasks = new int[_bit_vector_size];
-		for (int i = 0; i < 32; ++i) {
-			bitmasks[i] = 1 << i;
+	/*
+	 * double the bucket count. the row arrays of the old table are reused for
+	 * the low halves, only the high halves are allocated.
+	 */
+	private void _grow() {
+		this._finishGrowth();
+		long then = FastHashtableMetrics.ENABLED ? System.nanoTime() : 0;
+		this._old_BUCKET_COUNT	= this._BUCKET_COUNT;
+		this._old_buckets		= this._buckets;
+		this._old_values		= this._values;
+		this._migrated			= 0;
+		
+		this._BUCKET_COUNT	= 2 * this._old_BUCKET_COUNT;
+		this._buckets		= new int[this._BUCKET_COUNT];
+		this._values		= new long[this._BUCKET_COUNT][];
+		this._shared_spine	= false;
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._rehashes++;
+			this._metrics._rehash_nanos += System.nanoTime() - then;
 		}
-		long[] r = new long[2];
-		for (int i = 0; i < this._bit_vector_size; ++i) {
-			for (int j = 0; j < this._BUCKET_COUNT; ++j) {
-				if ((this._buckets[j] & (1 << i)) != 0) {
-					int key = i * this._buckets.length + j;
-					this.get(key, r);
-					ft.put(key, r[1]);
-				}
+		
+		if (!this._incremental_growth) {
+			this._finishGrowth();
+		}
+	}
+
+	/*
+	 * split any old buckets that are left over from a pending growth.
+	 */
+	private void _finishGrowth() {
+		if (this._old_buckets != null) {
+			long then = FastHashtableMetrics.ENABLED ? System.nanoTime() : 0;
+			this._migrate(this._old_BUCKET_COUNT);
+			if (FastHashtableMetrics.ENABLED) {
+				this._metrics._rehash_nanos += System.nanoTime() - then;
 			}
 		}
-		
-		this._BUCKET_COUNT	= ft._BUCKET_COUNT;
-		this._buckets		= ft._buckets;
-		this._values		= ft._values;
-		this._size			= ft._size;
-		
-		ft._buckets = null;
-		ft._values  = null;
-		
 	}
+
+	/*
+	 * make sure new bucket p_bucket has been split out of the old table, then
+	 * split up to p_step more old buckets in order.
+	 */
+	private void _migrateFor(int p_bucket, int p_step) {
+		long then = FastHashtableMetrics.ENABLED ? System.nanoTime() : 0;
+		if (this._values[p_bucket] == null) {
+			this._split(p_bucket % this._old_BUCKET_COUNT);
+		}
+		this._migrate(p_step);
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._rehash_nanos += System.nanoTime() - then;
+		}
+	}
+
+	/*
+	 * count a get, and a hit if p_hit. returns p_hit.
+	 */
+	private boolean _counted(boolean p_hit) {
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._gets++;
+			if (p_hit) {
+				this._metrics._hits++;
+			}
+		}
+		return p_hit;
+	}
+
+	private void _migrate(int p_step) {
+		int end = Math.min(this._old_BUCKET_COUNT, this._migrated + p_step);
+		for (; this._migrated < end; ++this._migrated) {
+			if (this._values[this._migrated] == null) {
+				this._split(this._migrated);
+			}
+		}
+		if (this._migrated == this._old_BUCKET_COUNT) {
+			this._old_buckets	= null;
+			this._old_values	= null;
+			if (this._live != null) {
+				/*
+				 * _split copied the shared rows, every row is owned now.
+				 */
+				this._row_epoch	= new int[this._BUCKET_COUNT];
+				this._epoch		= 0;
+			}
+		}
+	}
+
+	/*
+	 * split old bucket p_i into new buckets p_i and p_i+_old_BUCKET_COUNT. the
+	 * odd values are copied out first since compacting the even values
+	 * overwrites the low half of the row. a row shared with a snapshot is
+	 * copied first.
+	 */
+	private void _split(int p_i) {
+		int w = this._old_buckets[p_i];
+		long[] low = this._old_values[p_i];
+		if (this._live != null && this._row_epoch[p_i] != this._epoch) {
+			low = low.clone();
+		}
+		long[] high = new long[_bit_vector_size];
+		for (int b = w & 0xAAAAAAAA; b != 0; b &= b - 1) {
+			int k = Integer.numberOfTrailingZeros(b);
+			high[k >>> 1] = low[k];
+		}
+		for (int b = w & 0x55555555; b != 0; b &= b - 1) {
+			int k = Integer.numberOfTrailingZeros(b);
+			low[k >>> 1] = low[k];
+		}
+		this._buckets[p_i] = _evenBits(w);
+		this._buckets[p_i + this._old_BUCKET_COUNT] = _evenBits(w >>> 1);
+		this._values[p_i] = low;
+		this._values[p_i + this._old_BUCKET_COUNT] = high;
+	}
+
+	/*
+	 * gather bits 0,2,...,30 of p_w into bits 0..15 of the result.
+	 */
+	static int _evenBits(int p_w) {
+		int x = p_w & 0x55555555;
+		x = (x | (x >>> 1)) & 0x33333333;
+		x = (x | (x >>> 2)) & 0x0F0F0F0F;
+		x = (x | (x >>> 4)) & 0x00FF00FF;
+		x = (x | (x >>> 8)) & 0x0000FFFF;
+		return x;
+	}
+
+	/*
+	 * look up a key that is in a bucket not yet split out of the old table.
+	 */
+	private boolean _oldGet(int p_key, long[] p_result) {
+		if (p_key >= this._old_BUCKET_COUNT * _bit_vector_size) {
+			return false;
+		}
+		int i = p_key % this._old_BUCKET_COUNT;
+		int k = (p_key - i) / this._old_BUCKET_COUNT;
+		if ((this._old_buckets[i] & (1 << k)) != 0) {
+			if (p_result != null) {
+				p_result[0] = 1;
+				p_result[1] = this._old_values[i][k];
+			}
+			return true;
+		} else {
+			return false;
+		}
+	}
+
 	/*
 	 * default constructor.
 	 */
@@ -76,7 +262,8 @@ public class FastHashtable {
 	 * specify the capacity of the object.
 	 * 
 	 * the capacity will always be a multiple of _bit_vector_size. _BUCKET_COUNT
-	 * will always round up to a multiple of _bit_vector_size.
+	 * will always round up to a multiple of _bit_vector_size, with at least
+	 * one bucket.
 	 */
 	public FastHashtable(int p_max_entries) {
 		this._BUCKET_COUNT = 
@@ -84,18 +271,37 @@ public class FastHashtable {
 		if((this._BUCKET_COUNT*this._bit_vector_size)<p_max_entries) {
 			this._BUCKET_COUNT+=1;
 		}
+		this._BUCKET_COUNT = Math.max(1, this._BUCKET_COUNT);
 		this._init();
 	}
 
+	/*
+	 * a table that shares the arrays of p_ft, see snapshot and _fork.
+	 */
+	private FastHashtable(FastHashtable p_ft) {
+		this._BUCKET_COUNT = p_ft._BUCKET_COUNT;
+		this._size = p_ft._size;
+		this._buckets = p_ft._buckets;
+		this._values = p_ft._values;
+		this._incremental_growth = p_ft._incremental_growth;
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics = new FastHashtableMetrics(this);
+		}
+	}
+
 	/*
 	 * The number of key/value pairs in the hash table.
 	 */
 	public int size() {
+		if (this._negative != null) {
+			return this._size + this._negative._size;
+		}
 		return this._size;
 	}
 
 	/*
-	 * key k must satisfy 0<=k<=maxKey() to be a valid key.
+	 * key k must satisfy 0<=k<=maxKey() to be a valid key. with signed keys
+	 * any negative key is valid as well.
 	 */
 	public int maxKey() {
 		return this._BUCKET_COUNT * _bit_vector_size - 1;
@@ -104,15 +310,184 @@ public class FastHashtable {
 	public int maxSize() {
 		return this._BUCKET_COUNT * _bit_vector_size;
 	}
+
+	/*
+	 * when set, growing the table does not split every bucket at once. each
+	 * later put splits the bucket it writes to and a few more, so no single
+	 * put pays for the whole table. returns the previous setting.
+	 */
+	public boolean setIncrementalGrowth(boolean p_incremental) {
+		boolean tmp = this._incremental_growth;
+		this._incremental_growth = p_incremental;
+		if (!p_incremental) {
+			this._finishGrowth();
+		}
+		if (this._negative != null) {
+			this._negative.setIncrementalGrowth(p_incremental);
+		}
+		return tmp;
+	}
+
+	/*
+	 * when set, every int is a valid key. negative keys go to a second table
+	 * of the same kind, so they take the same bit test path as positive keys.
+	 * signed keys cannot be turned off while the table holds a negative key.
+	 * returns the previous setting.
+	 */
+	public boolean setSignedKeys(boolean p_signed) {
+		this._checkWritable();
+		boolean tmp = this._negative != null;
+		if (p_signed && this._negative == null) {
+			this._negative = new FastHashtable(_bit_vector_size);
+			this._negative._incremental_growth = this._incremental_growth;
+		} else if (!p_signed && this._negative != null) {
+			if (this._negative._size != 0) {
+				throw new IllegalStateException("table holds negative keys");
+			}
+			this._negative = null;
+		}
+		return tmp;
+	}
 	
 	/*
-	 * this method will throw for p_key<0 or p_key>this.maxKey()
+	 * a read-only view of the table as it is now, taken in O(1). the view
+	 * and the table share their bucket words and value rows. after a
+	 * snapshot the table copies the bucket array and the row spine on its
+	 * next write, and a row the first time it writes to it, so the view
+	 * never changes and writes copy only the rows they touch.
+	 * 
+	 * snapshot must be called by the thread that writes the table, or under
+	 * its lock. the view can then be read by any number of threads while the
+	 * table is written, once it has been handed over safely, e.g. through a
+	 * volatile field or a concurrent queue. the view throws
+	 * IllegalStateException on any write.
+	 * 
+	 * release a view when done with it. once every view of a table has been
+	 * released the table stops copying rows, and the rows only the views
+	 * held become garbage.
+	 */
+	public FastHashtable snapshot() {
+		AtomicInteger live = this._snapshot;
+		if (live == null) {
+			this._finishGrowth();
+			if (this._live == null) {
+				this._live = new AtomicInteger();
+			}
+			live = this._live;
+			this._share();
+		}
+		live.incrementAndGet();
+		FastHashtable view = new FastHashtable(this);
+		view._snapshot = live;
+		if (this._negative != null) {
+			view._negative = this._negative.snapshot();
+		}
+		return view;
+	}
+
+	/*
+	 * true for a view made by snapshot.
+	 */
+	public boolean isSnapshot() {
+		return this._snapshot != null;
+	}
+
+	/*
+	 * release a view made by snapshot. the view is empty afterwards.
+	 * releasing a view twice does nothing. this method will throw for a
+	 * table that is not a snapshot.
+	 */
+	public void release() {
+		if (this._snapshot == null) {
+			throw new IllegalStateException("table is not a snapshot");
+		}
+		if (this._released) {
+			return;
+		}
+		this._released = true;
+		this._BUCKET_COUNT = 1;
+		this._size = 0;
+		this._buckets = new int[1];
+		this._values = new long[1][_bit_vector_size];
+		this._snapshot.decrementAndGet();
+		if (this._negative != null) {
+			this._negative.release();
+		}
+	}
+
+	/*
+	 * a writable table that shares the arrays of this one and copies rows on
+	 * write while p_live is not 0. this table must not be written to again,
+	 * see FastHashtableExtender.snapshot.
+	 */
+	FastHashtable _fork(AtomicInteger p_live) {
+		this._finishGrowth();
+		FastHashtable ft = new FastHashtable(this);
+		ft._live = p_live;
+		ft._share();
+		return ft;
+	}
+
+	/*
+	 * mark the spine and every row as shared.
+	 */
+	private void _share() {
+		this._shared_spine = true;
+		if (this._row_epoch == null || this._epoch == Integer.MAX_VALUE) {
+			this._row_epoch = new int[this._BUCKET_COUNT];
+			this._epoch = 0;
+		}
+		++this._epoch;
+	}
+
+	/*
+	 * stop sharing the bucket array and the row spine. returns false, and
+	 * drops the copy-on-write state, if every snapshot has been released.
+	 */
+	private boolean _ownSpine() {
+		if (this._live.get() == 0) {
+			this._live = null;
+			this._row_epoch = null;
+			this._shared_spine = false;
+			return false;
+		}
+		if (this._shared_spine) {
+			this._buckets = this._buckets.clone();
+			this._values = this._values.clone();
+			this._shared_spine = false;
+		}
+		return true;
+	}
+
+	/*
+	 * make row p_i safe to write. _live must be set.
+	 */
+	private void _own(int p_i) {
+		if (this._row_epoch[p_i] != this._epoch && this._ownSpine()) {
+			this._values[p_i] = this._values[p_i].clone();
+			this._row_epoch[p_i] = this._epoch;
+		}
+	}
+
+	private void _checkWritable() {
+		if (this._snapshot != null) {
+			throw new IllegalStateException("table is a snapshot");
+		}
+	}
+
+	/*
+	 * this method will throw for p_key<0, unless signed keys are enabled.
+	 * the table grows for p_key>this.maxKey().
 	 */
 	public void put(int p_key, long p_value) {
-		if(p_key>this.maxKey()) {
-			this._rehash();
+		if (p_key < 0 && this._negative != null) {
+			this._negative.put(~p_key, p_value);
+			return;
 		}
-		int i = p_key % this._BUCKET_COUNT;
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts++;
+		}
+		int i = this._writeBucket(p_key);
 		int k = (p_key - i) / this._BUCKET_COUNT;
 
 		if ((this._buckets[i] & (1 << k)) == 0) {
@@ -122,19 +497,184 @@ public class FastHashtable {
 		this._values[i][k] = p_value;
 	}
 
+	/*
+	 * grow the table to hold p_key and split its bucket out of a pending
+	 * growth, then return the bucket of p_key. p_key must be non-negative.
+	 */
+	private int _writeBucket(int p_key) {
+		this._checkWritable();
+		while(p_key>this.maxKey()) {
+			this._grow();
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		if (this._old_buckets != null) {
+			this._migrateFor(i, _MIGRATION_STEP);
+		} else if (this._live != null) {
+			this._own(i);
+		}
+		return i;
+	}
+
+	/*
+	 * add p_delta to the value of p_key, a missing key counts as 0. returns
+	 * the previous value, 0 if p_key was missing.
+	 * 
+	 * this method will throw for p_key<0, unless signed keys are enabled.
+	 */
+	public long addTo(int p_key, long p_delta) {
+		if (p_key < 0 && this._negative != null) {
+			return this._negative.addTo(~p_key, p_delta);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts++;
+		}
+		int i = this._writeBucket(p_key);
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		long[] row = this._values[i];
+		int w = this._buckets[i];
+		if ((w & (1 << k)) == 0) {
+			this._buckets[i] = w | (1 << k);
+			this._size++;
+			row[k] = p_delta;
+			return 0;
+		}
+		long tmp = row[k];
+		row[k] = tmp + p_delta;
+		return tmp;
+	}
+
+	/*
+	 * put p_value at p_key unless p_key is in the table. returns true if
+	 * p_value was put.
+	 * 
+	 * this method will throw for p_key<0, unless signed keys are enabled.
+	 */
+	public boolean putIfAbsent(int p_key, long p_value) {
+		if (p_key < 0 && this._negative != null) {
+			return this._negative.putIfAbsent(~p_key, p_value);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts++;
+		}
+		int i = this._writeBucket(p_key);
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		int w = this._buckets[i];
+		if ((w & (1 << k)) != 0) {
+			return false;
+		}
+		this._buckets[i] = w | (1 << k);
+		this._size++;
+		this._values[i][k] = p_value;
+		return true;
+	}
+
+	/*
+	 * put p_value at p_key if p_key is missing, otherwise replace the value v
+	 * with p_function.applyAsLong(v, p_value). returns the new value.
+	 * 
+	 * this method will throw for p_key<0, unless signed keys are enabled.
+	 */
+	public long merge(int p_key, long p_value, LongBinaryOperator p_function) {
+		if (p_key < 0 && this._negative != null) {
+			return this._negative.merge(~p_key, p_value, p_function);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts++;
+		}
+		int i = this._writeBucket(p_key);
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		long[] row = this._values[i];
+		int w = this._buckets[i];
+		if ((w & (1 << k)) == 0) {
+			this._buckets[i] = w | (1 << k);
+			this._size++;
+			row[k] = p_value;
+		} else {
+			row[k] = p_function.applyAsLong(row[k], p_value);
+		}
+		return row[k];
+	}
+
+	/*
+	 * remove p_key from the table. returns true if it was in the table.
+	 * 
+	 * this method will not throw with an invalid key, unless the table is a
+	 * snapshot.
+	 */
+	public boolean remove(int p_key) {
+		if (p_key < 0) {
+			return this._negative != null && this._negative.remove(~p_key);
+		}
+		this._checkWritable();
+		if (p_key > this.maxKey()) {
+			return false;
+		}
+		int i = this._writeBucket(p_key);
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		int w = this._buckets[i];
+		if ((w & (1 << k)) == 0) {
+			return false;
+		}
+		this._buckets[i] = w & ~(1 << k);
+		this._size--;
+		return true;
+	}
+
+	/*
+	 * the value of p_key, or p_default if p_key is not in the table.
+	 * 
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public long getOrDefault(int p_key, long p_default) {
+		if (p_key < 0) {
+			return this._negative != null ? this._negative.getOrDefault(~p_key, p_default)
+					: p_default;
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._gets++;
+		}
+		if (p_key > this.maxKey()) {
+			return p_default;
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		if ((this._buckets[i] & (1 << k)) != 0) {
+			if (FastHashtableMetrics.ENABLED) {
+				this._metrics._hits++;
+			}
+			return this._values[i][k];
+		} else if (this._old_buckets != null && this._values[i] == null
+				&& p_key < this._old_BUCKET_COUNT * _bit_vector_size) {
+			i = p_key % this._old_BUCKET_COUNT;
+			k = (p_key - i) / this._old_BUCKET_COUNT;
+			if ((this._old_buckets[i] & (1 << k)) != 0) {
+				if (FastHashtableMetrics.ENABLED) {
+					this._metrics._hits++;
+				}
+				return this._old_values[i][k];
+			}
+		}
+		return p_default;
+	}
+
 	/*
 	 * this method will not throw with an invalid key. it's always ok to ask.
 	 */
 	public boolean containsKey(int p_key) {
 		if (p_key < 0) {
-			return false;
+			return this._negative != null ? this._negative.containsKey(~p_key) : this._counted(false);
+		}
+		if (p_key > this.maxKey()) {
+			return this._counted(false);
 		}
 		int i = p_key % this._BUCKET_COUNT;
 		int k = (p_key - i) / this._BUCKET_COUNT;
 		if ((this._buckets[i] & ((1 << k))) != 0) {
-			return true;
+			return this._counted(true);
+		} else if (this._old_buckets != null && this._values[i] == null) {
+			return this._counted(this._oldGet(p_key, null));
 		} else {
-			return false;
+			return this._counted(false);
 		}
 	}
 
@@ -143,46 +683,1039 @@ public class FastHashtable {
 	 */
 	public boolean get(int p_key, long[] p_result) {
 		if (p_key < 0) {
-			return false;
+			return this._negative != null ? this._negative.get(~p_key, p_result) : this._counted(false);
+		}
+		if (p_key > this.maxKey()) {
+			return this._counted(false);
 		}
 		int i = p_key % this._BUCKET_COUNT;
 		int k = (p_key - i) / this._BUCKET_COUNT;
 		if ((this._buckets[i] & ((1 << k))) != 0) {
 			p_result[0] = 1;
 			p_result[1] = this._values[i][k];
-			return true;
+			return this._counted(true);
+		} else if (this._old_buckets != null && this._values[i] == null) {
+			return this._counted(this._oldGet(p_key, p_result));
 		} else {
-			return false;
+			return this._counted(false);
 		}
 	}
 
 	/*
-	 * this method could be faster if inline code were used instead of the
-	 * FastHashtable.get method.
+	 * put p_values[n] at p_keys[n] for every n. the table grows once, to the
+	 * largest key of the batch, and the bucket count is read once for the
+	 * whole batch instead of once per key.
+	 * 
+	 * this method will throw for a negative key, before any key is put,
+	 * unless signed keys are enabled.
 	 */
-	public String toString() {
-		int[] bitmasks = new int[_bit_vector_size];
-		for (int i = 0; i < 32; ++i) {
-			bitmasks[i] = 1 << i;
+	public void putAll(int[] p_keys, long[] p_values) {
+		if (p_keys.length != p_values.length) {
+			throw new IllegalArgumentException("keys and values differ in length");
+		}
+		if (this._negative == null) {
+			this._putAll(p_keys, p_values, 0, p_keys.length, 0);
+			return;
+		}
+		/*
+		 * split the batch by sign, keeping the order of each part.
+		 */
+		int negatives = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			negatives += p_keys[n] >>> 31;
+		}
+		if (negatives == 0) {
+			this._putAll(p_keys, p_values, 0, p_keys.length, 0);
+			return;
 		}
+		int[] keys = new int[p_keys.length];
+		long[] values = new long[p_keys.length];
+		int neg = 0;
+		int pos = negatives;
+		for (int n = 0; n < p_keys.length; ++n) {
+			int m = p_keys[n] < 0 ? neg++ : pos++;
+			keys[m] = p_keys[n] < 0 ? ~p_keys[n] : p_keys[n];
+			values[m] = p_values[n];
+		}
+		this._negative._putAll(keys, values, 0, negatives, 0);
+		this._putAll(keys, values, negatives, keys.length, 0);
+	}
+
+	/*
+	 * put p_values[n] at p_keys[n]-p_base for p_from<=n<p_to.
+	 */
+	void _putAll(int[] p_keys, long[] p_values, int p_from, int p_to, int p_base) {
+		this._checkWritable();
+		int max = -1;
+		for (int n = p_from; n < p_to; ++n) {
+			int key = p_keys[n] - p_base;
+			if (key < 0) {
+				throw new ArrayIndexOutOfBoundsException(key);
+			}
+			max = Math.max(max, key);
+		}
+		while (max > this.maxKey()) {
+			this._grow();
+		}
+		this._finishGrowth();
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts += p_to - p_from;
+		}
+
+		final boolean cow = this._live != null && this._ownSpine();
+		final int count = this._BUCKET_COUNT;
+		final int[] buckets = this._buckets;
+		final long[][] values = this._values;
+		/*
+		 * the bucket count is a power of 2 for the default table and any
+		 * table grown from it, then shift and mask replace % and /.
+		 */
+		final boolean pow2 = (count & (count - 1)) == 0;
+		final int shift = Integer.numberOfTrailingZeros(count);
+		int added = 0;
+		for (int n = p_from; n < p_to; ++n) {
+			int key = p_keys[n] - p_base;
+			int i = pow2 ? key & (count - 1) : key % count;
+			int k = pow2 ? key >>> shift : key / count;
+			if (cow && this._row_epoch[i] != this._epoch) {
+				values[i] = values[i].clone();
+				this._row_epoch[i] = this._epoch;
+			}
+			int w = buckets[i];
+			if ((w & (1 << k)) == 0) {
+				buckets[i] = w | (1 << k);
+				++added;
+			}
+			values[i][k] = p_values[n];
+		}
+		this._size += added;
+	}
+
+	/*
+	 * for every n, if p_keys[n] is in the table set p_result[n] to its value
+	 * and set bit n of p_found, otherwise clear bit n of p_found. returns the
+	 * number of keys found.
+	 * 
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public int getAll(int[] p_keys, long[] p_result, BitSet p_found) {
+		final int count = this._BUCKET_COUNT;
+		final int maxKey = this.maxKey();
+		final int[] buckets = this._buckets;
+		final long[][] values = this._values;
+		final boolean growing = this._old_buckets != null;
+		final boolean pow2 = (count & (count - 1)) == 0;
+		final int shift = Integer.numberOfTrailingZeros(count);
+		/*
+		 * hits are gathered as words and or'ed into p_found at the end,
+		 * BitSet.set per key costs more than the probe.
+		 */
+		long[] words = new long[(p_keys.length + 63) >>> 6];
 		long[] r = new long[2];
-		StringBuilder sb = new StringBuilder();
-		sb.append('(');
-		for (int i = 0; i < this._bit_vector_size; ++i) {
-			for (int j = 0; j < this._BUCKET_COUNT; ++j) {
-				if ((this._buckets[j] & (1 << i)) != 0) {
-					int key = i * this._buckets.length + j;
-					this.get(key, r);
-					sb.append('(');
-					sb.append(key);
-					sb.append(',');
-					sb.append(r[1]);
-					sb.append(')');
+		int found = 0;
+		/*
+		 * keys the table of negative keys looked up, it counts them itself.
+		 */
+		int negative = 0;
+		int negative_found = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			int key = p_keys[n];
+			if (key >= 0 && key <= maxKey) {
+				int i = pow2 ? key & (count - 1) : key % count;
+				int k = pow2 ? key >>> shift : key / count;
+				if ((buckets[i] & (1 << k)) != 0) {
+					p_result[n] = values[i][k];
+					words[n >>> 6] |= 1L << n;
+					++found;
+				} else if (growing && values[i] == null && this._oldGet(key, r)) {
+					p_result[n] = r[1];
+					words[n >>> 6] |= 1L << n;
+					++found;
+				}
+			} else if (key < 0 && this._negative != null) {
+				++negative;
+				if (this._negative.get(~key, r)) {
+					p_result[n] = r[1];
+					words[n >>> 6] |= 1L << n;
+					++found;
+					++negative_found;
+				}
+			}
+		}
+		_setFound(p_found, words, p_keys.length);
+		this._countBatch(p_keys.length - negative, found - negative_found);
+		return found;
+	}
+
+	/*
+	 * make bits [0,p_length) of p_found equal to p_words.
+	 */
+	static void _setFound(BitSet p_found, long[] p_words, int p_length) {
+		p_found.clear(0, p_length);
+		p_found.or(BitSet.valueOf(p_words));
+	}
+
+	/*
+	 * set bit n of p_found if p_keys[n] is in the table, clear it otherwise.
+	 * returns the number of keys found.
+	 */
+	public int containsAll(int[] p_keys, BitSet p_found) {
+		final int count = this._BUCKET_COUNT;
+		final int maxKey = this.maxKey();
+		final int[] buckets = this._buckets;
+		final long[][] values = this._values;
+		final boolean growing = this._old_buckets != null;
+		final boolean pow2 = (count & (count - 1)) == 0;
+		final int shift = Integer.numberOfTrailingZeros(count);
+		long[] words = new long[(p_keys.length + 63) >>> 6];
+		int found = 0;
+		int negative = 0;
+		int negative_found = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			int key = p_keys[n];
+			if (key >= 0 && key <= maxKey) {
+				int i = pow2 ? key & (count - 1) : key % count;
+				int k = pow2 ? key >>> shift : key / count;
+				if ((buckets[i] & (1 << k)) != 0
+						|| growing && values[i] == null && this._oldGet(key, null)) {
+					words[n >>> 6] |= 1L << n;
+					++found;
+				}
+			} else if (key < 0 && this._negative != null) {
+				++negative;
+				if (this._negative.containsKey(~key)) {
+					words[n >>> 6] |= 1L << n;
+					++found;
+					++negative_found;
+				}
+			}
+		}
+		_setFound(p_found, words, p_keys.length);
+		this._countBatch(p_keys.length - negative, found - negative_found);
+		return found;
+	}
+
+	/*
+	 * count p_gets gets with p_hits hits.
+	 */
+	private void _countBatch(int p_gets, int p_hits) {
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._gets += p_gets;
+			this._metrics._hits += p_hits;
+		}
+	}
+
+	/*
+	 * true if every key of p_keys is in the table.
+	 */
+	public boolean containsAll(int[] p_keys) {
+		final int count = this._BUCKET_COUNT;
+		final int maxKey = this.maxKey();
+		final int[] buckets = this._buckets;
+		final long[][] values = this._values;
+		final boolean growing = this._old_buckets != null;
+		final boolean pow2 = (count & (count - 1)) == 0;
+		final int shift = Integer.numberOfTrailingZeros(count);
+		for (int n = 0; n < p_keys.length; ++n) {
+			int key = p_keys[n];
+			if (key < 0) {
+				if (this._negative == null || !this._negative.containsKey(~key)) {
+					return false;
+				}
+				continue;
+			}
+			if (key > maxKey) {
+				return false;
+			}
+			int i = pow2 ? key & (count - 1) : key % count;
+			int k = pow2 ? key >>> shift : key / count;
+			if ((buckets[i] & (1 << k)) == 0
+					&& !(growing && values[i] == null && this._oldGet(key, null))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * call p_consumer for every key/value pair. the order is by bucket, then
+	 * by bit, so it is ascending only while the table has a single bucket.
+	 * with signed keys the negative keys come first.
+	 * 
+	 * only the set bits of each bucket are visited, so the cost is
+	 * O(size()+_BUCKET_COUNT) and not O(maxSize()).
+	 */
+	public void forEach(final IntLongConsumer p_consumer) {
+		if (this._negative != null) {
+			this._negative.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					p_consumer.accept(~p_key, p_value);
+				}
+			});
+		}
+		this._finishGrowth();
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			long[] row = this._values[j];
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				p_consumer.accept(k * this._BUCKET_COUNT + j, row[k]);
+			}
+		}
+	}
+
+	/*
+	 * p_op applied to p_identity and the values of the non-negative keys, in
+	 * forEach order. for the pages of FastHashtableExtender.parallelReduce.
+	 */
+	long _reduce(long p_identity, LongBinaryOperator p_op) {
+		this._finishGrowth();
+		long result = p_identity;
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			long[] row = this._values[j];
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				result = p_op.applyAsLong(result, row[Integer.numberOfTrailingZeros(b)]);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * the keys in forEach order.
+	 */
+	public int[] keys() {
+		int[] keys = new int[this.size()];
+		int n = 0;
+		if (this._negative != null) {
+			n = this._negative._keys(keys, n, -1);
+		}
+		this._keys(keys, n, 0);
+		return keys;
+	}
+
+	/*
+	 * copy the keys xor p_flip to p_keys from p_n on. returns the index after
+	 * the last key copied.
+	 */
+	private int _keys(int[] p_keys, int p_n, int p_flip) {
+		this._finishGrowth();
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				p_keys[p_n++] = (Integer.numberOfTrailingZeros(b) * this._BUCKET_COUNT + j) ^ p_flip;
+			}
+		}
+		return p_n;
+	}
+
+	/*
+	 * the values in forEach order, so values()[n] belongs to keys()[n].
+	 */
+	public long[] values() {
+		long[] values = new long[this.size()];
+		int n = 0;
+		if (this._negative != null) {
+			n = this._negative._values(values, n);
+		}
+		this._values(values, n);
+		return values;
+	}
+
+	private int _values(long[] p_values, int p_n) {
+		this._finishGrowth();
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			long[] row = this._values[j];
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				p_values[p_n++] = row[Integer.numberOfTrailingZeros(b)];
+			}
+		}
+		return p_n;
+	}
+
+	/*
+	 * the metrics of this table, see FastHashtableMetrics. the counters stay
+	 * 0 unless collection is enabled.
+	 */
+	public FastHashtableMetrics getMetrics() {
+		if (this._metrics == null) {
+			this._metrics = new FastHashtableMetrics(this);
+		}
+		return this._metrics;
+	}
+
+	FastHashtableMetrics _negativeMetrics() {
+		return this._negative != null ? this._negative.getMetrics() : null;
+	}
+
+	/*
+	 * an estimate of the bytes held by the table, assuming 16 byte array
+	 * headers and 8 byte references.
+	 */
+	public long getMemoryUsage() {
+		long bytes = 16 + 4L * this._BUCKET_COUNT + 16 + 8L * this._BUCKET_COUNT
+				+ (long) this._BUCKET_COUNT * (16 + 8 * _bit_vector_size);
+		if (this._old_buckets != null) {
+			bytes += 16 + 4L * this._old_BUCKET_COUNT + 16 + 8L * this._old_BUCKET_COUNT;
+		}
+		if (this._negative != null) {
+			bytes += this._negative.getMemoryUsage();
+		}
+		return bytes;
+	}
+
+	private static final int _STREAM_MAGIC = 0x46485331;
+	private static final int _STREAM_VERSION = 1;
+
+	/*
+	 * write the table to p_channel in a compact binary form that readFrom
+	 * reads back. the stream is written in chunks of at most 64KB through one
+	 * buffer, so writing a table of any size allocates nothing per entry, see
+	 * ChunkedOutput. the channel is not closed.
+	 * 
+	 * the table is, all numbers little endian:
+	 * 
+	 *     int      magic, 0x46485331 ("FHS1")
+	 *     int      version, 1
+	 *     body:
+	 *     int      flags, 1 if a body of negative keys follows
+	 *     int      bucket count B
+	 *     int      size N
+	 *     int[B]   the bucket words, as they are in the table
+	 *     N longs  the values in forEach order, each the difference to the
+	 *              one before as a zigzag varint
+	 *     body     the table of negative keys, see setSignedKeys
+	 */
+	public void writeTo(WritableByteChannel p_channel) throws IOException {
+		ChunkedOutput out = new ChunkedOutput(p_channel);
+		out.putInt(_STREAM_MAGIC);
+		out.putInt(_STREAM_VERSION);
+		this._writeBody(out);
+		out.finish();
+	}
+
+	void _writeBody(ChunkedOutput p_out) throws IOException {
+		this._finishGrowth();
+		p_out.putInt(this._negative != null ? 1 : 0);
+		p_out.putInt(this._BUCKET_COUNT);
+		p_out.putInt(this._size);
+		p_out.putInts(this._buckets, 0, this._BUCKET_COUNT);
+		long previous = 0;
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			previous = p_out.putDeltas(this._values[j], this._buckets[j], previous);
+		}
+		if (this._negative != null) {
+			this._negative._writeBody(p_out);
+		}
+	}
+
+	/*
+	 * read a table written by writeTo. only the bytes of the table are read
+	 * from p_channel. the channel is not closed.
+	 */
+	public static FastHashtable readFrom(ReadableByteChannel p_channel) throws IOException {
+		ChunkedInput in = new ChunkedInput(p_channel);
+		if (in.getInt() != _STREAM_MAGIC) {
+			throw new IOException("not a FastHashtable stream");
+		}
+		if (in.getInt() != _STREAM_VERSION) {
+			throw new IOException("unsupported FastHashtable stream version");
+		}
+		FastHashtable ft = _readBody(in);
+		in.finish();
+		return ft;
+	}
+
+	static FastHashtable _readBody(ChunkedInput p_in) throws IOException {
+		int flags = p_in.getInt();
+		int count = p_in.getInt();
+		int size = p_in.getInt();
+		if ((flags & ~1) != 0 || count <= 0 || count > Integer.MAX_VALUE / Integer.SIZE
+				|| size < 0) {
+			throw new IOException("corrupt FastHashtable stream");
+		}
+		FastHashtable ft = new FastHashtable(count * Integer.SIZE);
+		p_in.getInts(ft._buckets, 0, count);
+		long n = 0;
+		for (int j = 0; j < count; ++j) {
+			n += Integer.bitCount(ft._buckets[j]);
+		}
+		if (n != size) {
+			throw new IOException("corrupt FastHashtable stream, size");
+		}
+		long previous = 0;
+		for (int j = 0; j < count; ++j) {
+			previous = p_in.getDeltas(ft._values[j], ft._buckets[j], previous);
+		}
+		ft._size = size;
+		if (flags != 0) {
+			ft._negative = _readBody(p_in);
+			if (ft._negative._negative != null) {
+				throw new IOException("corrupt FastHashtable stream, flags");
+			}
+		}
+		return ft;
+	}
+
+	boolean _isSigned() {
+		return this._negative != null;
+	}
+
+	/*
+	 * returned by nextKey and prevKey when there is no such key. every int is
+	 * a key with signed keys, so the key methods return a long.
+	 */
+	public static final long NO_KEY = Long.MIN_VALUE;
+
+	/*
+	 * the smallest key >= p_from, or NO_KEY.
+	 * 
+	 * the rest of the bit row of p_from is scanned first, then one pass over
+	 * the buckets finds the lowest later bit, and it stops early at the next
+	 * row. so the cost is at most O(_BUCKET_COUNT) and not O(maxSize()).
+	 */
+	public long nextKey(int p_from) {
+		if (p_from < 0) {
+			if (this._negative != null) {
+				int key = this._negative._prevKey(~p_from);
+				if (key >= 0) {
+					return ~key;
+				}
+			}
+			p_from = 0;
+		}
+		int key = this._nextKey(p_from);
+		return key >= 0 ? key : NO_KEY;
+	}
+
+	/*
+	 * the largest key <= p_from, or NO_KEY.
+	 */
+	public long prevKey(int p_from) {
+		if (p_from >= 0) {
+			int key = this._prevKey(p_from);
+			if (key >= 0) {
+				return key;
+			}
+			p_from = -1;
+		}
+		if (this._negative != null) {
+			int key = this._negative._nextKey(~p_from);
+			if (key >= 0) {
+				return ~key;
+			}
+		}
+		return NO_KEY;
+	}
+
+	/*
+	 * call p_consumer for every key k with p_lo<=k<p_hi, in ascending key
+	 * order.
+	 * 
+	 * the keys of a bit row are consecutive buckets, so the scan reads the
+	 * bucket words of the range in memory order, O(p_hi-p_lo) words at most.
+	 */
+	public void forEachInRange(int p_lo, int p_hi, IntLongConsumer p_consumer) {
+		if (p_lo >= p_hi) {
+			return;
+		}
+		if (p_lo < 0 && this._negative != null) {
+			this._negative._forEachInRange(-Math.min(p_hi, 0), ~p_lo, 0, -1, p_consumer);
+		}
+		if (p_hi > 0) {
+			this._forEachInRange(Math.max(p_lo, 0), p_hi - 1, 0, 0, p_consumer);
+		}
+	}
+
+	/*
+	 * the number of keys k with p_lo<=k<p_hi.
+	 */
+	public int countInRange(int p_lo, int p_hi) {
+		if (p_lo >= p_hi) {
+			return 0;
+		}
+		int count = 0;
+		if (p_lo < 0 && this._negative != null) {
+			count += this._negative._countInRange(-Math.min(p_hi, 0), ~p_lo);
+		}
+		if (p_hi > 0) {
+			count += this._countInRange(Math.max(p_lo, 0), p_hi - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * the smallest key >= p_from, or -1. p_from must be non-negative.
+	 */
+	int _nextKey(int p_from) {
+		this._finishGrowth();
+		if (p_from > this.maxKey()) {
+			return -1;
+		}
+		final int count = this._BUCKET_COUNT;
+		final int[] buckets = this._buckets;
+		int k = p_from / count;
+		int bit = 1 << k;
+		for (int i = p_from % count; i < count; ++i) {
+			if ((buckets[i] & bit) != 0) {
+				return k * count + i;
+			}
+		}
+		/*
+		 * the lowest bit above k of any bucket, the first bucket wins a tie.
+		 */
+		int above = -2 << k;
+		int best = _bit_vector_size;
+		int best_i = -1;
+		for (int i = 0; i < count; ++i) {
+			int w = buckets[i] & above;
+			if (w != 0 && Integer.numberOfTrailingZeros(w) < best) {
+				best = Integer.numberOfTrailingZeros(w);
+				best_i = i;
+				if (best == k + 1) {
+					break;
+				}
+			}
+		}
+		return best_i < 0 ? -1 : best * count + best_i;
+	}
+
+	/*
+	 * the largest key <= p_from, or -1.
+	 */
+	int _prevKey(int p_from) {
+		this._finishGrowth();
+		if (p_from < 0) {
+			return -1;
+		}
+		p_from = Math.min(p_from, this.maxKey());
+		final int count = this._BUCKET_COUNT;
+		final int[] buckets = this._buckets;
+		int k = p_from / count;
+		int bit = 1 << k;
+		for (int i = p_from % count; i >= 0; --i) {
+			if ((buckets[i] & bit) != 0) {
+				return k * count + i;
+			}
+		}
+		/*
+		 * the highest bit below k of any bucket, the last bucket wins a tie.
+		 */
+		int below = bit - 1;
+		int best = -1;
+		int best_i = -1;
+		for (int i = count - 1; i >= 0; --i) {
+			int w = buckets[i] & below;
+			if (w != 0 && 31 - Integer.numberOfLeadingZeros(w) > best) {
+				best = 31 - Integer.numberOfLeadingZeros(w);
+				best_i = i;
+				if (best == k - 1) {
+					break;
+				}
+			}
+		}
+		return best_i < 0 ? -1 : best * count + best_i;
+	}
+
+	/*
+	 * call p_consumer with (p_base+k)^p_flip for every key k with
+	 * p_lo<=k<=p_hi. p_lo must be non-negative. the keys are visited in
+	 * ascending order, or in descending order if p_flip is -1, which makes
+	 * the flipped keys ascending.
+	 */
+	void _forEachInRange(int p_lo, int p_hi, int p_base, int p_flip,
+			IntLongConsumer p_consumer) {
+		this._finishGrowth();
+		p_hi = Math.min(p_hi, this.maxKey());
+		if (p_lo > p_hi) {
+			return;
+		}
+		final int count = this._BUCKET_COUNT;
+		final int[] buckets = this._buckets;
+		final long[][] values = this._values;
+		int k_lo = p_lo / count;
+		int k_hi = p_hi / count;
+		if (p_flip == 0) {
+			for (int k = k_lo; k <= k_hi; ++k) {
+				int bit = 1 << k;
+				int to = k == k_hi ? p_hi % count : count - 1;
+				for (int i = k == k_lo ? p_lo % count : 0; i <= to; ++i) {
+					if ((buckets[i] & bit) != 0) {
+						p_consumer.accept(p_base + k * count + i, values[i][k]);
+					}
+				}
+			}
+		} else {
+			for (int k = k_hi; k >= k_lo; --k) {
+				int bit = 1 << k;
+				int to = k == k_lo ? p_lo % count : 0;
+				for (int i = k == k_hi ? p_hi % count : count - 1; i >= to; --i) {
+					if ((buckets[i] & bit) != 0) {
+						p_consumer.accept((p_base + k * count + i) ^ p_flip, values[i][k]);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * the number of keys k with p_lo<=k<=p_hi. p_lo must be non-negative.
+	 * 
+	 * a range of one or two bit rows is counted bucket by bucket. a longer
+	 * range is counted with a popcount of each bucket word, masked to the bits
+	 * of the range, so the cost is O(min(p_hi-p_lo, _BUCKET_COUNT)).
+	 */
+	int _countInRange(int p_lo, int p_hi) {
+		this._finishGrowth();
+		p_hi = Math.min(p_hi, this.maxKey());
+		if (p_lo > p_hi) {
+			return 0;
+		}
+		final int count = this._BUCKET_COUNT;
+		final int[] buckets = this._buckets;
+		int k_lo = p_lo / count;
+		int i_lo = p_lo % count;
+		int k_hi = p_hi / count;
+		int i_hi = p_hi % count;
+		int n = 0;
+		if (k_hi - k_lo <= 1) {
+			for (int k = k_lo; k <= k_hi; ++k) {
+				int to = k == k_hi ? i_hi : count - 1;
+				for (int i = k == k_lo ? i_lo : 0; i <= to; ++i) {
+					n += (buckets[i] >>> k) & 1;
+				}
+			}
+			return n;
+		}
+		/*
+		 * bucket i holds the keys of rows k_lo..k_hi, less row k_lo if
+		 * i<i_lo and less row k_hi if i>i_hi.
+		 */
+		int rows = (-1 >>> (31 - k_hi)) & (-1 << k_lo);
+		int first = ~(1 << k_lo);
+		int last = ~(1 << k_hi);
+		for (int i = 0; i < count; ++i) {
+			int mask = rows;
+			if (i < i_lo) {
+				mask &= first;
+			}
+			if (i > i_hi) {
+				mask &= last;
+			}
+			n += Integer.bitCount(buckets[i] & mask);
+		}
+		return n;
+	}
+
+	/*
+	 * the set operations of _combine.
+	 */
+	static final int _AND = 0;
+	static final int _OR = 1;
+	static final int _AND_NOT = 2;
+
+	/*
+	 * a new table with the keys that are in this table and in p_other, with
+	 * the values of this table.
+	 * 
+	 * when both tables have the same bucket count, which is the case for
+	 * tables made with the same capacity, the buckets are combined a whole
+	 * bit word at a time and only the values of the result are copied.
+	 * otherwise the keys of this table are probed in p_other.
+	 */
+	public FastHashtable intersectKeys(FastHashtable p_other) {
+		return this._combineSigned(p_other, _AND);
+	}
+
+	/*
+	 * a new table with the keys that are in this table or in p_other, with
+	 * the value of this table if the key is in both. see intersectKeys.
+	 */
+	public FastHashtable unionKeys(FastHashtable p_other) {
+		return this._combineSigned(p_other, _OR);
+	}
+
+	/*
+	 * a new table with the keys of this table that are not in p_other, with
+	 * the values of this table. see intersectKeys.
+	 */
+	public FastHashtable andNot(FastHashtable p_other) {
+		return this._combineSigned(p_other, _AND_NOT);
+	}
+
+	/*
+	 * call p_consumer with the key and both values for every key that is in
+	 * this table and in p_other, in this table's forEach order. the bucket
+	 * words are and'ed as in intersectKeys, so keys missing from either
+	 * table cost nothing.
+	 */
+	public void intersect(FastHashtable p_other, IntLongLongConsumer p_consumer) {
+		if (this._negative != null && p_other._negative != null) {
+			this._negative._intersect(p_other._negative, 0, -1, p_consumer);
+		}
+		this._intersect(p_other, 0, 0, p_consumer);
+	}
+
+	private FastHashtable _combineSigned(FastHashtable p_other, int p_op) {
+		FastHashtable result = _combine(this, p_other, p_op);
+		FastHashtable negative = _combine(this._negative, p_other._negative, p_op);
+		if (negative != null) {
+			result._negative = negative;
+			negative._incremental_growth = result._incremental_growth;
+		}
+		return result;
+	}
+
+	/*
+	 * combine the non-negative keys of p_a and p_b with p_op. a null table is
+	 * empty. returns null if the result is known to be empty without looking
+	 * at the tables.
+	 */
+	static FastHashtable _combine(FastHashtable p_a, FastHashtable p_b, int p_op) {
+		if (p_a == null) {
+			return p_op == _OR && p_b != null ? p_b._copy() : null;
+		}
+		if (p_b == null) {
+			return p_op == _AND ? null : p_a._copy();
+		}
+		p_a._finishGrowth();
+		p_b._finishGrowth();
+		if (p_a._BUCKET_COUNT != p_b._BUCKET_COUNT) {
+			return p_a._combineProbing(p_b, p_op);
+		}
+		final int count = p_a._BUCKET_COUNT;
+		FastHashtable result = new FastHashtable(p_a.maxSize());
+		int size = 0;
+		for (int i = 0; i < count; ++i) {
+			int a = p_a._buckets[i];
+			int b = p_b._buckets[i];
+			int w = p_op == _AND ? a & b : p_op == _OR ? a | b : a & ~b;
+			if (w == 0) {
+				continue;
+			}
+			result._buckets[i] = w;
+			size += Integer.bitCount(w);
+			long[] row = result._values[i];
+			long[] from = p_a._values[i];
+			for (int x = w & a; x != 0; x &= x - 1) {
+				int k = Integer.numberOfTrailingZeros(x);
+				row[k] = from[k];
+			}
+			if (p_op == _OR) {
+				from = p_b._values[i];
+				for (int x = w & ~a; x != 0; x &= x - 1) {
+					int k = Integer.numberOfTrailingZeros(x);
+					row[k] = from[k];
+				}
+			}
+		}
+		result._size = size;
+		return result;
+	}
+
+	/*
+	 * _combine for tables with different bucket counts.
+	 */
+	private FastHashtable _combineProbing(FastHashtable p_other, int p_op) {
+		FastHashtable result = p_op == _OR ? this._copy()
+				: new FastHashtable(this.maxSize());
+		FastHashtable from = p_op == _OR ? p_other : this;
+		FastHashtable probe = p_op == _AND ? p_other : p_op == _OR ? this : p_other;
+		boolean keep = p_op == _AND;
+		for (int j = 0; j < from._BUCKET_COUNT; ++j) {
+			long[] row = from._values[j];
+			for (int b = from._buckets[j]; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				int key = k * from._BUCKET_COUNT + j;
+				if (probe.containsKey(key) == keep) {
+					result.put(key, row[k]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * a copy of the non-negative keys of this table.
+	 */
+	private FastHashtable _copy() {
+		this._finishGrowth();
+		FastHashtable result = new FastHashtable(this._BUCKET_COUNT * _bit_vector_size);
+		for (int i = 0; i < this._BUCKET_COUNT; ++i) {
+			result._buckets[i] = this._buckets[i];
+			System.arraycopy(this._values[i], 0, result._values[i], 0, _bit_vector_size);
+		}
+		result._size = this._size;
+		return result;
+	}
+
+	/*
+	 * call p_consumer with (p_base+k)^p_flip and both values for every
+	 * non-negative key k of both tables.
+	 */
+	void _intersect(FastHashtable p_other, int p_base, int p_flip,
+			IntLongLongConsumer p_consumer) {
+		this._finishGrowth();
+		p_other._finishGrowth();
+		final int count = this._BUCKET_COUNT;
+		final boolean same = p_other._BUCKET_COUNT == count;
+		long[] r = same ? null : new long[2];
+		for (int i = 0; i < count; ++i) {
+			int w = this._buckets[i];
+			if (same) {
+				w &= p_other._buckets[i];
+			}
+			long[] row = this._values[i];
+			for (; w != 0; w &= w - 1) {
+				int k = Integer.numberOfTrailingZeros(w);
+				if (same) {
+					p_consumer.accept((p_base + k * count + i) ^ p_flip, row[k],
+							p_other._values[i][k]);
+				} else if (p_other.get(k * count + i, r)) {
+					p_consumer.accept((p_base + k * count + i) ^ p_flip, row[k], r[1]);
+				}
+			}
+		}
+	}
+
+	/*
+	 * a cursor over the table in forEach order.
+	 */
+	public Cursor cursor() {
+		return new Cursor(this);
+	}
+
+	/*
+	 * Walks the key/value pairs of a FastHashtable without allocating. A
+	 * cursor can be rewound with reset and used again. The table must not be
+	 * modified while a cursor is in use.
+	 * 
+	 *     FastHashtable.Cursor c = ft.cursor();
+	 *     while (c.hasNext()) {
+	 *         int key = c.nextKey();
+	 *         long value = c.value();
+	 *     }
+	 */
+	public static class Cursor {
+
+		/*
+		 * the table the cursor was made for, and the one being walked, which
+		 * is its table of negative keys first if it has one.
+		 */
+		private FastHashtable _root;
+		private FastHashtable _ft;
+
+		/*
+		 * the bucket being walked and its bits that have not been returned.
+		 */
+		private int _bucket;
+		private int _bits;
+
+		/*
+		 * the row and bit of the key last returned by nextKey.
+		 */
+		private long[] _row;
+		private int _bit;
+
+		Cursor(FastHashtable p_ft) {
+			this._reset(p_ft);
+		}
+
+		/*
+		 * start over at the first key of p_ft.
+		 */
+		void _reset(FastHashtable p_ft) {
+			this._root = p_ft;
+			this._ft = p_ft._negative != null ? p_ft._negative : p_ft;
+			this._ft._finishGrowth();
+			this._bucket = -1;
+			this._bits = 0;
+			this._row = null;
+		}
+
+		/*
+		 * start over at the first key of the table.
+		 */
+		public void reset() {
+			this._reset(this._root);
+		}
+
+		public boolean hasNext() {
+			while (this._bits == 0) {
+				if (++this._bucket >= this._ft._BUCKET_COUNT) {
+					if (this._ft == this._root) {
+						this._bucket = this._ft._BUCKET_COUNT;
+						return false;
+					}
+					this._ft = this._root;
+					this._ft._finishGrowth();
+					this._bucket = -1;
+					continue;
+				}
+				this._bits = this._ft._buckets[this._bucket];
+			}
+			return true;
+		}
+
+		/*
+		 * this method will throw if there are no more keys.
+		 */
+		public int nextKey() {
+			if (!this.hasNext()) {
+				throw new java.util.NoSuchElementException();
+			}
+			this._row = this._ft._values[this._bucket];
+			this._bit = Integer.numberOfTrailingZeros(this._bits);
+			this._bits &= this._bits - 1;
+			int key = this._bit * this._ft._BUCKET_COUNT + this._bucket;
+			return this._ft == this._root ? key : ~key;
+		}
+
+		/*
+		 * the value of the key last returned by nextKey.
+		 */
+		public long value() {
+			if (this._row == null) {
+				throw new IllegalStateException("nextKey has not been called");
+			}
+			return this._row[this._bit];
+		}
+	}
+
+	/*
+	 * this method could be faster if inline code were used instead of the
+	 * FastHashtable.get method. the keys are in ascending order.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		if (this._negative != null) {
+			this._negative._appendTo(sb, true);
+		}
+		this._appendTo(sb, false);
+		sb.append(')');
+		return sb.toString();
+	}
+
+	/*
+	 * append the (key,value) pairs in ascending order of key, or of ~key if
+	 * p_negate is set.
+	 */
+	private void _appendTo(StringBuilder sb, boolean p_negate) {
+		this._finishGrowth();
+		long[] r = new long[2];
+		for (int n = 0; n < this._bit_vector_size; ++n) {
+			int i = p_negate ? this._bit_vector_size - 1 - n : n;
+			for (int m = 0; m < this._BUCKET_COUNT; ++m) {
+				int j = p_negate ? this._BUCKET_COUNT - 1 - m : m;
+				if ((this._buckets[j] & (1 << i)) != 0) {
+					int key = i * this._buckets.length + j;
+					this.get(key, r);
+					sb.append('(');
+					sb.append(p_negate ? ~key : key);
+					sb.append(',');
+					sb.append(r[1]);
+					sb.append(')');
 				}
 			}
 		}
-		sb.append(')');
-		return sb.toString();
 	}
 
 }
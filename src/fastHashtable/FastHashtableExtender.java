@@ -1,21 +1,89 @@
 package fastHashtable;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
 
 public class FastHashtableExtender {
 
 	private final int _ftSize = 1<<16;
+
+	/*
+	 * the page directory. page j holds keys j*_ftSize to (j+1)*_ftSize-1. it
+	 * is dense, a FastHashtable in _array[j], sparse, a SparsePage in
+	 * _sparse[j], or missing. a page starts sparse and is promoted and
+	 * demoted as SparsePage describes. both arrays have the same length.
+	 */
 	private FastHashtable[] _array;
+	private SparsePage[] _sparse;
+
+	/*
+	 * with signed keys, negative key p is stored in _negative as ~p, so the
+	 * pages of _negative are a page directory for the negative keys. null
+	 * unless signed keys are enabled.
+	 */
+	private FastHashtableExtender _negative;
+
+	/*
+	 * the counters of getMetrics, see FastHashtable._metrics.
+	 */
+	private FastHashtableMetrics _metrics;
+
+	/*
+	 * Copy-on-write state, see snapshot. the same as FastHashtable's, with
+	 * pages in place of rows: _array is shared while _shared_directory is
+	 * set, and page j is shared unless _page_epoch[j]==_epoch.
+	 */
+	private AtomicInteger _live;
+	private boolean _shared_directory;
+	private int _epoch;
+	private int[] _page_epoch;
+
+	/*
+	 * for a snapshot, the _live counter of the table it was taken from.
+	 */
+	private AtomicInteger _snapshot;
+	private boolean _released;
 
 	public int size() {
 		int size = 0;
 		for(int i=0;i<_array.length;++i) {
 			if(this._array[i]!=null) {
 				size += this._array[i].size();
+			} else if(this._sparse[i]!=null) {
+				size += this._sparse[i].size();
 			}
 		}
+		if(this._negative!=null) {
+			size += this._negative.size();
+		}
 		return size;
 	}
+
+	/*
+	 * when set, every int is a valid key. signed keys cannot be turned off
+	 * while the table holds a negative key. returns the previous setting.
+	 */
+	public boolean setSignedKeys(boolean p_signed) {
+		this._checkWritable();
+		boolean tmp = this._negative != null;
+		if (p_signed && this._negative == null) {
+			this._negative = new FastHashtableExtender();
+		} else if (!p_signed && this._negative != null) {
+			if (this._negative.size() != 0) {
+				throw new IllegalStateException("table holds negative keys");
+			}
+			this._negative = null;
+		}
+		return tmp;
+	}
 	public int maxSize() {
 		return this._array.length*this._ftSize;
 	}
@@ -26,76 +94,1521 @@ public class FastHashtableExtender {
 	
 	public void put(int p_key,long p_value) {
 
+		if(p_key<0) {
+			if(this._negative==null) {
+				throw new ArrayIndexOutOfBoundsException(p_key);
+			}
+			this._negative.put(~p_key, p_value);
+			return;
+		}
+
+		this._checkWritable();
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts++;
+		}
 		int i = p_key % this._ftSize;
 		int j = p_key/this._ftSize;
 
 		if(j>=this._array.length) {
-			FastHashtable[] t = Arrays.copyOf(this._array, j+1);
-			this._array = t;			
-		}
-		if(this._array[j]==null) {
-			this._array[j] = new FastHashtable(this._ftSize);
+			this._growTo(j+1);
 		}
 		
-		this._array[j].put(i, p_value);
+		this._putPage(j, i, p_value);
+	}
+
+	/*
+	 * put p_value at key p_i of page j, which must be less than
+	 * _array.length, creating or promoting the page as needed. a sparse
+	 * page keeps its keys in chars, so a negative p_i is rejected here
+	 * rather than truncated.
+	 */
+	private void _putPage(int j, int p_i, long p_value) {
+		if (p_i < 0) {
+			throw new ArrayIndexOutOfBoundsException(p_i);
+		}
+		if (this._live != null) {
+			this._own(j);
+		}
+		FastHashtable dense = this._array[j];
+		if (dense == null) {
+			SparsePage sparse = this._sparse[j];
+			if (sparse == null) {
+				sparse = this._sparse[j] = new SparsePage();
+			}
+			if (sparse.put(p_i, p_value)) {
+				return;
+			}
+			dense = this._promote(j);
+		}
+		dense.put(p_i, p_value);
+	}
+
+	/*
+	 * replace sparse page j by a dense page with the same entries.
+	 */
+	private FastHashtable _promote(int j) {
+		FastHashtable dense = this._sparse[j]._toDense(this._ftSize);
+		this._array[j] = dense;
+		this._sparse[j] = null;
+		return dense;
+	}
+
+	/*
+	 * remove p_key from the table. returns true if it was in the table. a
+	 * dense page that drops below SparsePage._MAX_SIZE/2 keys is made sparse
+	 * and an empty page is dropped, so the memory of a page follows the
+	 * number of keys it holds.
+	 * 
+	 * this method will not throw with an invalid key, unless the table is a
+	 * snapshot.
+	 */
+	public boolean remove(int p_key) {
+		if (p_key < 0 && this._negative != null) {
+			return this._negative.remove(~p_key);
+		}
+		this._checkWritable();
+		int i = p_key % this._ftSize;
+		int j = p_key / this._ftSize;
+		if (p_key < 0 || j >= this._array.length
+				|| this._array[j] == null && this._sparse[j] == null) {
+			return false;
+		}
+		if (this._live != null) {
+			this._own(j);
+		}
+		FastHashtable dense = this._array[j];
+		if (dense != null) {
+			if (!dense.remove(i)) {
+				return false;
+			}
+			if (dense.size() < SparsePage._MAX_SIZE / 2) {
+				this._array[j] = null;
+				this._sparse[j] = dense.size() != 0 ? SparsePage._of(dense) : null;
+			}
+			return true;
+		}
+		SparsePage sparse = this._sparse[j];
+		if (!sparse.remove(i)) {
+			return false;
+		}
+		if (sparse.size() == 0) {
+			this._sparse[j] = null;
+		}
+		return true;
 	}
 	
 	public boolean containsKey(int p_key) {
 
+		if(p_key<0 && this._negative!=null) {
+			return this._negative.containsKey(~p_key);
+		}
+
 		int i = p_key % this._ftSize;
 		int j = p_key/this._ftSize;
-		if(j>=this._array.length) {
-			return false;
+		if(p_key<0 || j>=this._array.length) {
+			return this._counted(false);
+		} else if(this._array[j]!=null) {
+			return this._counted(this._array[j].containsKey(i));
+		} else if(this._sparse[j]!=null) {
+			return this._counted(this._sparse[j].containsKey(i));
 		} else {
-			if(this._array[j]==null) {
-				return false;
-			} else {
-				return this._array[j].containsKey(i);
-			}
+			return this._counted(false);
 		}
 	}
 	
 	
 	public boolean get(int p_key,long[] r) {
 
+		if(p_key<0 && this._negative!=null) {
+			return this._negative.get(~p_key, r);
+		}
+
+		if(this._get(p_key, r)) {
+			return this._counted(true);
+		}
+		r[0] = 0;
+		r[1] = 0;
+		return this._counted(false);
+	}
+
+	/*
+	 * get for a key of this table's pages, p_key<0 is not found.
+	 */
+	private boolean _get(int p_key, long[] r) {
 		int i = p_key % this._ftSize;
 		int j = p_key/this._ftSize;
-		if(j>=this._array.length) {
-			r[0] = 0;
-			r[1] = 0;
+		if(p_key<0 || j>=this._array.length) {
 			return false;
+		} else if(this._array[j]!=null) {
+			return this._array[j].get(i, r);
+		} else if(this._sparse[j]!=null) {
+			return this._sparse[j].get(i, r);
 		} else {
-			if(this._array[j]==null) {
-				r[0] = 0;
-				r[1] = 0;
-				return false;
+			return false;
+		}
+	}
+
+	/*
+	 * true if key p_i is in page j, which may be missing.
+	 */
+	private boolean _pageContains(int j, int p_i) {
+		if (j >= this._array.length) {
+			return false;
+		}
+		return this._array[j] != null ? this._array[j].containsKey(p_i)
+				: this._sparse[j] != null && this._sparse[j].containsKey(p_i);
+	}
+	
+	/*
+	 * put p_values[n] at p_keys[n] for every n. the batch is grouped by page
+	 * with a stable counting sort, so every page is filled in one pass by
+	 * FastHashtable's batch put and later duplicates of a key still win.
+	 * 
+	 * this method will throw for a negative key, before any key is put.
+	 */
+	public void putAll(int[] p_keys, long[] p_values) {
+		if (p_keys.length != p_values.length) {
+			throw new IllegalArgumentException("keys and values differ in length");
+		}
+		this._checkWritable();
+		final int N = p_keys.length;
+		if (N == 0) {
+			return;
+		}
+		if (this._negative != null && this._putSigned(p_keys, p_values, false)) {
+			return;
+		}
+		int first = p_keys[0] / this._ftSize;
+		int maxPage = -1;
+		boolean onePage = true;
+		for (int n = 0; n < N; ++n) {
+			int key = p_keys[n];
+			if (key < 0) {
+				throw new ArrayIndexOutOfBoundsException(key);
+			}
+			int j = key / this._ftSize;
+			maxPage = Math.max(maxPage, j);
+			onePage &= j == first;
+		}
+		if (maxPage >= this._array.length) {
+			this._growTo(maxPage + 1);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts += N;
+		}
+		if (onePage) {
+			this._putPage(first, p_keys, p_values, 0, N);
+			return;
+		}
+
+		/*
+		 * end[j] starts as the end of page j's run in the sorted batch. the
+		 * batch is scattered back to front, which keeps the sort stable and
+		 * leaves end[j] at the start of page j's run.
+		 */
+		int[] end = new int[maxPage + 1];
+		for (int n = 0; n < N; ++n) {
+			++end[p_keys[n] / this._ftSize];
+		}
+		for (int j = 1; j <= maxPage; ++j) {
+			end[j] += end[j - 1];
+		}
+		int[] keys = new int[N];
+		long[] values = new long[N];
+		for (int n = N - 1; n >= 0; --n) {
+			int m = --end[p_keys[n] / this._ftSize];
+			keys[m] = p_keys[n];
+			values[m] = p_values[n];
+		}
+		for (int j = 0; j <= maxPage; ++j) {
+			int from = end[j];
+			int to = j < maxPage ? end[j + 1] : N;
+			if (from < to) {
+				this._putPage(j, keys, values, from, to);
+			}
+		}
+	}
+
+	/*
+	 * put p_values[n] at p_keys[n] for p_from<=n<p_to, all of them keys of
+	 * page j. a sparse page that cannot take that many more keys is promoted
+	 * first. otherwise it takes the keys one at a time until it is full,
+	 * then it is promoted and the rest go to FastHashtable's batch put.
+	 */
+	private void _putPage(int j, int[] p_keys, long[] p_values, int p_from, int p_to) {
+		if (this._live != null) {
+			this._own(j);
+		}
+		int base = j * this._ftSize;
+		FastHashtable dense = this._array[j];
+		if (dense == null) {
+			SparsePage sparse = this._sparse[j];
+			if (sparse == null) {
+				sparse = this._sparse[j] = new SparsePage();
+			}
+			if (sparse.size() + p_to - p_from <= SparsePage._MAX_SIZE) {
+				while (p_from < p_to && sparse.put(p_keys[p_from] - base, p_values[p_from])) {
+					++p_from;
+				}
+				if (p_from == p_to) {
+					return;
+				}
+			}
+			dense = this._promote(j);
+		}
+		dense._putAll(p_keys, p_values, p_from, p_to, base);
+	}
+
+	/*
+	 * split a batch with negative keys by sign and put the parts, with
+	 * parallelPutAll if p_parallel. returns false if the batch has no
+	 * negative keys.
+	 */
+	private boolean _putSigned(int[] p_keys, long[] p_values, boolean p_parallel) {
+		int negatives = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			negatives += p_keys[n] >>> 31;
+		}
+		if (negatives == 0) {
+			return false;
+		}
+		int[] neg_keys = new int[negatives];
+		long[] neg_values = new long[negatives];
+		int[] pos_keys = new int[p_keys.length - negatives];
+		long[] pos_values = new long[p_keys.length - negatives];
+		int neg = 0;
+		int pos = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			if (p_keys[n] < 0) {
+				neg_keys[neg] = ~p_keys[n];
+				neg_values[neg++] = p_values[n];
 			} else {
-				if(this._array[j].get(i, r)) {
-					r[1] = j*this._ftSize + i;
-					return true;
+				pos_keys[pos] = p_keys[n];
+				pos_values[pos++] = p_values[n];
+			}
+		}
+		if (p_parallel) {
+			this._negative.parallelPutAll(neg_keys, neg_values);
+			this.parallelPutAll(pos_keys, pos_values);
+		} else {
+			this._negative.putAll(neg_keys, neg_values);
+			this.putAll(pos_keys, pos_values);
+		}
+		return true;
+	}
+
+	/*
+	 * for every n, if p_keys[n] is in the table set p_result[n] to its value
+	 * and set bit n of p_found, otherwise clear bit n of p_found. returns the
+	 * number of keys found.
+	 */
+	public int getAll(int[] p_keys, long[] p_result, BitSet p_found) {
+		long[] r = new long[2];
+		long[] words = new long[(p_keys.length + 63) >>> 6];
+		int found = 0;
+		int negative = 0;
+		int negative_found = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			if (p_keys[n] >= 0 || this._negative == null) {
+				if (this._get(p_keys[n], r)) {
+					p_result[n] = r[1];
+					words[n >>> 6] |= 1L << n;
+					++found;
+				}
+			} else {
+				++negative;
+				if (this._negative.get(~p_keys[n], r)) {
+					p_result[n] = r[1];
+					words[n >>> 6] |= 1L << n;
+					++found;
+					++negative_found;
+				}
+			}
+		}
+		FastHashtable._setFound(p_found, words, p_keys.length);
+		this._countBatch(p_keys.length - negative, found - negative_found);
+		return found;
+	}
+
+	/*
+	 * set bit n of p_found if p_keys[n] is in the table, clear it otherwise.
+	 * returns the number of keys found.
+	 */
+	public int containsAll(int[] p_keys, BitSet p_found) {
+		long[] words = new long[(p_keys.length + 63) >>> 6];
+		int found = 0;
+		int negative = 0;
+		int negative_found = 0;
+		for (int n = 0; n < p_keys.length; ++n) {
+			if (p_keys[n] >= 0 || this._negative == null) {
+				if (p_keys[n] >= 0 && this._pageContains(p_keys[n] / this._ftSize,
+						p_keys[n] % this._ftSize)) {
+					words[n >>> 6] |= 1L << n;
+					++found;
+				}
+			} else {
+				++negative;
+				if (this._negative.containsKey(~p_keys[n])) {
+					words[n >>> 6] |= 1L << n;
+					++found;
+					++negative_found;
+				}
+			}
+		}
+		FastHashtable._setFound(p_found, words, p_keys.length);
+		this._countBatch(p_keys.length - negative, found - negative_found);
+		return found;
+	}
+
+	/*
+	 * grow the page directory to p_pages pages.
+	 */
+	private void _growTo(int p_pages) {
+		long then = FastHashtableMetrics.ENABLED ? System.nanoTime() : 0;
+		this._array = Arrays.copyOf(this._array, p_pages);
+		this._sparse = Arrays.copyOf(this._sparse, p_pages);
+		this._shared_directory = false;
+		if (this._page_epoch != null) {
+			this._page_epoch = Arrays.copyOf(this._page_epoch, p_pages);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._rehashes++;
+			this._metrics._rehash_nanos += System.nanoTime() - then;
+		}
+	}
+
+	/*
+	 * count a get, and a hit if p_hit. returns p_hit.
+	 */
+	private boolean _counted(boolean p_hit) {
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._gets++;
+			if (p_hit) {
+				this._metrics._hits++;
+			}
+		}
+		return p_hit;
+	}
+
+	private void _countBatch(int p_gets, int p_hits) {
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._gets += p_gets;
+			this._metrics._hits += p_hits;
+		}
+	}
+
+	/*
+	 * the metrics of this table, see FastHashtableMetrics. the counters stay
+	 * 0 unless collection is enabled.
+	 */
+	public FastHashtableMetrics getMetrics() {
+		if (this._metrics == null) {
+			this._metrics = new FastHashtableMetrics(this);
+		}
+		return this._metrics;
+	}
+
+	FastHashtableMetrics _negativeMetrics() {
+		return this._negative != null ? this._negative.getMetrics() : null;
+	}
+
+	/*
+	 * the number of pages that exist, including the pages of negative keys.
+	 */
+	int _pageCount() {
+		int pages = 0;
+		for (int j = 0; j < this._array.length; ++j) {
+			if (this._array[j] != null || this._sparse[j] != null) {
+				++pages;
+			}
+		}
+		return pages + (this._negative != null ? this._negative._pageCount() : 0);
+	}
+
+	/*
+	 * an estimate of the bytes held by the page directory and the pages, see
+	 * FastHashtable.getMemoryUsage.
+	 */
+	public long getMemoryUsage() {
+		long bytes = 2 * (16 + 8L * this._array.length);
+		for (int j = 0; j < this._array.length; ++j) {
+			if (this._array[j] != null) {
+				bytes += this._array[j].getMemoryUsage();
+			} else if (this._sparse[j] != null) {
+				bytes += this._sparse[j].getMemoryUsage();
+			}
+		}
+		return bytes + (this._negative != null ? this._negative.getMemoryUsage() : 0);
+	}
+
+	/*
+	 * true if every key of p_keys is in the table.
+	 */
+	public boolean containsAll(int[] p_keys) {
+		for (int n = 0; n < p_keys.length; ++n) {
+			if (!this.containsKey(p_keys[n])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * the smallest key >= p_from, or FastHashtable.NO_KEY. pages that have
+	 * never been written to are skipped.
+	 */
+	public long nextKey(int p_from) {
+		if (p_from < 0) {
+			if (this._negative != null) {
+				int key = this._negative._prevKey(~p_from);
+				if (key >= 0) {
+					return ~key;
+				}
+			}
+			p_from = 0;
+		}
+		int key = this._nextKey(p_from);
+		return key >= 0 ? key : FastHashtable.NO_KEY;
+	}
+
+	/*
+	 * the largest key <= p_from, or FastHashtable.NO_KEY.
+	 */
+	public long prevKey(int p_from) {
+		if (p_from >= 0) {
+			int key = this._prevKey(p_from);
+			if (key >= 0) {
+				return key;
+			}
+			p_from = -1;
+		}
+		if (this._negative != null) {
+			int key = this._negative._nextKey(~p_from);
+			if (key >= 0) {
+				return ~key;
+			}
+		}
+		return FastHashtable.NO_KEY;
+	}
+
+	/*
+	 * call p_consumer for every key k with p_lo<=k<p_hi, in ascending key
+	 * order. only the pages that overlap the range are visited.
+	 */
+	public void forEachInRange(int p_lo, int p_hi, IntLongConsumer p_consumer) {
+		if (p_lo >= p_hi) {
+			return;
+		}
+		if (p_lo < 0 && this._negative != null) {
+			this._negative._forEachInRange(-Math.min(p_hi, 0), ~p_lo, -1, p_consumer);
+		}
+		if (p_hi > 0) {
+			this._forEachInRange(Math.max(p_lo, 0), p_hi - 1, 0, p_consumer);
+		}
+	}
+
+	/*
+	 * the number of keys k with p_lo<=k<p_hi.
+	 */
+	public int countInRange(int p_lo, int p_hi) {
+		if (p_lo >= p_hi) {
+			return 0;
+		}
+		int count = 0;
+		if (p_lo < 0 && this._negative != null) {
+			count += this._negative._countInRange(-Math.min(p_hi, 0), ~p_lo);
+		}
+		if (p_hi > 0) {
+			count += this._countInRange(Math.max(p_lo, 0), p_hi - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * the smallest key >= p_from, or -1. p_from must be non-negative.
+	 */
+	private int _nextKey(int p_from) {
+		int first = p_from / this._ftSize;
+		for (int j = first; j < this._array.length; ++j) {
+			int i = j == first ? p_from % this._ftSize : 0;
+			int key = this._array[j] != null ? this._array[j]._nextKey(i)
+					: this._sparse[j] != null ? this._sparse[j]._nextKey(i) : -1;
+			if (key >= 0) {
+				return j * this._ftSize + key;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * the largest key <= p_from, or -1.
+	 */
+	private int _prevKey(int p_from) {
+		if (p_from < 0) {
+			return -1;
+		}
+		int last = p_from / this._ftSize;
+		for (int j = Math.min(last, this._array.length - 1); j >= 0; --j) {
+			int i = j == last ? p_from % this._ftSize : this._ftSize - 1;
+			int key = this._array[j] != null ? this._array[j]._prevKey(i)
+					: this._sparse[j] != null ? this._sparse[j]._prevKey(i) : -1;
+			if (key >= 0) {
+				return j * this._ftSize + key;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * call p_consumer with k^p_flip for every key k with p_lo<=k<=p_hi, in
+	 * ascending order, or descending if p_flip is -1. p_lo must be
+	 * non-negative.
+	 */
+	private void _forEachInRange(int p_lo, int p_hi, int p_flip, IntLongConsumer p_consumer) {
+		p_hi = Math.min(p_hi, this.maxKey());
+		if (p_lo > p_hi) {
+			return;
+		}
+		int first = p_lo / this._ftSize;
+		int last = p_hi / this._ftSize;
+		for (int n = first; n <= last; ++n) {
+			int j = p_flip == 0 ? n : first + last - n;
+			int lo = j == first ? p_lo % this._ftSize : 0;
+			int hi = j == last ? p_hi % this._ftSize : this._ftSize - 1;
+			if (this._array[j] != null) {
+				this._array[j]._forEachInRange(lo, hi, j * this._ftSize, p_flip, p_consumer);
+			} else if (this._sparse[j] != null) {
+				this._sparse[j]._forEachInRange(lo, hi, j * this._ftSize, p_flip, p_consumer);
+			}
+		}
+	}
+
+	/*
+	 * the number of keys k with p_lo<=k<=p_hi. p_lo must be non-negative.
+	 */
+	private int _countInRange(int p_lo, int p_hi) {
+		p_hi = Math.min(p_hi, this.maxKey());
+		if (p_lo > p_hi) {
+			return 0;
+		}
+		int first = p_lo / this._ftSize;
+		int last = p_hi / this._ftSize;
+		int count = 0;
+		for (int j = first; j <= last; ++j) {
+			int lo = j == first ? p_lo % this._ftSize : 0;
+			int hi = j == last ? p_hi % this._ftSize : this._ftSize - 1;
+			if (this._array[j] != null) {
+				if (j != first && j != last) {
+					count += this._array[j].size();
 				} else {
-					return false;
+					count += this._array[j]._countInRange(lo, hi);
 				}
+			} else if (this._sparse[j] != null) {
+				count += this._sparse[j]._countInRange(lo, hi);
 			}
 		}
+		return count;
 	}
-	
+
+	/*
+	 * the fewest pages a CombineTask splits into two tasks.
+	 */
+	private static final int _PARALLEL_PAGES = 8;
+
+	/*
+	 * a new table with the keys that are in this table and in p_other, with
+	 * the values of this table. pages are combined with
+	 * FastHashtable.intersectKeys, which works on whole bucket words since
+	 * all pages have the same bucket count.
+	 */
+	public FastHashtableExtender intersectKeys(FastHashtableExtender p_other) {
+		return this.intersectKeys(p_other, false);
+	}
+
+	/*
+	 * with p_parallel set, the pages are combined by the tasks of the common
+	 * ForkJoinPool.
+	 */
+	public FastHashtableExtender intersectKeys(FastHashtableExtender p_other, boolean p_parallel) {
+		return this._combineSigned(p_other, FastHashtable._AND, p_parallel);
+	}
+
+	/*
+	 * a new table with the keys that are in this table or in p_other, with
+	 * the value of this table if the key is in both.
+	 */
+	public FastHashtableExtender unionKeys(FastHashtableExtender p_other) {
+		return this.unionKeys(p_other, false);
+	}
+
+	public FastHashtableExtender unionKeys(FastHashtableExtender p_other, boolean p_parallel) {
+		return this._combineSigned(p_other, FastHashtable._OR, p_parallel);
+	}
+
+	/*
+	 * a new table with the keys of this table that are not in p_other, with
+	 * the values of this table.
+	 */
+	public FastHashtableExtender andNot(FastHashtableExtender p_other) {
+		return this.andNot(p_other, false);
+	}
+
+	public FastHashtableExtender andNot(FastHashtableExtender p_other, boolean p_parallel) {
+		return this._combineSigned(p_other, FastHashtable._AND_NOT, p_parallel);
+	}
+
+	/*
+	 * call p_consumer with the key and both values for every key that is in
+	 * this table and in p_other, in this table's forEach order. pages that
+	 * are missing from either table are skipped.
+	 */
+	public void intersect(FastHashtableExtender p_other, IntLongLongConsumer p_consumer) {
+		if (this._negative != null && p_other._negative != null) {
+			this._negative._intersect(p_other._negative, -1, p_consumer);
+		}
+		this._intersect(p_other, 0, p_consumer);
+	}
+
+	private void _intersect(final FastHashtableExtender p_other, final int p_flip,
+			final IntLongLongConsumer p_consumer) {
+		int pages = Math.min(this._array.length, p_other._array.length);
+		final long[] r = new long[2];
+		for (int j = 0; j < pages; ++j) {
+			final int base = j * this._ftSize;
+			final FastHashtable other = p_other._array[j];
+			final SparsePage other_sparse = p_other._sparse[j];
+			if (other == null && other_sparse == null) {
+				continue;
+			}
+			if (this._array[j] != null && other != null) {
+				this._array[j]._intersect(other, base, p_flip, p_consumer);
+			} else if (this._array[j] != null) {
+				/*
+				 * a dense page and a sparse one, the dense page sets the
+				 * order.
+				 */
+				this._array[j].forEach(new IntLongConsumer() {
+					public void accept(int p_key, long p_value) {
+						if (other_sparse.get(p_key, r)) {
+							p_consumer.accept((base + p_key) ^ p_flip, p_value, r[1]);
+						}
+					}
+				});
+			} else if (this._sparse[j] != null) {
+				SparsePage page = this._sparse[j];
+				for (int n = 0; n < page.size(); ++n) {
+					int key = page._key(n);
+					if (other != null ? other.get(key, r) : other_sparse.get(key, r)) {
+						p_consumer.accept((base + key) ^ p_flip, page._value(n), r[1]);
+					}
+				}
+			}
+		}
+	}
+
+	private FastHashtableExtender _combineSigned(FastHashtableExtender p_other, int p_op,
+			boolean p_parallel) {
+		FastHashtableExtender result = this._combine(p_other, p_op, p_parallel);
+		FastHashtableExtender a = this._negative;
+		FastHashtableExtender b = p_other._negative;
+		boolean signed = p_op == FastHashtable._AND ? a != null && b != null
+				: p_op == FastHashtable._OR ? a != null || b != null : a != null;
+		if (signed) {
+			FastHashtableExtender empty = new FastHashtableExtender();
+			result._negative = (a != null ? a : empty)._combine(b != null ? b : empty, p_op,
+					p_parallel);
+		}
+		return result;
+	}
+
+	private FastHashtableExtender _combine(FastHashtableExtender p_other, int p_op,
+			boolean p_parallel) {
+		int a = this._array.length;
+		int b = p_other._array.length;
+		FastHashtableExtender result = new FastHashtableExtender();
+		int pages = p_op == FastHashtable._AND ? Math.min(a, b)
+				: p_op == FastHashtable._OR ? Math.max(a, b) : a;
+		result._array = new FastHashtable[pages];
+		result._sparse = new SparsePage[pages];
+		CombineTask task = new CombineTask(this, p_other, result, p_op, 0, pages);
+		if (p_parallel) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.compute();
+		}
+		return result;
+	}
+
+	/*
+	 * Combines pages [_from,_to) of two tables into the pages of a result.
+	 * Every page is written by one task only, so the tasks need no locks.
+	 */
+	private static class CombineTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FastHashtableExtender _a;
+		private final FastHashtableExtender _b;
+		private final FastHashtableExtender _result;
+		private final int _op;
+		private final int _from;
+		private final int _to;
+
+		CombineTask(FastHashtableExtender p_a, FastHashtableExtender p_b,
+				FastHashtableExtender p_result, int p_op, int p_from, int p_to) {
+			this._a = p_a;
+			this._b = p_b;
+			this._result = p_result;
+			this._op = p_op;
+			this._from = p_from;
+			this._to = p_to;
+		}
+
+		protected void compute() {
+			if (this._to - this._from >= 2 * _PARALLEL_PAGES && getPool() != null) {
+				int middle = (this._from + this._to) >>> 1;
+				invokeAll(new CombineTask(this._a, this._b, this._result, this._op, this._from,
+						middle), new CombineTask(this._a, this._b, this._result, this._op,
+						middle, this._to));
+				return;
+			}
+			for (int j = this._from; j < this._to; ++j) {
+				this._result._combinePage(j, this._a, this._b, this._op);
+			}
+		}
+	}
+
+	/*
+	 * combine page j of p_a and p_b with p_op into page j of this table.
+	 * 
+	 * two dense pages are combined a bucket word at a time. a sparse page of
+	 * p_a is filtered by probing the page of p_b, and so is a sparse page of
+	 * p_b when p_op is _AND. two sparse pages are merged for _OR. otherwise
+	 * the sparse page is made dense for FastHashtable._combine. a result
+	 * with few keys is stored sparse.
+	 */
+	private void _combinePage(int j, FastHashtableExtender p_a, FastHashtableExtender p_b,
+			int p_op) {
+		FastHashtable a = p_a._pageOrNull(j);
+		FastHashtable b = p_b._pageOrNull(j);
+		SparsePage a_sparse = j < p_a._sparse.length ? p_a._sparse[j] : null;
+		SparsePage b_sparse = j < p_b._sparse.length ? p_b._sparse[j] : null;
+		SparsePage sparse = null;
+		FastHashtable dense = null;
+		if (a_sparse != null && p_op != FastHashtable._OR) {
+			sparse = a_sparse._filter(b, b_sparse, p_op == FastHashtable._AND);
+		} else if (b_sparse != null && a != null && p_op == FastHashtable._AND) {
+			sparse = b_sparse._probe(a);
+		} else if (a == null && b == null) {
+			sparse = p_op == FastHashtable._OR ? SparsePage._union(a_sparse, b_sparse) : null;
+		} else {
+			dense = FastHashtable._combine(a != null ? a
+					: a_sparse != null ? a_sparse._toDense(this._ftSize) : null,
+					b != null ? b : b_sparse != null ? b_sparse._toDense(this._ftSize) : null,
+					p_op);
+		}
+		if (sparse != null && sparse.size() > SparsePage._MAX_SIZE) {
+			dense = sparse._toDense(this._ftSize);
+			sparse = null;
+		}
+		if (dense != null && dense.size() < SparsePage._MAX_SIZE / 2) {
+			sparse = SparsePage._of(dense);
+			dense = null;
+		}
+		this._array[j] = dense;
+		this._sparse[j] = sparse != null && sparse.size() != 0 ? sparse : null;
+	}
+
+	/*
+	 * dense page j, or null if it is not dense or does not exist.
+	 */
+	private FastHashtable _pageOrNull(int j) {
+		return j < this._array.length ? this._array[j] : null;
+	}
+
+	/*
+	 * the fewest keys per chunk of parallelPutAll. smaller batches are put
+	 * by putAll.
+	 */
+	private static final int _PARALLEL_KEYS = 1 << 16;
+
+	/*
+	 * like putAll, with the work split among the tasks of the common
+	 * ForkJoinPool:
+	 * 
+	 * 1. the batch is cut into chunks of at least _PARALLEL_KEYS keys, a
+	 *    few per thread. a task checks the keys of a chunk and finds its
+	 *    largest page, then counts its keys by page.
+	 * 2. the counts give every chunk its own slots in each page's run of the
+	 *    sorted batch, the chunks in batch order, so the tasks scatter their
+	 *    chunks without locks and the sort stays stable.
+	 * 3. the run of each page is put by one task, as CombineTask does.
+	 * 
+	 * the directory is grown and the pages of the batch are made writable,
+	 * see snapshot, before step 3, so a task writes only to its own pages.
+	 * like putAll, later duplicates of a key win, and this method will throw
+	 * for a negative key before any key is put.
+	 */
+	public void parallelPutAll(final int[] p_keys, final long[] p_values) {
+		if (p_keys.length != p_values.length) {
+			throw new IllegalArgumentException("keys and values differ in length");
+		}
+		this._checkWritable();
+		final int N = p_keys.length;
+		final int chunks = Math.min(N / _PARALLEL_KEYS,
+				4 * ForkJoinPool.getCommonPoolParallelism());
+		if (chunks < 2) {
+			this.putAll(p_keys, p_values);
+			return;
+		}
+		if (this._negative != null && this._putSigned(p_keys, p_values, true)) {
+			return;
+		}
+		final int ftSize = this._ftSize;
+
+		/*
+		 * chunk c is [N*c/chunks, N*(c+1)/chunks). bad[c] is the first
+		 * negative key of chunk c, or 0.
+		 */
+		final int[] maxPage = new int[chunks];
+		final int[] bad = new int[chunks];
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int max = -1;
+				for (int n = ForkJoinUtil.chunk(N, chunks, c),
+						to = ForkJoinUtil.chunk(N, chunks, c + 1); n < to; ++n) {
+					int key = p_keys[n];
+					if (key < 0) {
+						bad[c] = key;
+						return;
+					}
+					max = Math.max(max, key / ftSize);
+				}
+				maxPage[c] = max;
+			}
+		});
+		int max = -1;
+		for (int c = 0; c < chunks; ++c) {
+			if (bad[c] != 0) {
+				throw new ArrayIndexOutOfBoundsException(bad[c]);
+			}
+			max = Math.max(max, maxPage[c]);
+		}
+		final int pages = max + 1;
+		if (pages > this._array.length) {
+			this._growTo(pages);
+		}
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics._puts += N;
+		}
+
+		/*
+		 * slot[c][j] starts as the count of page j in chunk c, and becomes
+		 * the index in the sorted batch where chunk c's keys of page j go.
+		 * start[j] is the start of page j's run.
+		 */
+		final int[][] slot = new int[chunks][];
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int[] count = slot[c] = new int[pages];
+				for (int n = ForkJoinUtil.chunk(N, chunks, c),
+						to = ForkJoinUtil.chunk(N, chunks, c + 1); n < to; ++n) {
+					++count[p_keys[n] / ftSize];
+				}
+			}
+		});
+		final int[] start = new int[pages + 1];
+		int m = 0;
+		for (int j = 0; j < pages; ++j) {
+			start[j] = m;
+			for (int c = 0; c < chunks; ++c) {
+				int count = slot[c][j];
+				slot[c][j] = m;
+				m += count;
+			}
+		}
+		start[pages] = N;
+		final int[] keys = new int[N];
+		final long[] values = new long[N];
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int[] next = slot[c];
+				for (int n = ForkJoinUtil.chunk(N, chunks, c),
+						to = ForkJoinUtil.chunk(N, chunks, c + 1); n < to; ++n) {
+					int i = next[p_keys[n] / ftSize]++;
+					keys[i] = p_keys[n];
+					values[i] = p_values[n];
+				}
+			}
+		});
+
+		for (int j = 0; j < pages && this._live != null; ++j) {
+			if (start[j] < start[j + 1]) {
+				this._own(j);
+			}
+		}
+		ForkJoinUtil.parallelFor(0, pages, new IntConsumer() {
+			public void accept(int j) {
+				if (start[j] < start[j + 1]) {
+					FastHashtableExtender.this._putPage(j, keys, values, start[j], start[j + 1]);
+				}
+			}
+		});
+	}
+
+	/*
+	 * call p_consumer for every key/value pair, with the pages visited by
+	 * the tasks of the common ForkJoinPool. p_consumer is called from
+	 * several threads at once and must be thread-safe. the keys of a page
+	 * come from one thread in forEach order, but there is no order between
+	 * pages.
+	 */
+	public void parallelForEach(final IntLongConsumer p_consumer) {
+		if (this._negative != null) {
+			this._negative.parallelForEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					p_consumer.accept(~p_key, p_value);
+				}
+			});
+		}
+		ForkJoinUtil.parallelFor(0, this._array.length, new IntConsumer() {
+			public void accept(int j) {
+				FastHashtableExtender.this._forEachPage(j, p_consumer);
+			}
+		});
+	}
+
+	/*
+	 * p_op applied to p_identity and all the values. the pages are reduced
+	 * by the tasks of the common ForkJoinPool and their results combined in
+	 * page order, so p_op must be associative and p_identity its identity,
+	 * but p_op need not be commutative or thread-safe.
+	 */
+	public long parallelReduce(final long p_identity, final LongBinaryOperator p_op) {
+		final long[] page = new long[this._array.length];
+		ForkJoinUtil.parallelFor(0, page.length, new IntConsumer() {
+			public void accept(int j) {
+				FastHashtable dense = FastHashtableExtender.this._array[j];
+				SparsePage sparse = FastHashtableExtender.this._sparse[j];
+				page[j] = dense != null ? dense._reduce(p_identity, p_op)
+						: sparse != null ? sparse._reduce(p_identity, p_op) : p_identity;
+			}
+		});
+		long result = this._negative != null ? this._negative.parallelReduce(p_identity, p_op)
+				: p_identity;
+		for (int j = 0; j < page.length; ++j) {
+			result = p_op.applyAsLong(result, page[j]);
+		}
+		return result;
+	}
+
+	/*
+	 * the sum of the values, wrapping on overflow like long addition.
+	 */
+	public long parallelSum() {
+		return this.parallelReduce(0, new LongBinaryOperator() {
+			public long applyAsLong(long p_a, long p_b) {
+				return p_a + p_b;
+			}
+		});
+	}
+
+	/*
+	 * the smallest value, or Long.MAX_VALUE for an empty table.
+	 */
+	public long parallelMin() {
+		return this.parallelReduce(Long.MAX_VALUE, new LongBinaryOperator() {
+			public long applyAsLong(long p_a, long p_b) {
+				return Math.min(p_a, p_b);
+			}
+		});
+	}
+
+	/*
+	 * the largest value, or Long.MIN_VALUE for an empty table.
+	 */
+	public long parallelMax() {
+		return this.parallelReduce(Long.MIN_VALUE, new LongBinaryOperator() {
+			public long applyAsLong(long p_a, long p_b) {
+				return Math.max(p_a, p_b);
+			}
+		});
+	}
+
+	private static final int _STREAM_MAGIC = 0x46485831;
+	private static final int _STREAM_VERSION = 2;
+
+	/*
+	 * the kinds of page in a stream.
+	 */
+	private static final int _DENSE = 0;
+	private static final int _SPARSE = 1;
+
+	/*
+	 * write the table to p_channel in the chunked binary form of
+	 * FastHashtable.writeTo. the channel is not closed.
+	 * 
+	 *     int      magic, 0x46485831 ("FHX1")
+	 *     int      version, 2
+	 *     body:
+	 *     int      flags, 1 if a body of negative keys follows
+	 *     int      the length of the page directory
+	 *     for every page that exists, in order:
+	 *         int                 the page number
+	 *         int                 0 for a dense page, 1 for a sparse one
+	 *         FastHashtable body  a dense page, or
+	 *         SparsePage body     a sparse page, see SparsePage._writeBody
+	 *     int      -1
+	 *     body     the table of negative keys
+	 * 
+	 * version 1 streams, which have no page kind and only dense pages, can
+	 * still be read.
+	 */
+	public void writeTo(WritableByteChannel p_channel) throws IOException {
+		ChunkedOutput out = new ChunkedOutput(p_channel);
+		out.putInt(_STREAM_MAGIC);
+		out.putInt(_STREAM_VERSION);
+		this._writeBody(out);
+		out.finish();
+	}
+
+	private void _writeBody(ChunkedOutput p_out) throws IOException {
+		p_out.putInt(this._negative != null ? 1 : 0);
+		p_out.putInt(this._array.length);
+		for (int j = 0; j < this._array.length; ++j) {
+			if (this._array[j] != null) {
+				p_out.putInt(j);
+				p_out.putInt(_DENSE);
+				this._array[j]._writeBody(p_out);
+			} else if (this._sparse[j] != null) {
+				p_out.putInt(j);
+				p_out.putInt(_SPARSE);
+				this._sparse[j]._writeBody(p_out);
+			}
+		}
+		p_out.putInt(-1);
+		if (this._negative != null) {
+			this._negative._writeBody(p_out);
+		}
+	}
+
+	/*
+	 * read a table written by writeTo. only the bytes of the table are read
+	 * from p_channel. the channel is not closed.
+	 */
+	public static FastHashtableExtender readFrom(ReadableByteChannel p_channel) throws IOException {
+		ChunkedInput in = new ChunkedInput(p_channel);
+		if (in.getInt() != _STREAM_MAGIC) {
+			throw new IOException("not a FastHashtableExtender stream");
+		}
+		int version = in.getInt();
+		if (version != 1 && version != _STREAM_VERSION) {
+			throw new IOException("unsupported FastHashtableExtender stream version");
+		}
+		FastHashtableExtender fte = _readBody(in, version);
+		in.finish();
+		return fte;
+	}
+
+	private static FastHashtableExtender _readBody(ChunkedInput p_in, int p_version)
+			throws IOException {
+		FastHashtableExtender fte = new FastHashtableExtender();
+		int flags = p_in.getInt();
+		int length = p_in.getInt();
+		if ((flags & ~1) != 0 || length < 0 || length > (Integer.MAX_VALUE / fte._ftSize) + 1) {
+			throw new IOException("corrupt FastHashtableExtender stream");
+		}
+		fte._array = new FastHashtable[length];
+		fte._sparse = new SparsePage[length];
+		for (int j = p_in.getInt(); j != -1; j = p_in.getInt()) {
+			if (j < 0 || j >= length || fte._array[j] != null || fte._sparse[j] != null) {
+				throw new IOException("corrupt FastHashtableExtender stream, page " + j);
+			}
+			int kind = p_version == 1 ? _DENSE : p_in.getInt();
+			if (kind == _SPARSE) {
+				fte._sparse[j] = SparsePage._readBody(p_in, fte._ftSize);
+				if (fte._sparse[j].size() > SparsePage._MAX_SIZE) {
+					fte._promote(j);
+				}
+				continue;
+			}
+			FastHashtable page = kind == _DENSE ? FastHashtable._readBody(p_in) : null;
+			if (page == null || page.maxSize() != fte._ftSize || page._isSigned()) {
+				throw new IOException("corrupt FastHashtableExtender stream, page " + j);
+			}
+			fte._array[j] = page;
+		}
+		if (flags != 0) {
+			fte._negative = _readBody(p_in, p_version);
+			if (fte._negative._negative != null) {
+				throw new IOException("corrupt FastHashtableExtender stream, flags");
+			}
+		}
+		return fte;
+	}
+
+	/*
+	 * a read-only view of the table as it is now, see FastHashtable.snapshot.
+	 * the view shares the page directory and the pages. after a snapshot the
+	 * table copies the directory on its next write, and replaces a page the
+	 * first time it writes to it by a fork that shares the page's rows and
+	 * copies them on write. so a snapshot is O(1) and a write to a shared
+	 * dense page costs the copy of its bucket array, its row spine and the
+	 * rows it writes, not of the page. a shared sparse page is copied.
+	 * 
+	 * the threading rules and release are those of FastHashtable.snapshot.
+	 */
+	public FastHashtableExtender snapshot() {
+		AtomicInteger live = this._snapshot;
+		if (live == null) {
+			if (this._live == null) {
+				this._live = new AtomicInteger();
+			}
+			live = this._live;
+			this._shared_directory = true;
+			if (this._page_epoch == null || this._epoch == Integer.MAX_VALUE) {
+				this._page_epoch = new int[this._array.length];
+				this._epoch = 0;
+			}
+			++this._epoch;
+		}
+		live.incrementAndGet();
+		FastHashtableExtender view = new FastHashtableExtender();
+		view._array = this._array;
+		view._sparse = this._sparse;
+		view._snapshot = live;
+		if (this._negative != null) {
+			view._negative = this._negative.snapshot();
+		}
+		return view;
+	}
+
+	/*
+	 * true for a view made by snapshot.
+	 */
+	public boolean isSnapshot() {
+		return this._snapshot != null;
+	}
+
+	/*
+	 * release a view made by snapshot. the view is empty afterwards.
+	 * releasing a view twice does nothing. this method will throw for a
+	 * table that is not a snapshot.
+	 */
+	public void release() {
+		if (this._snapshot == null) {
+			throw new IllegalStateException("table is not a snapshot");
+		}
+		if (this._released) {
+			return;
+		}
+		this._released = true;
+		this._array = new FastHashtable[0];
+		this._sparse = new SparsePage[0];
+		this._snapshot.decrementAndGet();
+		if (this._negative != null) {
+			this._negative.release();
+		}
+	}
+
+	private void _checkWritable() {
+		if (this._snapshot != null) {
+			throw new IllegalStateException("table is a snapshot");
+		}
+	}
+
+	/*
+	 * make page j safe to write. _live must be set.
+	 */
+	private void _own(int j) {
+		if (this._page_epoch[j] == this._epoch) {
+			return;
+		}
+		if (this._live.get() == 0) {
+			this._live = null;
+			this._page_epoch = null;
+			this._shared_directory = false;
+			return;
+		}
+		if (this._shared_directory) {
+			this._array = this._array.clone();
+			this._sparse = this._sparse.clone();
+			this._shared_directory = false;
+		}
+		if (this._array[j] != null) {
+			this._array[j] = this._array[j]._fork(this._live);
+		} else if (this._sparse[j] != null) {
+			this._sparse[j] = new SparsePage(this._sparse[j]);
+		}
+		this._page_epoch[j] = this._epoch;
+	}
+
 	public FastHashtableExtender() {
 
 		this._array = new FastHashtable[0];
+		this._sparse = new SparsePage[0];
+		if (FastHashtableMetrics.ENABLED) {
+			this._metrics = new FastHashtableMetrics(this);
+		}
 
 	}
 	
+	/*
+	 * call p_consumer for every key/value pair, page by page. pages that have
+	 * never been written to are skipped. the keys of a sparse page come in
+	 * ascending order, those of a dense page in FastHashtable.forEach order.
+	 * with signed keys the negative keys come first.
+	 */
+	public void forEach(final IntLongConsumer p_consumer) {
+		if(this._negative!=null) {
+			this._negative.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					p_consumer.accept(~p_key, p_value);
+				}
+			});
+		}
+		for(int j=0;j<this._array.length;++j) {
+			this._forEachPage(j, p_consumer);
+		}
+	}
+
+	/*
+	 * call p_consumer for every key/value pair of page j.
+	 */
+	private void _forEachPage(int j, final IntLongConsumer p_consumer) {
+		if(this._array[j]!=null) {
+			final int base = j*this._ftSize;
+			this._array[j].forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					p_consumer.accept(base + p_key, p_value);
+				}
+			});
+		} else if(this._sparse[j]!=null) {
+			this._sparse[j].forEach(j*this._ftSize, p_consumer);
+		}
+	}
+
+	/*
+	 * the keys in forEach order.
+	 */
+	public int[] keys() {
+		int[] keys = new int[this.size()];
+		int n = 0;
+		if(this._negative!=null) {
+			int[] negative = this._negative.keys();
+			for(int i=0;i<negative.length;++i) {
+				keys[n++] = ~negative[i];
+			}
+		}
+		for(int j=0;j<this._array.length;++j) {
+			if(this._array[j]!=null) {
+				int[] page = this._array[j].keys();
+				int base = j*this._ftSize;
+				for(int i=0;i<page.length;++i) {
+					keys[n++] = base + page[i];
+				}
+			} else if(this._sparse[j]!=null) {
+				n = this._sparse[j]._keys(keys, n, j*this._ftSize);
+			}
+		}
+		return keys;
+	}
+
+	/*
+	 * the values in forEach order, so values()[n] belongs to keys()[n].
+	 */
+	public long[] values() {
+		long[] values = new long[this.size()];
+		int n = 0;
+		if(this._negative!=null) {
+			long[] negative = this._negative.values();
+			System.arraycopy(negative, 0, values, 0, negative.length);
+			n = negative.length;
+		}
+		for(int j=0;j<this._array.length;++j) {
+			if(this._array[j]!=null) {
+				long[] page = this._array[j].values();
+				System.arraycopy(page, 0, values, n, page.length);
+				n += page.length;
+			} else if(this._sparse[j]!=null) {
+				n = this._sparse[j]._values(values, n);
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * a cursor over the table in forEach order.
+	 */
+	public Cursor cursor() {
+		return new Cursor(this);
+	}
+
+	/*
+	 * Walks the key/value pairs of a FastHashtableExtender without
+	 * allocating, using one FastHashtable.Cursor that is moved from dense
+	 * page to dense page, and an index into sparse pages. The table must not
+	 * be modified while a cursor is in use.
+	 */
+	public static class Cursor {
+
+		private final FastHashtableExtender _fte;
+		private FastHashtable.Cursor _page;
+		private int _j;
+
+		/*
+		 * the sparse page being walked, null on a dense page, and the index
+		 * of its next entry. _last_sparse and _last_index locate the value
+		 * of the key last returned by nextKey if it came from a sparse page.
+		 */
+		private SparsePage _sparse;
+		private int _index;
+		private SparsePage _last_sparse;
+		private int _last_index;
+
+		/*
+		 * with signed keys, the cursor over the negative keys, which are
+		 * walked first. _last_negative is set if the key last returned by
+		 * nextKey was negative.
+		 */
+		private Cursor _negative;
+		private boolean _on_negative;
+		private boolean _last_negative;
+
+		Cursor(FastHashtableExtender p_fte) {
+			this._fte = p_fte;
+			this.reset();
+		}
+
+		/*
+		 * start over at the first key of the table.
+		 */
+		public void reset() {
+			this._j = -1;
+			this._sparse = null;
+			this._last_sparse = null;
+			this._last_negative = false;
+			this._on_negative = this._fte._negative != null;
+			if (this._on_negative) {
+				if (this._negative == null || this._negative._fte != this._fte._negative) {
+					this._negative = new Cursor(this._fte._negative);
+				} else {
+					this._negative.reset();
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			if (this._on_negative) {
+				if (this._negative.hasNext()) {
+					return true;
+				}
+				this._on_negative = false;
+			}
+			FastHashtable[] array = this._fte._array;
+			SparsePage[] sparse = this._fte._sparse;
+			if (this._j >= array.length) {
+				return false;
+			}
+			while (this._j < 0 || (this._sparse != null ? this._index == this._sparse.size()
+					: !this._page.hasNext())) {
+				do {
+					if (++this._j >= array.length) {
+						this._j = array.length;
+						this._sparse = null;
+						return false;
+					}
+				} while (array[this._j] == null && sparse[this._j] == null);
+				this._sparse = sparse[this._j];
+				this._index = 0;
+				if (this._sparse != null) {
+					continue;
+				}
+				if (this._page == null) {
+					this._page = array[this._j].cursor();
+				} else {
+					this._page._reset(array[this._j]);
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * this method will throw if there are no more keys.
+		 */
+		public int nextKey() {
+			if (!this.hasNext()) {
+				throw new java.util.NoSuchElementException();
+			}
+			this._last_negative = this._on_negative;
+			if (this._on_negative) {
+				return ~this._negative.nextKey();
+			}
+			this._last_sparse = this._sparse;
+			if (this._sparse != null) {
+				this._last_index = this._index;
+				return this._j*this._fte._ftSize + this._sparse._key(this._index++);
+			}
+			return this._j*this._fte._ftSize + this._page.nextKey();
+		}
+
+		/*
+		 * the value of the key last returned by nextKey.
+		 */
+		public long value() {
+			if (this._last_negative) {
+				return this._negative.value();
+			}
+			if (this._j < 0) {
+				throw new IllegalStateException("nextKey has not been called");
+			}
+			if (this._last_sparse != null) {
+				return this._last_sparse._value(this._last_index);
+			}
+			return this._page.value();
+		}
+	}
+
+	/*
+	 * the pages in key order, each as ((key,value)...) with the full keys in
+	 * ascending order. with signed keys, the negative pages come first.
+	 */
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		
-		for(int i=0;i<this._array.length;++i) {
-			if(this._array[i]!=null) {
-				sb.append(this._array[i].toString());
+		if(this._negative!=null) {
+			for(int j=this._negative._array.length-1;j>=0;--j) {
+				this._negative._appendPage(sb, j, -1);
 			}
 		}
+		for(int j=0;j<this._array.length;++j) {
+			this._appendPage(sb, j, 0);
+		}
 		
 		return sb.toString();
 	}
 
+	/*
+	 * append page j, if it exists, with every key k shown as k^p_flip. with
+	 * p_flip -1 this is a page of _negative and the keys are walked from the
+	 * largest, so the negative keys still come out in ascending order.
+	 */
+	private void _appendPage(final StringBuilder sb, int j, int p_flip) {
+		if(this._array[j]==null && this._sparse[j]==null) {
+			return;
+		}
+		sb.append('(');
+		int lo = j * this._ftSize;
+		this._forEachInRange(lo, lo + (this._ftSize - 1), p_flip, new IntLongConsumer() {
+			public void accept(int p_key, long p_value) {
+				sb.append('(');
+				sb.append(p_key);
+				sb.append(',');
+				sb.append(p_value);
+				sb.append(')');
+			}
+		});
+		sb.append(')');
+	}
+
 }
@@ -0,0 +1,135 @@
+package fastHashtable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Writes the int keyed specializations of FastHashtable from
+ * PrimitiveFastHashtable.template, and their unit tests from
+ * FHTP/PrimitiveFastHashtableTest.template. Run it from the project directory
+ * after changing a template:
+ *
+ *     java fastHashtable.FastHashtableGenerator [source directory, default src]
+ *
+ * The templates are plain Java with $name$ tokens and line tags. A line that
+ * starts with a tag is kept only for the kinds of table the tag names, and
+ * the tag is removed:
+ *
+ *     @v  tables with values
+ *     @s  sets, tables without values
+ *     @p  tables with primitive values
+ *     @o  tables with object values
+ */
+public class FastHashtableGenerator {
+
+	/*
+	 * one generated class.
+	 */
+	private static final class Kind {
+		final String _class;
+		final String _generic;
+		final String _value;
+		final String _store;
+		final String _sample;
+		final boolean _values;
+		final boolean _primitive;
+
+		Kind(String p_class, String p_generic, String p_value, String p_store,
+				String p_sample, boolean p_values, boolean p_primitive) {
+			this._class = p_class;
+			this._generic = p_generic;
+			this._value = p_value;
+			this._store = p_store;
+			this._sample = p_sample;
+			this._values = p_values;
+			this._primitive = p_primitive;
+		}
+
+		boolean keeps(char p_tag) {
+			switch (p_tag) {
+			case 'v':
+				return this._values;
+			case 's':
+				return !this._values;
+			case 'p':
+				return this._values && this._primitive;
+			case 'o':
+				return this._values && !this._primitive;
+			default:
+				throw new IllegalArgumentException("unknown template tag @" + p_tag);
+			}
+		}
+	}
+
+	private static final Kind[] _KINDS = {
+			new Kind("IntIntFastHashtable", "", "int", "int", "(3 * key)", true, true),
+			new Kind("IntDoubleFastHashtable", "", "double", "double", "(key * 0.5)", true, true),
+			new Kind("IntObjectFastHashtable", "<V>", "V", "Object", "(\"v\" + key)", true, false),
+			new Kind("IntFastSet", "", "", "", "", false, true) };
+
+	/*
+	 * keep the lines of p_template that p_kind keeps, then replace the
+	 * tokens.
+	 */
+	static String expand(List<String> p_template, Kind p_kind, String[][] p_tokens) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : p_template) {
+			if (line.length() >= 2 && line.charAt(0) == '@') {
+				if (!p_kind.keeps(line.charAt(1))) {
+					continue;
+				}
+				line = line.substring(2);
+			}
+			for (String[] t : p_tokens) {
+				line = line.replace(t[0], t[1]);
+			}
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void _write(Path p_file, String p_text) throws IOException {
+		Files.write(p_file, p_text.getBytes(StandardCharsets.UTF_8));
+		System.out.println("wrote " + p_file);
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		Path src = Paths.get(args.length > 0 ? args[0] : "src");
+		List<String> table = Files.readAllLines(
+				src.resolve("fastHashtable/PrimitiveFastHashtable.template"), StandardCharsets.UTF_8);
+		List<String> test = Files.readAllLines(
+				src.resolve("FHTP/PrimitiveFastHashtableTest.template"), StandardCharsets.UTF_8);
+
+		for (Kind kind : _KINDS) {
+			List<String[]> tokens = new ArrayList<String[]>();
+			tokens.add(new String[] { "$Class$", kind._class });
+			tokens.add(new String[] { "$generic$", kind._generic });
+			tokens.add(new String[] { "$store$", kind._store });
+			tokens.add(new String[] { "$sample$", kind._sample });
+			tokens.add(new String[] { "$equals$", kind._primitive ? " == " + kind._sample
+					: ".equals" + kind._sample });
+
+			/*
+			 * the tests use V=String.
+			 */
+			String[][] tableTokens = tokens.toArray(new String[tokens.size() + 1][]);
+			tableTokens[tokens.size()] = new String[] { "$value$", kind._value };
+			tokens.add(new String[] { "$use$", kind._primitive ? "" : "<String>" });
+			tokens.add(new String[] { "$value$", kind._primitive ? kind._value : "String" });
+			String[][] testTokens = tokens.toArray(new String[tokens.size()][]);
+
+			_write(src.resolve("fastHashtable/" + kind._class + ".java"),
+					expand(table, kind, tableTokens));
+			_write(src.resolve("FHTP/" + kind._class + "Test.java"),
+					expand(test, kind, testTokens));
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+package fastHashtable;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Runtime metrics of a FastHashtable or a FastHashtableExtender, see
+ * getMetrics of either class. The counters are collected only when the JVM is
+ * started with -DfastHashtable.metrics=true:
+ *
+ * 1. puts, and gets with their hits and misses. containsKey counts as a get.
+ *    the batch methods count every key of the batch.
+ * 2. rehashes and the time spent in them. for FastHashtable a rehash is a
+ *    doubling of the bucket count, including the bucket splits an incremental
+ *    growth does on later puts. for FastHashtableExtender it is a growth of
+ *    the page directory.
+ *
+ * ENABLED is a static final, so with collection off the JIT drops the
+ * counting code from put and get entirely. The gauges, size, capacity,
+ * occupancy, memory usage and page count, are read from the table when
+ * asked for and work either way.
+ *
+ * The counters are plain longs written by the table's thread, like the table
+ * itself. A JMX client reading them from another thread may see slightly
+ * stale values.
+ *
+ * The object is a standard MBean, see register.
+ */
+public class FastHashtableMetrics implements FastHashtableMetricsMBean {
+
+	public static final boolean ENABLED = Boolean.getBoolean("fastHashtable.metrics");
+
+	/*
+	 * the counters, written by the table.
+	 */
+	long _puts;
+	long _gets;
+	long _hits;
+	long _rehashes;
+	long _rehash_nanos;
+
+	/*
+	 * the table, only one of them is set.
+	 */
+	private final FastHashtable _ft;
+	private final FastHashtableExtender _fte;
+
+	FastHashtableMetrics(FastHashtable p_ft) {
+		this._ft = p_ft;
+		this._fte = null;
+	}
+
+	FastHashtableMetrics(FastHashtableExtender p_fte) {
+		this._ft = null;
+		this._fte = p_fte;
+	}
+
+	/*
+	 * the metrics of the table of negative keys, if the table has one.
+	 */
+	private FastHashtableMetrics _negative() {
+		if (this._ft != null) {
+			return this._ft._negativeMetrics();
+		}
+		return this._fte._negativeMetrics();
+	}
+
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	public long getPuts() {
+		FastHashtableMetrics n = this._negative();
+		return this._puts + (n != null ? n.getPuts() : 0);
+	}
+
+	public long getGets() {
+		FastHashtableMetrics n = this._negative();
+		return this._gets + (n != null ? n.getGets() : 0);
+	}
+
+	public long getHits() {
+		FastHashtableMetrics n = this._negative();
+		return this._hits + (n != null ? n.getHits() : 0);
+	}
+
+	public long getMisses() {
+		return this.getGets() - this.getHits();
+	}
+
+	public long getRehashes() {
+		FastHashtableMetrics n = this._negative();
+		return this._rehashes + (n != null ? n.getRehashes() : 0);
+	}
+
+	public long getRehashNanos() {
+		FastHashtableMetrics n = this._negative();
+		return this._rehash_nanos + (n != null ? n.getRehashNanos() : 0);
+	}
+
+	public int getSize() {
+		return this._ft != null ? this._ft.size() : this._fte.size();
+	}
+
+	/*
+	 * the number of keys the table holds without growing, negative keys not
+	 * counted.
+	 */
+	public long getCapacity() {
+		return this._ft != null ? this._ft.maxSize() : this._fte.maxSize();
+	}
+
+	/*
+	 * the fraction of the capacity in use. for FastHashtableExtender only the
+	 * pages that exist are counted.
+	 */
+	public double getOccupancy() {
+		long capacity = this._ft != null ? this._ft.maxSize()
+				: (long) this.getPageCount() * (1 << 16);
+		return capacity == 0 ? 0 : (double) this.getSize() / capacity;
+	}
+
+	public long getMemoryUsage() {
+		return this._ft != null ? this._ft.getMemoryUsage() : this._fte.getMemoryUsage();
+	}
+
+	/*
+	 * the number of pages of a FastHashtableExtender, 1 for a FastHashtable.
+	 */
+	public int getPageCount() {
+		return this._ft != null ? 1 : this._fte._pageCount();
+	}
+
+	/*
+	 * register with the platform MBean server as
+	 * fastHashtable:type=<class of the table>,name=p_name. returns the
+	 * object name, for unregister.
+	 */
+	public ObjectName register(String p_name) throws JMException {
+		ObjectName name = new ObjectName("fastHashtable", "type",
+				this._ft != null ? "FastHashtable" : "FastHashtableExtender");
+		name = new ObjectName(name.getCanonicalName() + ",name=" + ObjectName.quote(p_name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		return name;
+	}
+
+	public static void unregister(ObjectName p_name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(p_name);
+	}
+
+}
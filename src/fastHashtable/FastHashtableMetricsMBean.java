@@ -0,0 +1,32 @@
+package fastHashtable;
+
+/*
+ * The JMX management interface of FastHashtableMetrics.
+ */
+public interface FastHashtableMetricsMBean {
+
+	public boolean isEnabled();
+
+	public long getPuts();
+
+	public long getGets();
+
+	public long getHits();
+
+	public long getMisses();
+
+	public long getRehashes();
+
+	public long getRehashNanos();
+
+	public int getSize();
+
+	public long getCapacity();
+
+	public double getOccupancy();
+
+	public long getMemoryUsage();
+
+	public int getPageCount();
+
+}
@@ -0,0 +1,64 @@
+package fastHashtable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/*
+ * The fork/join helpers of the parallel methods of FastHashtableExtender
+ * and of ImmutableSetOfLong.finalizeSet. The work is cut into indexes, a
+ * page or a chunk of a batch each, and the indexes are run by the tasks of
+ * the common ForkJoinPool.
+ */
+final class ForkJoinUtil {
+
+	private ForkJoinUtil() {
+	}
+
+	/*
+	 * the start of chunk p_c of p_chunks chunks of a batch of p_n keys.
+	 */
+	static int chunk(int p_n, int p_chunks, int p_c) {
+		return (int) ((long) p_n * p_c / p_chunks);
+	}
+
+	/*
+	 * run p_body for every index in [p_from,p_to) in the common ForkJoinPool.
+	 */
+	static void parallelFor(int p_from, int p_to, IntConsumer p_body) {
+		ForkJoinPool.commonPool().invoke(new ForTask(p_body, p_from, p_to));
+	}
+
+	/*
+	 * Calls _body for every index in [_from,_to), an index per task. an
+	 * index is enough work for a task of its own. different indexes must
+	 * not write the same data.
+	 */
+	private static class ForTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer _body;
+		private final int _from;
+		private final int _to;
+
+		ForTask(IntConsumer p_body, int p_from, int p_to) {
+			this._body = p_body;
+			this._from = p_from;
+			this._to = p_to;
+		}
+
+		protected void compute() {
+			if (this._to - this._from >= 2) {
+				int middle = (this._from + this._to) >>> 1;
+				invokeAll(new ForTask(this._body, this._from, middle),
+						new ForTask(this._body, middle, this._to));
+				return;
+			}
+			if (this._from < this._to) {
+				this._body.accept(this._from);
+			}
+		}
+	}
+
+}
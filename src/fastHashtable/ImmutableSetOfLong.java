@@ -4,6 +4,8 @@ import java.lang.Math;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 /**
  * Objects of this class hold a fixed set of values and are optimized to provide one set operation,
@@ -28,9 +30,15 @@ public class ImmutableSetOfLong {
 	 */
 	private int _size;
 	
+	/*
+	 * the bucket table, flat: the values of bucket b are
+	 * _values[_offsets[b]] to _values[_offsets[b+1]-1], so the table is two
+	 * arrays however many buckets it has, and a lookup reads an offset and
+	 * the values after it.
+	 */
 	private int      _bucketCount;
-	private int[]    _buckets;
-	private long[][] _table;
+	private int[]    _offsets;
+	private long[]   _values;
 	private int       maxActualCollisions=0;
 	
 	/**
@@ -50,6 +58,17 @@ public class ImmutableSetOfLong {
 	 * iteration in finalizeSet.
 	 */
 	private double 	  tableSizeGrowthFactor=1.5;
+
+	/**
+	 * finalizeSet tries this many successive table sizes at once.
+	 */
+	private int       concurrentCandidates=1;
+
+	/**
+	 * finalizeSet cuts the values into at most this many chunks, 0 for the
+	 * parallelism of the common ForkJoinPool.
+	 */
+	private int       parallelism=0;
 	
 	/**
 	 * if the set were implemented as a sorted array which used
@@ -58,6 +77,37 @@ public class ImmutableSetOfLong {
 	 */
 	private int       binarySearchWC=0;
 
+	/**
+	 * when set, finalizeSet builds a minimal perfect hash instead of the
+	 * bucket table. see setMinimalPerfectHash.
+	 */
+	private boolean   perfect=false;
+
+	/*
+	 * the minimal perfect hash, see _finalizePerfect. the key at position p
+	 * is _keys[p].
+	 */
+	private long      _seed;
+	private long[]    _keys;
+	private char[]    _pilots;
+	private int[]     _free;
+	private int       _positions;
+	private int       _denseBuckets;
+
+	/*
+	 * the average number of keys per pilot, and the fraction of positions
+	 * in use before the positions past the key count are remapped.
+	 */
+	private static final int    _KEYS_PER_PILOT = 5;
+	private static final double _LOAD = 0.98;
+
+	/*
+	 * keys whose low hash bits are below _DENSE_KEYS, 60% of them, go to the
+	 * first 30% of the buckets.
+	 */
+	private static final long   _DENSE_KEYS = (long) (0.6 * (1L << 32));
+	private static final double _DENSE_BUCKETS = 0.3;
+
 	/*
 	 * The number of entries pairs in the hash table.
 	 */
@@ -73,13 +123,11 @@ public class ImmutableSetOfLong {
 	 */
 	public long getMemoryUsage() {
 		
-		long total = (long)Integer.SIZE*this._bucketCount;
-		for(int i=0;i<this._bucketCount;++i) {
-			if (this._table[i]!=null) {
-				total += (long)Long.SIZE * this._table[i].length;
-			}
+		if (this._keys != null) {
+			return (long)Long.SIZE*this._keys.length + (long)Character.SIZE*this._pilots.length
+					+ (long)Integer.SIZE*this._free.length;
 		}
-		return total;
+		return (long)Integer.SIZE*this._offsets.length + (long)Long.SIZE*this._values.length;
 		
 	}
 
@@ -117,18 +165,19 @@ public class ImmutableSetOfLong {
 		
 		++lookups;
 		
+		if (this._keys != null) {
+			return this._containsPerfect(l);
+		}
+
 		int hash = hashFunction(l,this._bucketCount);
 
-		long[] bucket = this._table[hash];
-
-		if (bucket == null) {
-			return false;
-		}
+		int from = this._offsets[hash];
+		int to = this._offsets[hash + 1];
 
 		int collisions = 0;
-		for (int i = 0; i < this._buckets[hash]; ++i) {
+		for (int i = from; i < to; ++i) {
 			
-			if (bucket[i] == l) {
+			if (this._values[i] == l) {
 				maxActualCollisions = Math.max(maxActualCollisions, collisions);
 				this.lookupCollisions+=collisions;
 				return true;
@@ -139,10 +188,149 @@ public class ImmutableSetOfLong {
 
 	}
 	
+	/*
+	 * the number of queries containsAll and filter hash before they probe
+	 * the table.
+	 */
+	private static final int _BATCH = 64;
+
+	/**
+	 * search for each of queries in the set. bit q of resultBits, that is
+	 * bit q%64 of resultBits[q/64], is set if queries[q] is in the set and
+	 * cleared if not.
+	 * 
+	 * same as calling contains for each query, but the queries are done
+	 * _BATCH at a time: all of them are hashed and their buckets found,
+	 * then the values are compared, so the loads of a batch do not wait on
+	 * each other and the cache misses of a large table overlap. the
+	 * collision statistics are not kept.
+	 * 
+	 * search is not allowed before the object is "finalized". (See finalizeSet.)
+	 * 
+	 * @param queries
+	 * @param resultBits at least (queries.length+63)/64 longs
+	 * @return the number of queries in the set
+	 */
+	public int containsAll(long[] queries, long[] resultBits) {
+		int words = (queries.length + 63) >>> 6;
+		if (resultBits.length < words) {
+			throw new IllegalArgumentException("resultBits is shorter than (queries.length+63)/64");
+		}
+		Arrays.fill(resultBits, 0, words, 0);
+		boolean[] hits = new boolean[_BATCH];
+		Batch batch = this._batch();
+		int found = 0;
+		for (int from = 0; from < queries.length; from += _BATCH) {
+			int count = Math.min(_BATCH, queries.length - from);
+			this._probe(queries, from, count, batch, hits);
+			for (int k = 0; k < count; ++k) {
+				if (hits[k]) {
+					resultBits[(from + k) >>> 6] |= 1L << (from + k);
+					++found;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * copy the queries that are in the set to out, in order, like
+	 * containsAll. out may be queries.
+	 * 
+	 * @param queries
+	 * @param out at least as long as queries
+	 * @return the number of queries copied to out
+	 */
+	public int filter(long[] queries, long[] out) {
+		if (out.length < queries.length) {
+			throw new IllegalArgumentException("out is shorter than queries");
+		}
+		boolean[] hits = new boolean[_BATCH];
+		Batch batch = this._batch();
+		int found = 0;
+		for (int from = 0; from < queries.length; from += _BATCH) {
+			int count = Math.min(_BATCH, queries.length - from);
+			this._probe(queries, from, count, batch, hits);
+			for (int k = 0; k < count; ++k) {
+				if (hits[k]) {
+					out[found++] = queries[from + k];
+				}
+			}
+		}
+		return found;
+	}
+
+	/*
+	 * what _probe keeps of a batch between its passes.
+	 */
+	private static class Batch {
+		final long[] _hashes = new long[_BATCH];
+		final int[]  _from = new int[_BATCH];
+		final int[]  _to = new int[_BATCH];
+	}
+
+	private Batch _batch() {
+		if(!isFinalized) {
+			throw new IllegalStateException("the object has not been finalized");
+		}
+		return new Batch();
+	}
+
+	/*
+	 * p_hits[k] is set if p_queries[p_from+k] is in the set, for k below
+	 * p_count. the first pass does the loads that need only the query, the
+	 * bucket offsets or the pilot, the second the loads of the values.
+	 */
+	private void _probe(long[] p_queries, int p_from, int p_count, Batch p_batch,
+			boolean[] p_hits) {
+		this.lookups += p_count;
+		int[] from = p_batch._from;
+		int[] to = p_batch._to;
+		if (this._keys != null) {
+			if (this._size == 0) {
+				Arrays.fill(p_hits, 0, p_count, false);
+				return;
+			}
+			long[] hashes = p_batch._hashes;
+			for (int k = 0; k < p_count; ++k) {
+				long h = _mix(p_queries[p_from + k] ^ this._seed);
+				hashes[k] = h;
+				from[k] = this._pilots[this._bucketOf(h)];
+			}
+			int n = this._keys.length;
+			for (int k = 0; k < p_count; ++k) {
+				int p = this._position(hashes[k], from[k]);
+				p_hits[k] = this._keys[p < n ? p : this._free[p - n]] == p_queries[p_from + k];
+			}
+			return;
+		}
+		int[] offsets = this._offsets;
+		for (int k = 0; k < p_count; ++k) {
+			int hash = hashFunction(p_queries[p_from + k], this._bucketCount);
+			from[k] = offsets[hash];
+			to[k] = offsets[hash + 1];
+		}
+		long[] values = this._values;
+		for (int k = 0; k < p_count; ++k) {
+			long l = p_queries[p_from + k];
+			boolean found = false;
+			for (int i = from[k]; i < to[k]; ++i) {
+				if (values[i] == l) {
+					found = true;
+					break;
+				}
+			}
+			p_hits[k] = found;
+		}
+	}
+	
 	/**
 	 * Create a hash table in which the maximum length of any bucket is less than or equal to maxCollision goals,
 	 * subject to the constraint on size, that the number of buckets is less than or equal to maxTableSizeMultiple*this._size.
 	 * 
+	 * the histograms and the table are built by the tasks of the common ForkJoinPool, with
+	 * the values cut into a chunk per thread. the table is the same as one task would build.
+	 * 
 	 */
 	public void finalizeSet() {
 		
@@ -166,17 +354,33 @@ public class ImmutableSetOfLong {
 			++this.binarySearchWC;
 		}
 
+		if (this.perfect) {
+			this._finalizePerfect();
+			this.data.clear();
+			this.data = null;
+			return;
+		}
+
 		/**
 		 * for successive hash table sizes, compute the collisions per bucket.
 		 * stop when the maxCollisionGoal is met or exceeded, or the maxTableSizeMultiple is
 		 * is exceeded.
 		 * 
-		 * for each hash table size, create a histogram of collisions per bucket.
+		 * for each hash table size, create a histogram of collisions per bucket
+		 * over all of the values, see _histograms. concurrentCandidates sizes
+		 * are tried at once, and the first of them, in order, that meets the
+		 * goal is taken, so the size is the one trying them one by one gives.
 		 * 
 		 * make each candidate table size a prime number.
 		 * 
 		 */
-		int maxCollisions = maxCollisionsGoal+1;
+		final long[][] arrays = this.data.toArray(new long[this.data.size()][]);
+		final int[] first = new int[arrays.length + 1];
+		for (int j = 0; j < arrays.length; ++j) {
+			first[j + 1] = first[j] + arrays[j].length;
+		}
+		final int chunks = Math.max(1, Math.min(this._size / _PARALLEL_VALUES,
+				this.parallelism != 0 ? this.parallelism : ForkJoinPool.getCommonPoolParallelism()));
 		
 		/**
 		 * compute the maximum hash table candidate size.
@@ -190,56 +394,107 @@ public class ImmutableSetOfLong {
 		 * try successive table sizes until the collision goal is met or the
 		 * maximum table size is exceeded.
 		 */
-		int[] h = new int[maxSize];
-		int hashValue;
 		int M = this._size;
-		do{
-			M = HashUtil.nextPrime((int)(this.tableSizeGrowthFactor*M)+1);
-			int collisions = 0;
-			for(int j=0;j<this.data.size();++j) {
-				long[] l = this.data.get(j);
-				Arrays.fill(h, 0, M, 0);
-				for(long v : l) {
-					hashValue = this.hashFunction(v, M);
-					++h[hashValue];
-					collisions = Math.max(collisions, h[hashValue]-1);
+		int[][] h = null;
+		while (h == null) {
+			final int[] candidates = new int[this.concurrentCandidates];
+			int k = 0;
+			do {
+				M = HashUtil.nextPrime((int)(this.tableSizeGrowthFactor*M)+1);
+				candidates[k++] = M;
+			} while (k < candidates.length && M < maxSize);
+			final int[][][] histograms = new int[k][][];
+			final int[] collisions = new int[k];
+			if (k == 1) {
+				histograms[0] = this._histograms(arrays, first, chunks, M, collisions, 0);
+			} else {
+				ForkJoinUtil.parallelFor(0, k, new IntConsumer() {
+					public void accept(int c) {
+						histograms[c] = ImmutableSetOfLong.this._histograms(arrays, first, chunks,
+								candidates[c], collisions, c);
+					}
+				});
+			}
+			for (int c = 0; c < k; ++c) {
+				if (collisions[c] <= maxCollisionsGoal || collisions[c] == 0 || candidates[c] >= maxSize) {
+					M = candidates[c];
+					h = histograms[c];
+					break;
 				}
 			}
-			maxCollisions = collisions;
-			
-		} while(maxCollisions>maxCollisionsGoal && maxCollisions>0 && M<maxSize);
+		}
 
 				
 		/**
 		 * now, M is the optimal table size, so create and populate the table.
+		 * 
+		 * the counts of the chunks become the index in _values where a
+		 * chunk's values of each bucket go, the buckets in order and the
+		 * chunks in order within a bucket, so a bucket holds its values in
+		 * the order they were added whatever the number of chunks. a task
+		 * does a range of buckets: it sums them, then, once the ranges
+		 * before it are summed, writes their offsets. duplicates are kept,
+		 * as they are counted in size().
 		 */
 		
 		this._bucketCount = M;
-		this._buckets = new int[this._bucketCount];
-		this._table = new long[this._bucketCount][];
-
-		for(int j=0;j<this.data.size();++j) {
-			long[] larray = this.data.get(j);
-			for(long l : larray) {
-				hashValue = hashFunction(l,this._bucketCount);
-				/**
-				 * the number of values that hash to this bucket
-				 * has already been computed and stored in histogra
-				 * h.
-				 */
-				if(h[hashValue]>0) {
-					this._table[hashValue] = new long[h[hashValue]];
-					h[hashValue] = 0;
-				}
-				long[] bucket = this._table[hashValue];
-				for(int i=0;i<this._buckets[hashValue];++i) {
-					if(this._table[hashValue][i]==l) {
-						break;
+		this._offsets = new int[this._bucketCount + 1];
+		this._values = new long[this._size];
+		final int bucketCount = M;
+		final int[][] slot = h;
+		final int[] base = new int[chunks + 1];
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int total = 0;
+				for (int b = ForkJoinUtil.chunk(bucketCount, chunks, c),
+						to = ForkJoinUtil.chunk(bucketCount, chunks, c + 1); b < to; ++b) {
+					int count = 0;
+					for (int i = 0; i < chunks; ++i) {
+						int t = slot[i][b];
+						slot[i][b] = count;
+						count += t;
 					}
+					ImmutableSetOfLong.this._offsets[b] = count;
+					total += count;
 				}
-				bucket[this._buckets[hashValue]++] = l;
+				base[c + 1] = total;
 			}
+		});
+		for (int c = 0; c < chunks; ++c) {
+			base[c + 1] += base[c];
 		}
+		this._offsets[bucketCount] = this._size;
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int offset = base[c];
+				for (int b = ForkJoinUtil.chunk(bucketCount, chunks, c),
+						to = ForkJoinUtil.chunk(bucketCount, chunks, c + 1); b < to; ++b) {
+					int count = ImmutableSetOfLong.this._offsets[b];
+					ImmutableSetOfLong.this._offsets[b] = offset;
+					for (int i = 0; i < chunks; ++i) {
+						slot[i][b] += offset;
+					}
+					offset += count;
+				}
+			}
+		});
+		ForkJoinUtil.parallelFor(0, chunks, new IntConsumer() {
+			public void accept(int c) {
+				int[] s = slot[c];
+				int n = ForkJoinUtil.chunk(first[arrays.length], chunks, c);
+				int to = ForkJoinUtil.chunk(first[arrays.length], chunks, c + 1);
+				for (int j = _arrayOf(first, arrays.length, n); n < to; ++j) {
+					long[] larray = arrays[j];
+					int end = Math.min(larray.length, to - first[j]);
+					for (int i = n - first[j]; i < end; ++i) {
+						long l = larray[i];
+						int hashValue = hashFunction(l, bucketCount);
+						ImmutableSetOfLong.this._values[s[hashValue]++] = l;
+					}
+					n = first[j] + end;
+				}
+			}
+		});
 		
 		this.data.clear();
 		this.data = null;
@@ -247,6 +502,278 @@ public class ImmutableSetOfLong {
 	
 	}
 
+	/*
+	 * the fewest values per chunk of finalizeSet. smaller sets are hashed
+	 * by one task.
+	 */
+	private static final int _PARALLEL_VALUES = 1 << 16;
+
+	/*
+	 * the histograms of the values for table size p_M, one per chunk of
+	 * the values numbered across p_arrays, p_first[j] being the number of
+	 * the first value of p_arrays[j]. the chunks are counted by the tasks
+	 * of the common ForkJoinPool, each into its own histogram, then the
+	 * histograms are merged a range of buckets per task to find the most
+	 * values in a bucket. p_collisions[p_c] is set to that, less one.
+	 * 
+	 * the histograms take p_chunks*p_M ints, so there are no more chunks
+	 * than threads.
+	 */
+	private int[][] _histograms(final long[][] p_arrays, final int[] p_first, final int p_chunks,
+			final int p_M, int[] p_collisions, int p_c) {
+		final int[][] h = new int[p_chunks][];
+		final int[] max = new int[p_chunks];
+		final int N = p_first[p_arrays.length];
+		ForkJoinUtil.parallelFor(0, p_chunks, new IntConsumer() {
+			public void accept(int c) {
+				int[] hc = new int[p_M];
+				int most = 0;
+				int n = ForkJoinUtil.chunk(N, p_chunks, c);
+				int to = ForkJoinUtil.chunk(N, p_chunks, c + 1);
+				for (int j = _arrayOf(p_first, p_arrays.length, n); n < to; ++j) {
+					long[] larray = p_arrays[j];
+					int end = Math.min(larray.length, to - p_first[j]);
+					for (int i = n - p_first[j]; i < end; ++i) {
+						int hashValue = hashFunction(larray[i], p_M);
+						most = Math.max(most, ++hc[hashValue]);
+					}
+					n = p_first[j] + end;
+				}
+				h[c] = hc;
+				max[c] = most;
+			}
+		});
+		if (p_chunks > 1) {
+			ForkJoinUtil.parallelFor(0, p_chunks, new IntConsumer() {
+				public void accept(int c) {
+					int most = 0;
+					for (int b = ForkJoinUtil.chunk(p_M, p_chunks, c),
+							to = ForkJoinUtil.chunk(p_M, p_chunks, c + 1); b < to; ++b) {
+						int count = 0;
+						for (int i = 0; i < p_chunks; ++i) {
+							count += h[i][b];
+						}
+						most = Math.max(most, count);
+					}
+					max[c] = most;
+				}
+			});
+		}
+		int most = 0;
+		for (int c = 0; c < p_chunks; ++c) {
+			most = Math.max(most, max[c]);
+		}
+		p_collisions[p_c] = Math.max(0, most - 1);
+		return h;
+	}
+
+	/*
+	 * the array of the value numbered p_n, see _histograms.
+	 */
+	private static int _arrayOf(int[] p_first, int p_arrays, int p_n) {
+		int j = Arrays.binarySearch(p_first, 0, p_arrays, p_n);
+		return j >= 0 ? j : -j - 2;
+	}
+
+
+	/**
+	 * Build a minimal perfect hash over the added values, in the style of
+	 * PTHash: every distinct value gets its own position in [0,size()), and
+	 * contains finds it with one probe and one comparison, so there is no
+	 * bucket to scan however the values hash.
+	 *
+	 * 1. a value v is hashed to h=_mix(v^_seed). _mix is a bijection, so
+	 *    distinct values have distinct hashes, and duplicates are found by
+	 *    sorting the hashes of each bucket.
+	 * 2. h picks one of size()/_KEYS_PER_PILOT buckets, 60% of the values
+	 *    going to the first 30% of the buckets, so there are large buckets.
+	 * 3. the buckets are placed largest first, while there is room. a bucket
+	 *    gets the first pilot k under which the positions
+	 *    _position(h,k) of all its values are free, and the pilot is kept
+	 *    in a char. if some bucket has no such pilot the build starts over
+	 *    with a new seed.
+	 * 4. there are size()/_LOAD positions. the ones past size() are
+	 *    remapped to the free positions below size() through _free, which
+	 *    makes the hash minimal.
+	 *
+	 * Values are kept at their position for the comparison. the metadata is
+	 * about 16/_KEYS_PER_PILOT bits per value for the pilots plus a little
+	 * for _free. size() is the number of distinct values.
+	 */
+	private void _finalizePerfect() {
+		int total = this._size;
+		int buckets = Math.max(1, (total + _KEYS_PER_PILOT - 1) / _KEYS_PER_PILOT);
+		this._pilots = new char[buckets];
+		this._denseBuckets = (int) (_DENSE_BUCKETS * buckets);
+		long[] hashes = new long[total];
+		int[] start = new int[buckets + 1];
+		int[] size = new int[buckets];
+		for (long seed = 0; ; ++seed) {
+			this._seed = _mix(seed + 1);
+
+			/*
+			 * the hashes, ordered by bucket and then by value, without
+			 * duplicates. start[b] is the start of bucket b and size[b] the
+			 * number of distinct values in it.
+			 */
+			Arrays.fill(start, 0);
+			for (long[] larray : this.data) {
+				for (long l : larray) {
+					++start[this._bucketOf(_mix(l ^ this._seed)) + 1];
+				}
+			}
+			for (int b = 0; b < buckets; ++b) {
+				start[b + 1] += start[b];
+			}
+			for (long[] larray : this.data) {
+				for (long l : larray) {
+					long h = _mix(l ^ this._seed);
+					hashes[start[this._bucketOf(h)]++] = h;
+				}
+			}
+			System.arraycopy(start, 0, start, 1, buckets);
+			start[0] = 0;
+			int n = 0;
+			int maxSize = 0;
+			for (int b = 0; b < buckets; ++b) {
+				Arrays.sort(hashes, start[b], start[b + 1]);
+				int k = 0;
+				for (int i = start[b]; i < start[b + 1]; ++i) {
+					if (k == 0 || hashes[i] != hashes[start[b] + k - 1]) {
+						hashes[start[b] + k++] = hashes[i];
+					}
+				}
+				size[b] = k;
+				n += k;
+				maxSize = Math.max(maxSize, k);
+			}
+			this._size = n;
+			this._positions = Math.max(1, (int) Math.ceil(n / _LOAD));
+
+			/*
+			 * the buckets, largest first.
+			 */
+			int[] bySize = new int[maxSize + 2];
+			for (int b = 0; b < buckets; ++b) {
+				++bySize[maxSize - size[b] + 1];
+			}
+			for (int k = 0; k <= maxSize; ++k) {
+				bySize[k + 1] += bySize[k];
+			}
+			int[] order = new int[buckets];
+			for (int b = 0; b < buckets; ++b) {
+				order[bySize[maxSize - size[b]]++] = b;
+			}
+
+			long[] taken = new long[(this._positions + 63) >>> 6];
+			if (this._placeBuckets(hashes, start, size, order, taken, new int[maxSize])) {
+				this._remap(n, taken);
+				break;
+			}
+		}
+
+		this._keys = new long[this._size];
+		for (long[] larray : this.data) {
+			for (long l : larray) {
+				this._keys[this._slot(_mix(l ^ this._seed))] = l;
+			}
+		}
+	}
+
+	/*
+	 * find the pilots of the buckets in p_order. returns false if a bucket
+	 * has no pilot.
+	 */
+	private boolean _placeBuckets(long[] p_hashes, int[] p_start, int[] p_size, int[] p_order,
+			long[] p_taken, int[] p_positions) {
+		for (int b : p_order) {
+			int from = p_start[b];
+			int count = p_size[b];
+			if (count == 0) {
+				break;
+			}
+			int pilot = 0;
+			for (; pilot <= Character.MAX_VALUE; ++pilot) {
+				int k = 0;
+				for (; k < count; ++k) {
+					int p = this._position(p_hashes[from + k], pilot);
+					if ((p_taken[p >>> 6] & (1L << p)) != 0) {
+						break;
+					}
+					p_taken[p >>> 6] |= 1L << p;
+					p_positions[k] = p;
+				}
+				if (k == count) {
+					break;
+				}
+				for (int i = 0; i < k; ++i) {
+					p_taken[p_positions[i] >>> 6] &= ~(1L << p_positions[i]);
+				}
+			}
+			if (pilot > Character.MAX_VALUE) {
+				return false;
+			}
+			this._pilots[b] = (char) pilot;
+		}
+		return true;
+	}
+
+	/*
+	 * _free[p-p_n] is the free position below p_n that replaces the taken
+	 * position p>=p_n.
+	 */
+	private void _remap(int p_n, long[] p_taken) {
+		this._free = new int[this._positions - p_n];
+		int q = 0;
+		for (int p = p_n; p < this._positions; ++p) {
+			if ((p_taken[p >>> 6] & (1L << p)) != 0) {
+				while ((p_taken[q >>> 6] & (1L << q)) != 0) {
+					++q;
+				}
+				this._free[p - p_n] = q++;
+			}
+		}
+	}
+
+	private boolean _containsPerfect(long l) {
+		return this._size != 0 && this._keys[this._slot(_mix(l ^ this._seed))] == l;
+	}
+
+	/*
+	 * the index into _keys of the value with hash p_h.
+	 */
+	private int _slot(long p_h) {
+		int p = this._position(p_h, this._pilots[this._bucketOf(p_h)]);
+		return p < this._keys.length ? p : this._free[p - this._keys.length];
+	}
+
+	/*
+	 * the high 32 bits of p_h pick the bucket, the low ones pick the dense
+	 * or the sparse buckets.
+	 */
+	private int _bucketOf(long p_h) {
+		long x = p_h >>> 32;
+		if ((p_h & 0xffffffffL) < _DENSE_KEYS) {
+			return (int) ((x * this._denseBuckets) >>> 32);
+		}
+		return this._denseBuckets + (int) ((x * (this._pilots.length - this._denseBuckets)) >>> 32);
+	}
+
+	private int _position(long p_h, int p_pilot) {
+		return (int) (((_mix(p_h ^ (p_pilot * 0x9e3779b97f4a7c15L)) >>> 32) * this._positions) >>> 32);
+	}
+
+	/*
+	 * the finalizer of MurmurHash3, a bijection of longs.
+	 */
+	private static long _mix(long p_h) {
+		p_h ^= p_h >>> 33;
+		p_h *= 0xff51afd7ed558ccdL;
+		p_h ^= p_h >>> 33;
+		p_h *= 0xc4ceb9fe1a85ec53L;
+		p_h ^= p_h >>> 33;
+		return p_h;
+	}
 
 	private int hashFunction(long l, int N) {
 		
@@ -276,6 +803,52 @@ public class ImmutableSetOfLong {
 		return tmp;
 	}
 	
+	/**
+	 * the number of candidate table sizes finalizeSet computes the collisions
+	 * of at once, each over all of the values. more use more threads and more
+	 * memory, a histogram per candidate and thread. the table is the same
+	 * for any number. returns the previous setting.
+	 */
+	public int setConcurrentCandidates(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("concurrentCandidates must be at least 1");
+		}
+		int tmp = this.concurrentCandidates;
+		this.concurrentCandidates = n;
+		return tmp;
+	}
+
+	/**
+	 * the number of chunks finalizeSet cuts the values into, each counted
+	 * and filled by a task of its own, 0 for the parallelism of the common
+	 * ForkJoinPool. the table is the same for any number. returns the
+	 * previous setting.
+	 */
+	public int setParallelism(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("parallelism must not be negative");
+		}
+		int tmp = this.parallelism;
+		this.parallelism = n;
+		return tmp;
+	}
+
+	/**
+	 * when set, finalizeSet builds a minimal perfect hash, see
+	 * _finalizePerfect: contains does exactly one probe and one comparison,
+	 * and the set takes 64 bits per value plus about 4 bits of metadata.
+	 * the build is slower than the bucket table's. must be called before
+	 * finalizeSet. returns the previous setting.
+	 */
+	public boolean setMinimalPerfectHash(boolean p_perfect) {
+		if(this.isFinalized) {
+			throw new IllegalStateException("set is finalized");
+		}
+		boolean tmp = this.perfect;
+		this.perfect = p_perfect;
+		return tmp;
+	}
+
 	public int getBinarySearchWC() {
 		return this.binarySearchWC;
 	}
@@ -0,0 +1,173 @@
+package fastHashtable;
+
+/*
+ * GENERATED by FastHashtableGenerator from PrimitiveFastHashtable.template,
+ * do not edit. Change the template and run the generator instead.
+ *
+ * A set of ints with the addressing of
+ * FastHashtable: key p is bit p/_BUCKET_COUNT of bucket p%_BUCKET_COUNT, and
+ * doubling the bucket count splits every bucket into its even and odd bits.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ * 2. The maximum key value is maxKey(). The table grows on put.
+ */
+public class IntFastSet {
+
+	/*
+	 * Receives the entries of the table, see forEach.
+	 */
+	public interface Consumer {
+		public void accept(int p_key);
+	}
+
+	private static final int _bit_vector_size = Integer.SIZE;
+
+	/*
+	 * The size of the bucket array. Each int in the array is a bit array.
+	 */
+	private int _BUCKET_COUNT = 2048;
+
+	/*
+	 * The number of keys in the table.
+	 */
+	private int _size;
+
+	private int[] _buckets;
+
+	private void _init() {
+		this._buckets = new int[this._BUCKET_COUNT];
+	}
+
+	/*
+	 * double the bucket count. old bucket i splits into new buckets i and
+	 * i+_BUCKET_COUNT, see FastHashtable.
+	 */
+	private void _grow() {
+		int count = this._BUCKET_COUNT;
+		int[] buckets = new int[2 * count];
+		for (int i = 0; i < count; ++i) {
+			int w = this._buckets[i];
+			buckets[i] = FastHashtable._evenBits(w);
+			buckets[i + count] = FastHashtable._evenBits(w >>> 1);
+		}
+		this._BUCKET_COUNT = 2 * count;
+		this._buckets = buckets;
+	}
+
+	/*
+	 * default constructor.
+	 */
+	public IntFastSet() {
+		this._init();
+	}
+
+	/*
+	 * specify the capacity of the object. _BUCKET_COUNT will always round up
+	 * to a multiple of _bit_vector_size, with at least one bucket.
+	 */
+	public IntFastSet(int p_max_entries) {
+		this._BUCKET_COUNT = Math.max(1, (int) (((long) p_max_entries
+				+ _bit_vector_size - 1) / _bit_vector_size));
+		this._init();
+	}
+
+	/*
+	 * The number of keys in the table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * key k must satisfy 0<=k<=maxKey() to be a valid key.
+	 */
+	public int maxKey() {
+		return this._BUCKET_COUNT * _bit_vector_size - 1;
+	}
+
+	public int maxSize() {
+		return this._BUCKET_COUNT * _bit_vector_size;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 * returns true if p_key was not in the set.
+	 */
+	public boolean add(int p_key) {
+		while (p_key > this.maxKey()) {
+			this._grow();
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		int w = this._buckets[i];
+		this._buckets[i] = w | (1 << k);
+		if ((w & (1 << k)) == 0) {
+			this._size++;
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean contains(int p_key) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		return (this._buckets[i] & (1 << k)) != 0;
+	}
+
+	/*
+	 * call p_consumer for every entry, in the same order as
+	 * FastHashtable.forEach.
+	 */
+	public void forEach(Consumer p_consumer) {
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				p_consumer.accept(k * this._BUCKET_COUNT + j);
+			}
+		}
+	}
+
+	/*
+	 * the keys in forEach order.
+	 */
+	public int[] keys() {
+		int[] keys = new int[this._size];
+		int n = 0;
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				keys[n++] = Integer.numberOfTrailingZeros(b) * this._BUCKET_COUNT + j;
+			}
+		}
+		return keys;
+	}
+
+	/*
+	 * same format as FastHashtable.toString, in ascending key order.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		for (int i = 0; i < _bit_vector_size; ++i) {
+			for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+				if ((this._buckets[j] & (1 << i)) != 0) {
+					sb.append(i * this._BUCKET_COUNT + j);
+					sb.append(',');
+				}
+			}
+		}
+		if (sb.length() > 1) {
+			sb.setLength(sb.length() - 1);
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,12 @@
+package fastHashtable;
+
+/*
+ * Receives the key/value pairs of a table, see FastHashtable.forEach. A
+ * primitive version of java.util.function.BiConsumer, so that walking a table
+ * does not box.
+ */
+public interface IntLongConsumer {
+
+	public void accept(int p_key, long p_value);
+
+}
@@ -0,0 +1,11 @@
+package fastHashtable;
+
+/*
+ * Receives the joined entries of two tables, see FastHashtable.intersect:
+ * a key and its value in each table.
+ */
+public interface IntLongLongConsumer {
+
+	public void accept(int p_key, long p_left, long p_right);
+
+}
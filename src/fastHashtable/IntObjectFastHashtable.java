@@ -0,0 +1,208 @@
+package fastHashtable;
+
+/*
+ * GENERATED by FastHashtableGenerator from PrimitiveFastHashtable.template,
+ * do not edit. Change the template and run the generator instead.
+ *
+ * A hashtable for int keys and V values with the addressing of
+ * FastHashtable: key p is bit p/_BUCKET_COUNT of bucket p%_BUCKET_COUNT, and
+ * doubling the bucket count splits every bucket into its even and odd bits.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ * 2. The maximum key value is maxKey(). The table grows on put.
+ */
+public class IntObjectFastHashtable<V> {
+
+	/*
+	 * Receives the entries of the table, see forEach.
+	 */
+	public interface Consumer<V> {
+		public void accept(int p_key, V p_value);
+	}
+
+	private static final int _bit_vector_size = Integer.SIZE;
+
+	/*
+	 * The size of the bucket array. Each int in the array is a bit array.
+	 */
+	private int _BUCKET_COUNT = 2048;
+
+	/*
+	 * The number of keys in the table.
+	 */
+	private int _size;
+
+	private int[] _buckets;
+	private Object[][] _values;
+
+	private void _init() {
+		this._buckets = new int[this._BUCKET_COUNT];
+		this._values = new Object[this._BUCKET_COUNT][_bit_vector_size];
+	}
+
+	/*
+	 * double the bucket count. old bucket i splits into new buckets i and
+	 * i+_BUCKET_COUNT, see FastHashtable.
+	 */
+	private void _grow() {
+		int count = this._BUCKET_COUNT;
+		int[] buckets = new int[2 * count];
+		Object[][] values = new Object[2 * count][];
+		for (int i = 0; i < count; ++i) {
+			int w = this._buckets[i];
+			Object[] row = this._values[i];
+			Object[] low = new Object[_bit_vector_size];
+			Object[] high = new Object[_bit_vector_size];
+			for (int b = w & 0xAAAAAAAA; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				high[k >>> 1] = row[k];
+			}
+			for (int b = w & 0x55555555; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				low[k >>> 1] = row[k];
+			}
+			buckets[i] = FastHashtable._evenBits(w);
+			buckets[i + count] = FastHashtable._evenBits(w >>> 1);
+			values[i] = low;
+			values[i + count] = high;
+		}
+		this._BUCKET_COUNT = 2 * count;
+		this._buckets = buckets;
+		this._values = values;
+	}
+
+	/*
+	 * default constructor.
+	 */
+	public IntObjectFastHashtable() {
+		this._init();
+	}
+
+	/*
+	 * specify the capacity of the object. _BUCKET_COUNT will always round up
+	 * to a multiple of _bit_vector_size, with at least one bucket.
+	 */
+	public IntObjectFastHashtable(int p_max_entries) {
+		this._BUCKET_COUNT = Math.max(1, (int) (((long) p_max_entries
+				+ _bit_vector_size - 1) / _bit_vector_size));
+		this._init();
+	}
+
+	/*
+	 * The number of keys in the table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * key k must satisfy 0<=k<=maxKey() to be a valid key.
+	 */
+	public int maxKey() {
+		return this._BUCKET_COUNT * _bit_vector_size - 1;
+	}
+
+	public int maxSize() {
+		return this._BUCKET_COUNT * _bit_vector_size;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 */
+	public void put(int p_key, V p_value) {
+		while (p_key > this.maxKey()) {
+			this._grow();
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		int w = this._buckets[i];
+		this._buckets[i] = w | (1 << k);
+		this._values[i][k] = p_value;
+		if ((w & (1 << k)) == 0) {
+			this._size++;
+		}
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		return (this._buckets[i] & (1 << k)) != 0;
+	}
+
+	/*
+	 * the value of p_key, or null if the key is not in the table. this
+	 * method will not throw with an invalid key. it's always ok to ask.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int p_key) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return null;
+		}
+		int i = p_key % this._BUCKET_COUNT;
+		int k = (p_key - i) / this._BUCKET_COUNT;
+		if ((this._buckets[i] & (1 << k)) != 0) {
+			return (V) this._values[i][k];
+		} else {
+			return null;
+		}
+	}
+
+	/*
+	 * call p_consumer for every entry, in the same order as
+	 * FastHashtable.forEach.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<V> p_consumer) {
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			Object[] row = this._values[j];
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				int k = Integer.numberOfTrailingZeros(b);
+				p_consumer.accept(k * this._BUCKET_COUNT + j, (V) row[k]);
+			}
+		}
+	}
+
+	/*
+	 * the keys in forEach order.
+	 */
+	public int[] keys() {
+		int[] keys = new int[this._size];
+		int n = 0;
+		for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+			for (int b = this._buckets[j]; b != 0; b &= b - 1) {
+				keys[n++] = Integer.numberOfTrailingZeros(b) * this._BUCKET_COUNT + j;
+			}
+		}
+		return keys;
+	}
+
+	/*
+	 * same format as FastHashtable.toString, in ascending key order.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		for (int i = 0; i < _bit_vector_size; ++i) {
+			for (int j = 0; j < this._BUCKET_COUNT; ++j) {
+				if ((this._buckets[j] & (1 << i)) != 0) {
+					sb.append('(');
+					sb.append(i * this._BUCKET_COUNT + j);
+					sb.append(',');
+					sb.append(this._values[j][i]);
+					sb.append(')');
+				}
+			}
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,215 @@
+package fastHashtable;
+
+import java.util.Arrays;
+
+/*
+ * A hashtable for int keys and long values with the same contract as
+ * FastHashtable, laid out for dense, sequential keys.
+ *
+ * FastHashtable puts key p in bucket p%_BUCKET_COUNT, so neighbouring keys are
+ * in different bucket words and different value rows, and a scan over a run
+ * of keys touches a new cache line for every key. This class keeps the key
+ * order in memory:
+ *
+ * 1. key p is bit p&63 of _words[p>>>6], so 64 neighbouring keys share one
+ *    bitmap word.
+ * 2. the value of key p is _values[p], so 8 neighbouring keys share one 64
+ *    byte cache line and a run of keys is a run of memory the hardware
+ *    prefetcher can follow.
+ * 3. both arrays are flat long[] of a power of 2 length, so addressing is a
+ *    shift and a mask, with no row object to dereference.
+ *
+ * Growing is a copy of both arrays, no entry moves.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ * 2. The maximum key value is maxKey(). The table grows on put, up to keys
+ *    below 2^30.
+ */
+public class LinearFastHashtable {
+
+	/*
+	 * the largest capacity, the length of _values.
+	 */
+	private static final int _MAX_CAPACITY = 1 << 30;
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	private int _size;
+
+	private long[] _words;
+	private long[] _values;
+
+	private void _init(int p_capacity) {
+		this._words = new long[p_capacity >>> 6];
+		this._values = new long[p_capacity];
+	}
+
+	/*
+	 * double the capacity until p_key fits.
+	 */
+	private void _grow(int p_key) {
+		if (p_key >= _MAX_CAPACITY) {
+			throw new ArrayIndexOutOfBoundsException(p_key);
+		}
+		int capacity = this._values.length;
+		while (capacity <= p_key) {
+			capacity *= 2;
+		}
+		this._words = Arrays.copyOf(this._words, capacity >>> 6);
+		this._values = Arrays.copyOf(this._values, capacity);
+	}
+
+	/*
+	 * default constructor.
+	 */
+	public LinearFastHashtable() {
+		this._init(1 << 16);
+	}
+
+	/*
+	 * specify the capacity of the object. the capacity always rounds up to a
+	 * power of 2 of at least 64.
+	 */
+	public LinearFastHashtable(int p_max_entries) {
+		int capacity = 64;
+		while (capacity < p_max_entries && capacity < _MAX_CAPACITY) {
+			capacity *= 2;
+		}
+		this._init(capacity);
+	}
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * key k must satisfy 0<=k<=maxKey() to be a valid key.
+	 */
+	public int maxKey() {
+		return this._values.length - 1;
+	}
+
+	public int maxSize() {
+		return this._values.length;
+	}
+
+	/*
+	 * bytes used by the arrays of the table.
+	 */
+	public long getMemoryUsage() {
+		return 8L * this._words.length + 8L * this._values.length;
+	}
+
+	/*
+	 * this method will throw for p_key<0. the table grows for
+	 * p_key>this.maxKey().
+	 */
+	public void put(int p_key, long p_value) {
+		if (p_key > this.maxKey()) {
+			this._grow(p_key);
+		}
+		long[] words = this._words;
+		int j = p_key >>> 6;
+		long w = words[j];
+		long bit = 1L << p_key;
+		if ((w & bit) == 0) {
+			words[j] = w | bit;
+			this._size++;
+		}
+		this._values[p_key] = p_value;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		return (this._words[p_key >>> 6] & (1L << p_key)) != 0;
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean get(int p_key, long[] p_result) {
+		if (p_key < 0 || p_key > this.maxKey()) {
+			return false;
+		}
+		if ((this._words[p_key >>> 6] & (1L << p_key)) != 0) {
+			p_result[0] = 1;
+			p_result[1] = this._values[p_key];
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * call p_consumer for every key/value pair in ascending key order.
+	 */
+	public void forEach(IntLongConsumer p_consumer) {
+		long[] words = this._words;
+		long[] values = this._values;
+		for (int j = 0; j < words.length; ++j) {
+			for (long b = words[j]; b != 0; b &= b - 1) {
+				int key = (j << 6) + Long.numberOfTrailingZeros(b);
+				p_consumer.accept(key, values[key]);
+			}
+		}
+	}
+
+	/*
+	 * the keys in ascending order.
+	 */
+	public int[] keys() {
+		int[] keys = new int[this._size];
+		int n = 0;
+		for (int j = 0; j < this._words.length; ++j) {
+			for (long b = this._words[j]; b != 0; b &= b - 1) {
+				keys[n++] = (j << 6) + Long.numberOfTrailingZeros(b);
+			}
+		}
+		return keys;
+	}
+
+	/*
+	 * the values in key order, so values()[n] belongs to keys()[n].
+	 */
+	public long[] values() {
+		long[] values = new long[this._size];
+		int n = 0;
+		for (int j = 0; j < this._words.length; ++j) {
+			for (long b = this._words[j]; b != 0; b &= b - 1) {
+				values[n++] = this._values[(j << 6) + Long.numberOfTrailingZeros(b)];
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * same format as FastHashtable.toString.
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		this.forEach(new IntLongConsumer() {
+			public void accept(int p_key, long p_value) {
+				sb.append('(');
+				sb.append(p_key);
+				sb.append(',');
+				sb.append(p_value);
+				sb.append(')');
+			}
+		});
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
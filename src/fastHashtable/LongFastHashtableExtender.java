@@ -0,0 +1,303 @@
+package fastHashtable;
+
+/*
+ * A FastHashtableExtender for long keys. Every long is a valid key.
+ *
+ * The low 16 bits of a key select the key within a page. Pages are those of
+ * FastHashtableExtender, a SparsePage or a dense FastHashtable of 1<<16
+ * keys. The other 48 bits select the page through a radix directory of
+ * _LEVELS levels of _BITS bits each, like a page table:
+ *
+ *     bits 63..52  index into the root node
+ *     bits 51..40  index into a node of level 1
+ *     bits 39..28  index into a node of level 2
+ *     bits 27..16  index into a node of level 3, which holds the pages
+ *     bits 15..0   key within the page
+ *
+ * A node is an Object[] of 1<<_BITS slots, 16KB. Nodes are created by the
+ * first put below them and dropped when their last page is. So a lookup is
+ * four array loads and a page lookup, whatever the keys. Keys that share
+ * their top 48 bits share a page, and a cluster of keys such as a run of
+ * timestamps costs one node per level, then its pages.
+ *
+ * The sign bit of a key is flipped before it is split, so the directory is
+ * in signed key order and forEach visits the pages from Long.MIN_VALUE up.
+ */
+public class LongFastHashtableExtender {
+
+	private static final int _BITS = 12;
+	private static final int _FANOUT = 1 << _BITS;
+	private static final int _MASK = _FANOUT - 1;
+	private static final int _LEVELS = 4;
+	private static final int _PAGE_BITS = 16;
+	private static final int _PAGE_SIZE = 1 << _PAGE_BITS;
+
+	/*
+	 * the level 0 node. the slots of a node of levels 0 to 2 hold nodes,
+	 * those of a level 3 node hold pages.
+	 */
+	private final Object[] _root = new Object[_FANOUT];
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	private long _size;
+
+	private int _nodes = 1;
+	private int _pages;
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public long size() {
+		return this._size;
+	}
+
+	/*
+	 * the level 3 node of key p_u, the key with its sign bit flipped. null
+	 * if it does not exist and !p_create.
+	 */
+	private Object[] _leaves(long p_u, boolean p_create) {
+		Object[] node = this._root;
+		for (int shift = 64 - _BITS; shift > _PAGE_BITS; shift -= _BITS) {
+			int i = (int) (p_u >>> shift) & _MASK;
+			Object[] child = (Object[]) node[i];
+			if (child == null) {
+				if (!p_create) {
+					return null;
+				}
+				child = new Object[_FANOUT];
+				node[i] = child;
+				this._nodes++;
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	public void put(long p_key, long p_value) {
+		long u = p_key ^ Long.MIN_VALUE;
+		Object[] leaves = this._leaves(u, true);
+		int j = (int) (u >>> _PAGE_BITS) & _MASK;
+		int q = (int) p_key & (_PAGE_SIZE - 1);
+		Object page = leaves[j];
+		FastHashtable dense;
+		if (page instanceof FastHashtable) {
+			dense = (FastHashtable) page;
+		} else {
+			SparsePage sparse = (SparsePage) page;
+			if (sparse == null) {
+				sparse = new SparsePage();
+				leaves[j] = sparse;
+				this._pages++;
+			}
+			int before = sparse.size();
+			if (sparse.put(q, p_value)) {
+				this._size += sparse.size() - before;
+				return;
+			}
+			dense = sparse._toDense(_PAGE_SIZE);
+			leaves[j] = dense;
+		}
+		int before = dense.size();
+		dense.put(q, p_value);
+		this._size += dense.size() - before;
+	}
+
+	/*
+	 * every long is a valid key. it's always ok to ask.
+	 */
+	public boolean containsKey(long p_key) {
+		Object page = this._page(p_key);
+		int q = (int) p_key & (_PAGE_SIZE - 1);
+		if (page instanceof FastHashtable) {
+			return ((FastHashtable) page).containsKey(q);
+		}
+		return page != null && ((SparsePage) page).containsKey(q);
+	}
+
+	/*
+	 * like FastHashtable.get, p_result[0] is set to 1 and p_result[1] to the
+	 * value if the key is found.
+	 */
+	public boolean get(long p_key, long[] p_result) {
+		Object page = this._page(p_key);
+		int q = (int) p_key & (_PAGE_SIZE - 1);
+		if (page instanceof FastHashtable) {
+			return ((FastHashtable) page).get(q, p_result);
+		}
+		return page != null && ((SparsePage) page).get(q, p_result);
+	}
+
+	/*
+	 * the page of p_key, or null.
+	 */
+	private Object _page(long p_key) {
+		long u = p_key ^ Long.MIN_VALUE;
+		Object[] leaves = this._leaves(u, false);
+		return leaves != null ? leaves[(int) (u >>> _PAGE_BITS) & _MASK] : null;
+	}
+
+	/*
+	 * remove p_key from the table. returns true if it was in the table. as
+	 * in FastHashtableExtender.remove, a dense page that drops below
+	 * SparsePage._MAX_SIZE/2 keys is made sparse and an empty page is
+	 * dropped. so is a node whose last page or node is dropped, so the
+	 * directory shrinks back with the keys.
+	 */
+	public boolean remove(long p_key) {
+		long u = p_key ^ Long.MIN_VALUE;
+		Object[][] path = new Object[_LEVELS][];
+		Object[] node = this._root;
+		for (int level = 0; level < _LEVELS - 1; ++level) {
+			path[level] = node;
+			node = (Object[]) node[(int) (u >>> (64 - _BITS * (level + 1))) & _MASK];
+			if (node == null) {
+				return false;
+			}
+		}
+		path[_LEVELS - 1] = node;
+		int j = (int) (u >>> _PAGE_BITS) & _MASK;
+		int q = (int) p_key & (_PAGE_SIZE - 1);
+		Object page = node[j];
+		int size;
+		if (page instanceof FastHashtable) {
+			FastHashtable dense = (FastHashtable) page;
+			if (!dense.remove(q)) {
+				return false;
+			}
+			size = dense.size();
+			if (size < SparsePage._MAX_SIZE / 2) {
+				node[j] = size != 0 ? SparsePage._of(dense) : null;
+			}
+		} else {
+			SparsePage sparse = (SparsePage) page;
+			if (sparse == null || !sparse.remove(q)) {
+				return false;
+			}
+			size = sparse.size();
+			if (size == 0) {
+				node[j] = null;
+			}
+		}
+		this._size--;
+		if (size == 0) {
+			this._pages--;
+			for (int level = _LEVELS - 1; level > 0 && _isEmpty(path[level]); --level) {
+				path[level - 1][(int) (u >>> (64 - _BITS * level)) & _MASK] = null;
+				this._nodes--;
+			}
+		}
+		return true;
+	}
+
+	private static boolean _isEmpty(Object[] p_node) {
+		for (int i = 0; i < _FANOUT; ++i) {
+			if (p_node[i] != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * call p_consumer for every key/value pair, page by page in signed key
+	 * order. the keys of a sparse page come in ascending order, those of a
+	 * dense page in FastHashtable.forEach order.
+	 */
+	public void forEach(LongLongConsumer p_consumer) {
+		this._forEach(this._root, 0, 0, p_consumer);
+	}
+
+	/*
+	 * visit p_node of level p_level, whose slots hold the keys with the
+	 * flipped prefix p_prefix.
+	 */
+	private void _forEach(Object[] p_node, int p_level, long p_prefix,
+			final LongLongConsumer p_consumer) {
+		for (int i = 0; i < _FANOUT; ++i) {
+			Object child = p_node[i];
+			if (child == null) {
+				continue;
+			}
+			long prefix = (p_prefix << _BITS) | i;
+			if (p_level < _LEVELS - 1) {
+				this._forEach((Object[]) child, p_level + 1, prefix, p_consumer);
+				continue;
+			}
+			final long base = (prefix << _PAGE_BITS) ^ Long.MIN_VALUE;
+			if (child instanceof FastHashtable) {
+				((FastHashtable) child).forEach(new IntLongConsumer() {
+					public void accept(int p_key, long p_value) {
+						p_consumer.accept(base | p_key, p_value);
+					}
+				});
+			} else {
+				SparsePage sparse = (SparsePage) child;
+				for (int n = 0; n < sparse.size(); ++n) {
+					p_consumer.accept(base | sparse._key(n), sparse._value(n));
+				}
+			}
+		}
+	}
+
+	/*
+	 * the number of pages, dense or sparse.
+	 */
+	public int getPageCount() {
+		return this._pages;
+	}
+
+	/*
+	 * the number of directory nodes, the root included.
+	 */
+	public int getNodeCount() {
+		return this._nodes;
+	}
+
+	/*
+	 * bytes used by the directory and the pages, counted like
+	 * FastHashtableExtender.getMemoryUsage.
+	 */
+	public long getMemoryUsage() {
+		return this._nodes * (16 + 8L * _FANOUT) + this._pageMemory(this._root, 0);
+	}
+
+	private long _pageMemory(Object[] p_node, int p_level) {
+		long bytes = 0;
+		for (int i = 0; i < _FANOUT; ++i) {
+			Object child = p_node[i];
+			if (child == null) {
+				continue;
+			}
+			if (p_level < _LEVELS - 1) {
+				bytes += this._pageMemory((Object[]) child, p_level + 1);
+			} else if (child instanceof FastHashtable) {
+				bytes += ((FastHashtable) child).getMemoryUsage();
+			} else {
+				bytes += ((SparsePage) child).getMemoryUsage();
+			}
+		}
+		return bytes;
+	}
+
+	/*
+	 * same format as FastHashtable.toString, in forEach order.
+	 */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		this.forEach(new LongLongConsumer() {
+			public void accept(long p_key, long p_value) {
+				sb.append('(');
+				sb.append(p_key);
+				sb.append(',');
+				sb.append(p_value);
+				sb.append(')');
+			}
+		});
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,11 @@
+package fastHashtable;
+
+/*
+ * Receives the key/value pairs of a table with long keys, see
+ * LongFastHashtableExtender.forEach.
+ */
+public interface LongLongConsumer {
+
+	public void accept(long p_key, long p_value);
+
+}
@@ -0,0 +1,201 @@
+package fastHashtable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A hashtable for int keys and long values kept in a file and used through
+ * FileChannel.map. Opening a file maps its pages and reads only the header,
+ * so get and containsKey are served from the page cache right away without
+ * any deserialization pass.
+ *
+ * File layout, all numbers little endian:
+ *
+ *     offset  size
+ *     0       4     magic, 0x46485431 ("FHT1")
+ *     4       4     version, 1
+ *     8       4     page shift, 16. a page holds 1<<16 keys.
+ *     12      4     page count
+ *     16      8     number of entries
+ *     24      4072  reserved, zero
+ *     4096    ...   page 0, page 1, ... each of _PAGE_BYTES bytes
+ *
+ * A page is laid out like the pages of OffHeapFastHashtable: 1024 bitmap
+ * words, where key q of the page is bit q&63 of word q>>>6, followed by 65536
+ * values, where the value of key q is at byte 8192+8*q of the page. Key k is
+ * key k&0xffff of page k>>>16. Pages that were never written to read as
+ * zero, so on most file systems they take no disk space.
+ *
+ * A table opened read-only throws on put. A table opened read-write can be
+ * written to anywhere. Keys in new pages extend the file. Changes reach the
+ * file when force or close is called.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ */
+public class MappedFastHashtable extends BufferFastHashtable {
+
+	private static final int _MAGIC = 0x46485431;
+	private static final int _VERSION = 1;
+	private static final int _HEADER_BYTES = 4096;
+
+	private final FileChannel _channel;
+	private final boolean _read_only;
+
+	/*
+	 * open p_file, creating an empty table if it does not exist and
+	 * p_read_only is false.
+	 */
+	public MappedFastHashtable(Path p_file, boolean p_read_only) throws IOException {
+		this._read_only = p_read_only;
+		if (p_read_only) {
+			this._channel = FileChannel.open(p_file, StandardOpenOption.READ);
+		} else {
+			this._channel = FileChannel.open(p_file, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		}
+		try {
+			this._open();
+		} catch (IOException e) {
+			this._channel.close();
+			throw e;
+		}
+	}
+
+	private void _open() throws IOException {
+		if (this._channel.size() == 0 && !this._read_only) {
+			this._writeHeader();
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining() && this._channel.read(header, header.position()) > 0) {
+		}
+		if (header.position() < 24 || header.getInt(0) != _MAGIC) {
+			throw new IOException("not a MappedFastHashtable file");
+		}
+		if (header.getInt(4) != _VERSION || header.getInt(8) != _PAGE_SHIFT) {
+			throw new IOException("unsupported MappedFastHashtable version or page size");
+		}
+		int pageCount = header.getInt(12);
+		if (this._channel.size() < _HEADER_BYTES + (long) pageCount * _PAGE_BYTES) {
+			throw new IOException("MappedFastHashtable file is truncated");
+		}
+		this._size = (int) header.getLong(16);
+		this._pages = new ByteBuffer[pageCount];
+		for (int j = 0; j < pageCount; ++j) {
+			this._pages[j] = this._map(j);
+		}
+	}
+
+	private ByteBuffer _map(int p_j) throws IOException {
+		FileChannel.MapMode mode = this._read_only ? FileChannel.MapMode.READ_ONLY
+				: FileChannel.MapMode.READ_WRITE;
+		return this._channel.map(mode, _HEADER_BYTES + (long) p_j * _PAGE_BYTES, _PAGE_BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void _writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(0, _MAGIC);
+		header.putInt(4, _VERSION);
+		header.putInt(8, _PAGE_SHIFT);
+		header.putInt(12, this._pages.length);
+		header.putLong(16, this._size);
+		while (header.hasRemaining()) {
+			this._channel.write(header, header.position());
+		}
+	}
+
+	ByteBuffer _newPage(int p_j) {
+		try {
+			return this._map(p_j);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * write p_ft to p_file in this class' layout, replacing the file. this
+	 * method will throw IllegalArgumentException if p_ft holds a negative
+	 * key, before the file is touched.
+	 */
+	public static void save(FastHashtable p_ft, Path p_file) throws IOException {
+		if (p_ft.countInRange(Integer.MIN_VALUE, 0) != 0) {
+			throw new IllegalArgumentException("table holds negative keys");
+		}
+		FileChannel.open(p_file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING).close();
+		final MappedFastHashtable mft = new MappedFastHashtable(p_file, false);
+		try {
+			p_ft.forEach(new IntLongConsumer() {
+				public void accept(int p_key, long p_value) {
+					mft.put(p_key, p_value);
+				}
+			});
+		} finally {
+			mft.close();
+		}
+	}
+
+	public boolean isReadOnly() {
+		return this._read_only;
+	}
+
+	/*
+	 * this method will throw for p_key<0 or if the table is read-only.
+	 */
+	public void put(int p_key, long p_value) {
+		if (this._read_only) {
+			throw new IllegalStateException("table is read-only");
+		}
+		super.put(p_key, p_value);
+	}
+
+	/*
+	 * write the header and all changed pages to the file.
+	 */
+	public void force() throws IOException {
+		this._pages();
+		if (this._read_only) {
+			return;
+		}
+		this._writeHeader();
+		for (ByteBuffer p : this._pages) {
+			if (p != null) {
+				((MappedByteBuffer) p).force();
+			}
+		}
+		this._channel.force(false);
+	}
+
+	/*
+	 * force, then unmap the pages and close the file. the file is closed
+	 * and the pages unmapped even if force throws.
+	 */
+	public void close() {
+		if (this._pages == null) {
+			return;
+		}
+		try {
+			try {
+				this.force();
+			} finally {
+				try {
+					this._channel.close();
+				} finally {
+					super.close();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
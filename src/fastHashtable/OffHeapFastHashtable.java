@@ -0,0 +1,44 @@
+package fastHashtable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * A hashtable for int keys and long values with FastHashtable's
+ * put/get/containsKey/size contract, stored in direct ByteBuffers.
+ *
+ * Every page of 2^16 keys is one direct buffer of about 520KB holding its
+ * bitmap and values, allocated on the first put into it. So the heap holds
+ * one buffer object per page and no per-entry objects, whatever the number
+ * of entries, and the garbage collector has nothing to mark inside the
+ * table.
+ *
+ * The native memory is released by close. It is not released by the garbage
+ * collector until the table is unreachable, so tables should be closed, for
+ * example with try-with-resources.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ */
+public class OffHeapFastHashtable extends BufferFastHashtable {
+
+	/*
+	 * default constructor.
+	 */
+	public OffHeapFastHashtable() {
+	}
+
+	/*
+	 * specify the capacity of the object. pages are still allocated on the
+	 * first put into them, this only sizes the page directory.
+	 */
+	public OffHeapFastHashtable(int p_max_entries) {
+		this._pages = new ByteBuffer[(int) (((long) p_max_entries + _PAGE_SIZE - 1) >>> _PAGE_SHIFT)];
+	}
+
+	ByteBuffer _newPage(int p_j) {
+		return ByteBuffer.allocateDirect(_PAGE_BYTES).order(ByteOrder.nativeOrder());
+	}
+
+}
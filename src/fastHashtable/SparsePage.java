@@ -0,0 +1,424 @@
+package fastHashtable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+
+/*
+ * A page of FastHashtableExtender that holds few keys, like the array
+ * containers of Roaring bitmaps: the keys of the page in ascending order in
+ * a char array and their values at the same index in a long array. A lookup
+ * is a binary search over at most _MAX_SIZE keys, which take 10KB.
+ *
+ * A dense page, a FastHashtable of 1<<16 keys, takes about 570KB however
+ * few keys it holds. A sparse page takes 10 bytes a key. The extender
+ * promotes a sparse page to a dense one when a put would take it past
+ * _MAX_SIZE keys, and demotes a dense page when removes take it below
+ * _MAX_SIZE/2 keys, so a page near the threshold does not change kind on
+ * every put and remove.
+ *
+ * Key q of the page must satisfy 0<=q<1<<16.
+ */
+final class SparsePage {
+
+	/*
+	 * the most keys of a sparse page. inserting shifts half the entries on
+	 * average, so the cost of filling a page grows with the square of this.
+	 */
+	static final int _MAX_SIZE = 1024;
+
+	private static final int _MIN_CAPACITY = 4;
+
+	private char[] _keys;
+	private long[] _values;
+
+	/*
+	 * The number of key/value pairs in the page.
+	 */
+	private int _size;
+
+	SparsePage() {
+		this._keys = new char[_MIN_CAPACITY];
+		this._values = new long[_MIN_CAPACITY];
+	}
+
+	private SparsePage(int p_capacity) {
+		p_capacity = Math.max(_MIN_CAPACITY, p_capacity);
+		this._keys = new char[p_capacity];
+		this._values = new long[p_capacity];
+	}
+
+	/*
+	 * a copy of p_page, see FastHashtableExtender.snapshot.
+	 */
+	SparsePage(SparsePage p_page) {
+		this._keys = p_page._keys.clone();
+		this._values = p_page._values.clone();
+		this._size = p_page._size;
+	}
+
+	int size() {
+		return this._size;
+	}
+
+	/*
+	 * the key and the value of entry p_n, in ascending key order.
+	 */
+	int _key(int p_n) {
+		return this._keys[p_n];
+	}
+
+	long _value(int p_n) {
+		return this._values[p_n];
+	}
+
+	/*
+	 * the index of p_q, or -(insertion point)-1 if it is not in the page.
+	 */
+	private int _find(int p_q) {
+		int lo = 0;
+		int hi = this._size - 1;
+		while (lo <= hi) {
+			int middle = (lo + hi) >>> 1;
+			int q = this._keys[middle];
+			if (q < p_q) {
+				lo = middle + 1;
+			} else if (q > p_q) {
+				hi = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(lo + 1);
+	}
+
+	/*
+	 * put p_value at p_q. returns false, and changes nothing, if p_q is not
+	 * in the page and the page is full.
+	 */
+	boolean put(int p_q, long p_value) {
+		int n = this._find(p_q);
+		if (n >= 0) {
+			this._values[n] = p_value;
+			return true;
+		}
+		if (this._size == _MAX_SIZE) {
+			return false;
+		}
+		n = -n - 1;
+		if (this._size == this._keys.length) {
+			int capacity = Math.min(_MAX_SIZE, 2 * this._keys.length);
+			this._keys = Arrays.copyOf(this._keys, capacity);
+			this._values = Arrays.copyOf(this._values, capacity);
+		}
+		System.arraycopy(this._keys, n, this._keys, n + 1, this._size - n);
+		System.arraycopy(this._values, n, this._values, n + 1, this._size - n);
+		this._keys[n] = (char) p_q;
+		this._values[n] = p_value;
+		this._size++;
+		return true;
+	}
+
+	/*
+	 * append an entry with a key above every key of the page.
+	 */
+	void _append(int p_q, long p_value) {
+		if (this._size == this._keys.length) {
+			this._keys = Arrays.copyOf(this._keys, 2 * this._keys.length);
+			this._values = Arrays.copyOf(this._values, 2 * this._values.length);
+		}
+		this._keys[this._size] = (char) p_q;
+		this._values[this._size++] = p_value;
+	}
+
+	boolean containsKey(int p_q) {
+		return this._find(p_q) >= 0;
+	}
+
+	boolean get(int p_q, long[] p_result) {
+		int n = this._find(p_q);
+		if (n < 0) {
+			return false;
+		}
+		p_result[0] = 1;
+		p_result[1] = this._values[n];
+		return true;
+	}
+
+	/*
+	 * returns true if p_q was in the page. the arrays shrink to half when a
+	 * quarter of them is in use.
+	 */
+	boolean remove(int p_q) {
+		int n = this._find(p_q);
+		if (n < 0) {
+			return false;
+		}
+		System.arraycopy(this._keys, n + 1, this._keys, n, this._size - n - 1);
+		System.arraycopy(this._values, n + 1, this._values, n, this._size - n - 1);
+		this._size--;
+		if (this._keys.length > _MIN_CAPACITY && this._size <= this._keys.length / 4) {
+			this._keys = Arrays.copyOf(this._keys, this._keys.length / 2);
+			this._values = Arrays.copyOf(this._values, this._values.length / 2);
+		}
+		return true;
+	}
+
+	/*
+	 * the smallest key >= p_q, or -1.
+	 */
+	int _nextKey(int p_q) {
+		int n = this._find(p_q);
+		if (n >= 0) {
+			return p_q;
+		}
+		n = -n - 1;
+		return n < this._size ? this._keys[n] : -1;
+	}
+
+	/*
+	 * the largest key <= p_q, or -1.
+	 */
+	int _prevKey(int p_q) {
+		int n = this._find(p_q);
+		if (n >= 0) {
+			return p_q;
+		}
+		n = -n - 2;
+		return n >= 0 ? this._keys[n] : -1;
+	}
+
+	/*
+	 * see FastHashtable._forEachInRange. the keys of the page are visited in
+	 * ascending order, or in descending order if p_flip is -1.
+	 */
+	void _forEachInRange(int p_lo, int p_hi, int p_base, int p_flip,
+			IntLongConsumer p_consumer) {
+		int from = this._from(p_lo);
+		int to = this._from(p_hi + 1);
+		if (p_flip == 0) {
+			for (int n = from; n < to; ++n) {
+				p_consumer.accept(p_base + this._keys[n], this._values[n]);
+			}
+		} else {
+			for (int n = to - 1; n >= from; --n) {
+				p_consumer.accept((p_base + this._keys[n]) ^ p_flip, this._values[n]);
+			}
+		}
+	}
+
+	/*
+	 * the number of keys k with p_lo<=k<=p_hi.
+	 */
+	int _countInRange(int p_lo, int p_hi) {
+		return Math.max(0, this._from(p_hi + 1) - this._from(p_lo));
+	}
+
+	/*
+	 * the index of the first key >= p_q.
+	 */
+	private int _from(int p_q) {
+		int n = this._find(p_q);
+		return n >= 0 ? n : -n - 1;
+	}
+
+	/*
+	 * call p_consumer with p_base+q for every key q, in ascending order.
+	 */
+	void forEach(int p_base, IntLongConsumer p_consumer) {
+		for (int n = 0; n < this._size; ++n) {
+			p_consumer.accept(p_base + this._keys[n], this._values[n]);
+		}
+	}
+
+	/*
+	 * p_op applied to p_identity and the values, in key order.
+	 */
+	long _reduce(long p_identity, LongBinaryOperator p_op) {
+		long result = p_identity;
+		for (int n = 0; n < this._size; ++n) {
+			result = p_op.applyAsLong(result, this._values[n]);
+		}
+		return result;
+	}
+
+	/*
+	 * copy the keys plus p_base to p_keys from p_n on. returns the index
+	 * after the last key copied.
+	 */
+	int _keys(int[] p_keys, int p_n, int p_base) {
+		for (int n = 0; n < this._size; ++n) {
+			p_keys[p_n++] = p_base + this._keys[n];
+		}
+		return p_n;
+	}
+
+	int _values(long[] p_values, int p_n) {
+		System.arraycopy(this._values, 0, p_values, p_n, this._size);
+		return p_n + this._size;
+	}
+
+	/*
+	 * a dense page with the entries of this one.
+	 */
+	FastHashtable _toDense(int p_capacity) {
+		FastHashtable ft = new FastHashtable(p_capacity);
+		for (int n = 0; n < this._size; ++n) {
+			ft.put(this._keys[n], this._values[n]);
+		}
+		return ft;
+	}
+
+	/*
+	 * a sparse page with the entries of p_ft, which must have at most
+	 * _MAX_SIZE keys, none negative.
+	 */
+	static SparsePage _of(FastHashtable p_ft) {
+		final SparsePage page = new SparsePage(p_ft.size());
+		p_ft._forEachInRange(0, p_ft.maxKey(), 0, 0, new IntLongConsumer() {
+			public void accept(int p_key, long p_value) {
+				page._append(p_key, p_value);
+			}
+		});
+		return page;
+	}
+
+	/*
+	 * the entries of this page whose key is in p_dense or p_sparse if
+	 * p_keep, or in neither if !p_keep. either page may be null.
+	 */
+	SparsePage _filter(FastHashtable p_dense, SparsePage p_sparse, boolean p_keep) {
+		SparsePage page = new SparsePage(p_keep ? 0 : this._size);
+		for (int n = 0; n < this._size; ++n) {
+			int q = this._keys[n];
+			boolean in = p_dense != null && p_dense.containsKey(q)
+					|| p_sparse != null && p_sparse.containsKey(q);
+			if (in == p_keep) {
+				page._append(q, this._values[n]);
+			}
+		}
+		return page;
+	}
+
+	/*
+	 * the keys of this page that are in p_dense, with the values of p_dense.
+	 */
+	SparsePage _probe(FastHashtable p_dense) {
+		SparsePage page = new SparsePage();
+		long[] r = new long[2];
+		for (int n = 0; n < this._size; ++n) {
+			if (p_dense.get(this._keys[n], r)) {
+				page._append(this._keys[n], r[1]);
+			}
+		}
+		return page;
+	}
+
+	/*
+	 * the keys of p_a or p_b, with the value of p_a if a key is in both. the
+	 * pages are merged in one pass, the result may hold more than _MAX_SIZE
+	 * keys. either page may be null.
+	 */
+	static SparsePage _union(SparsePage p_a, SparsePage p_b) {
+		int a = p_a != null ? p_a._size : 0;
+		int b = p_b != null ? p_b._size : 0;
+		SparsePage page = new SparsePage(a + b);
+		int n = 0;
+		int m = 0;
+		while (n < a || m < b) {
+			int qa = n < a ? p_a._keys[n] : Integer.MAX_VALUE;
+			int qb = m < b ? p_b._keys[m] : Integer.MAX_VALUE;
+			if (qa <= qb) {
+				page._append(qa, p_a._values[n++]);
+				if (qa == qb) {
+					++m;
+				}
+			} else {
+				page._append(qb, p_b._values[m++]);
+			}
+		}
+		return page;
+	}
+
+	/*
+	 * see FastHashtable.getMemoryUsage.
+	 */
+	long getMemoryUsage() {
+		return 24 + 16 + 2L * this._keys.length + 16 + 8L * this._values.length;
+	}
+
+	/*
+	 * the page in the form of FastHashtableExtender.writeTo: the number of
+	 * keys, then the keys and the values, each as deltas in blocks of
+	 * Integer.SIZE with ChunkedOutput.putDeltas.
+	 */
+	void _writeBody(ChunkedOutput p_out) throws IOException {
+		p_out.putInt(this._size);
+		long[] block = new long[Integer.SIZE];
+		long previous = 0;
+		for (int n = 0; n < this._size; n += Integer.SIZE) {
+			int length = Math.min(Integer.SIZE, this._size - n);
+			for (int m = 0; m < length; ++m) {
+				block[m] = this._keys[n + m];
+			}
+			previous = p_out.putDeltas(block, -1 >>> (Integer.SIZE - length), previous);
+		}
+		previous = 0;
+		for (int n = 0; n < this._size; n += Integer.SIZE) {
+			int length = Math.min(Integer.SIZE, this._size - n);
+			System.arraycopy(this._values, n, block, 0, length);
+			previous = p_out.putDeltas(block, -1 >>> (Integer.SIZE - length), previous);
+		}
+	}
+
+	/*
+	 * read a page written by _writeBody. the keys must be ascending and less
+	 * than p_capacity. the page may hold more than _MAX_SIZE keys.
+	 */
+	static SparsePage _readBody(ChunkedInput p_in, int p_capacity) throws IOException {
+		int size = p_in.getInt();
+		if (size < 0 || size > p_capacity) {
+			throw new IOException("corrupt stream, sparse page size " + size);
+		}
+		SparsePage page = new SparsePage(size);
+		long[] block = new long[Integer.SIZE];
+		long previous = 0;
+		for (int n = 0; n < size; n += Integer.SIZE) {
+			int length = Math.min(Integer.SIZE, size - n);
+			previous = p_in.getDeltas(block, -1 >>> (Integer.SIZE - length), previous);
+			for (int m = 0; m < length; ++m) {
+				long q = block[m];
+				if (q < 0 || q >= p_capacity || (n + m > 0 && q <= page._keys[n + m - 1])) {
+					throw new IOException("corrupt stream, sparse page key " + q);
+				}
+				page._keys[n + m] = (char) q;
+			}
+		}
+		previous = 0;
+		for (int n = 0; n < size; n += Integer.SIZE) {
+			int length = Math.min(Integer.SIZE, size - n);
+			previous = p_in.getDeltas(block, -1 >>> (Integer.SIZE - length), previous);
+			System.arraycopy(block, 0, page._values, n, length);
+		}
+		page._size = size;
+		return page;
+	}
+
+	/*
+	 * same format as FastHashtable.toString.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('(');
+		for (int n = 0; n < this._size; ++n) {
+			sb.append('(');
+			sb.append((int) this._keys[n]);
+			sb.append(',');
+			sb.append(this._values[n]);
+			sb.append(')');
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,452 @@
+package fastHashtable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * A FastHashtableExtender for key sets larger than memory whose accesses go
+ * mostly to a hot set of pages. The pages in memory are kept under a budget
+ * of bytes, and the cold ones are spilled to a file.
+ *
+ * Pages are those of FastHashtableExtender: a SparsePage, or a dense
+ * FastHashtable of 1<<16 keys. When the pages in memory take more than the
+ * budget after a put or a fault, cold pages are evicted until they fit:
+ *
+ * 1. which pages are cold is decided by CLOCK. every access to a page in
+ *    memory sets its referenced bit. the hand sweeps the page directory,
+ *    clearing set bits, and evicts the first page whose bit is already
+ *    clear. so a page is evicted only after a full sweep without an access.
+ * 2. an evicted page is written to its slot in the spill file through a
+ *    mapping of the slot. page j has the slot at j*_PAGE_BYTES, in the page
+ *    layout of BufferFastHashtable. a page that was read back and not
+ *    written since still matches its slot, and is dropped without a write.
+ * 3. a put, get or containsKey on an evicted page faults it back in from
+ *    its slot. a page with few keys comes back sparse.
+ *
+ * The page in use is never evicted, so a budget below one page still keeps
+ * one page in memory. The budget counts the pages, see getResidentBytes,
+ * and not the page directory.
+ *
+ * A slot is mapped only while its page is written or read, so spilled pages
+ * take no heap and no address space, only page cache. The spill file is
+ * scratch: it is replaced when the table is created and deleted by close.
+ *
+ * The counters for sizing the budget are always collected, since they cost
+ * one increment per page access: page hits, faults, evictions and spill
+ * writes.
+ *
+ * Requirements:
+ *
+ * 1. Negative ints are not supported.
+ */
+public class SpillingFastHashtableExtender implements Closeable {
+
+	private static final int _PAGE_SHIFT = BufferFastHashtable._PAGE_SHIFT;
+	private static final int _PAGE_SIZE = BufferFastHashtable._PAGE_SIZE;
+	private static final int _BITMAP_BYTES = BufferFastHashtable._BITMAP_BYTES;
+	private static final int _PAGE_BYTES = BufferFastHashtable._PAGE_BYTES;
+
+	private final FileChannel _channel;
+	private final long _budget;
+
+	/*
+	 * the pages in memory, as in FastHashtableExtender. all the arrays have
+	 * the length of the page directory. _array is null after close.
+	 */
+	private FastHashtable[] _array;
+	private SparsePage[] _sparse;
+
+	/*
+	 * the number of keys in slot j if it holds page j, -1 if it does not.
+	 * for a page in memory, -1 means the page changed since it was read.
+	 */
+	private int[] _spilled;
+
+	/*
+	 * the bytes of each page in memory, and the CLOCK bits.
+	 */
+	private long[] _bytes;
+	private boolean[] _referenced;
+	private int _hand;
+
+	private long _resident;
+	private int _resident_pages;
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	private int _size;
+
+	private long _hits;
+	private long _faults;
+	private long _evictions;
+	private long _writes;
+
+	/*
+	 * an empty table that keeps at most p_budget bytes of pages in memory
+	 * and spills to p_file. p_file is replaced.
+	 */
+	public SpillingFastHashtableExtender(Path p_file, long p_budget) throws IOException {
+		this._channel = FileChannel.open(p_file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+		this._budget = p_budget;
+		this._array = new FastHashtable[0];
+		this._sparse = new SparsePage[0];
+		this._spilled = new int[0];
+		this._bytes = new long[0];
+		this._referenced = new boolean[0];
+	}
+
+	private FastHashtable[] _directory() {
+		if (this._array == null) {
+			throw new IllegalStateException("table is closed");
+		}
+		return this._array;
+	}
+
+	private void _growTo(int p_pages) {
+		int pages = this._array.length;
+		this._array = Arrays.copyOf(this._array, p_pages);
+		this._sparse = Arrays.copyOf(this._sparse, p_pages);
+		this._spilled = Arrays.copyOf(this._spilled, p_pages);
+		Arrays.fill(this._spilled, pages, p_pages, -1);
+		this._bytes = Arrays.copyOf(this._bytes, p_pages);
+		this._referenced = Arrays.copyOf(this._referenced, p_pages);
+	}
+
+	/*
+	 * The number of key/value pairs in the hash table.
+	 */
+	public int size() {
+		return this._size;
+	}
+
+	/*
+	 * keys above maxKey() add pages on put.
+	 */
+	public int maxKey() {
+		return this._directory().length * _PAGE_SIZE - 1;
+	}
+
+	/*
+	 * this method will throw for p_key<0.
+	 */
+	public void put(int p_key, long p_value) {
+		if (p_key < 0) {
+			throw new ArrayIndexOutOfBoundsException(p_key);
+		}
+		int j = p_key >>> _PAGE_SHIFT;
+		int q = p_key & (_PAGE_SIZE - 1);
+		if (j >= this._directory().length) {
+			this._growTo(j + 1);
+		}
+		if (!this._touch(j)) {
+			this._sparse[j] = new SparsePage();
+			this._resident_pages++;
+			this._referenced[j] = true;
+		}
+		this._spilled[j] = -1;
+		FastHashtable dense = this._array[j];
+		int before;
+		if (dense == null) {
+			SparsePage sparse = this._sparse[j];
+			before = sparse.size();
+			if (sparse.put(q, p_value)) {
+				this._size += sparse.size() - before;
+				this._account(j);
+				return;
+			}
+			dense = this._array[j] = sparse._toDense(_PAGE_SIZE);
+			this._sparse[j] = null;
+		}
+		before = dense.size();
+		dense.put(q, p_value);
+		this._size += dense.size() - before;
+		this._account(j);
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean containsKey(int p_key) {
+		int j = p_key >>> _PAGE_SHIFT;
+		if (p_key < 0 || j >= this._directory().length || !this._touch(j)) {
+			return false;
+		}
+		int q = p_key & (_PAGE_SIZE - 1);
+		return this._array[j] != null ? this._array[j].containsKey(q)
+				: this._sparse[j].containsKey(q);
+	}
+
+	/*
+	 * this method will not throw with an invalid key. it's always ok to ask.
+	 */
+	public boolean get(int p_key, long[] p_result) {
+		int j = p_key >>> _PAGE_SHIFT;
+		if (p_key < 0 || j >= this._directory().length || !this._touch(j)) {
+			return false;
+		}
+		int q = p_key & (_PAGE_SIZE - 1);
+		return this._array[j] != null ? this._array[j].get(q, p_result)
+				: this._sparse[j].get(q, p_result);
+	}
+
+	/*
+	 * call p_consumer for every key/value pair, page by page, in the order of
+	 * FastHashtableExtender.forEach. spilled pages are read from their slots
+	 * and not faulted in, so a scan neither pushes the hot pages out nor
+	 * counts as an access.
+	 */
+	public void forEach(final IntLongConsumer p_consumer) {
+		FastHashtable[] array = this._directory();
+		for (int j = 0; j < array.length; ++j) {
+			final int base = j << _PAGE_SHIFT;
+			if (array[j] != null) {
+				array[j].forEach(new IntLongConsumer() {
+					public void accept(int p_key, long p_value) {
+						p_consumer.accept(base + p_key, p_value);
+					}
+				});
+			} else if (this._sparse[j] != null) {
+				this._sparse[j].forEach(base, p_consumer);
+			} else if (this._spilled[j] >= 0) {
+				ByteBuffer slot = this._map(j);
+				try {
+					for (int w = 0; w < _BITMAP_BYTES; w += 8) {
+						for (long bits = slot.getLong(w); bits != 0; bits &= bits - 1) {
+							int q = (w << 3) + Long.numberOfTrailingZeros(bits);
+							p_consumer.accept(base + q, slot.getLong(_BITMAP_BYTES + (q << 3)));
+						}
+					}
+				} finally {
+					BufferCleaner.free(slot);
+				}
+			}
+		}
+	}
+
+	/*
+	 * count an access to page j, and fault the page in if it is spilled.
+	 * returns false if page j does not exist.
+	 */
+	private boolean _touch(int j) {
+		if (this._array[j] != null || this._sparse[j] != null) {
+			this._hits++;
+		} else if (this._spilled[j] >= 0) {
+			this._faults++;
+			this._read(j);
+			this._resident_pages++;
+			this._account(j);
+		} else {
+			return false;
+		}
+		this._referenced[j] = true;
+		return true;
+	}
+
+	/*
+	 * update the bytes of page j after a change, then evict other pages
+	 * until the pages in memory fit the budget again.
+	 */
+	private void _account(int j) {
+		FastHashtable dense = this._array[j];
+		long bytes = dense != null ? dense.getMemoryUsage() : this._sparse[j].getMemoryUsage();
+		this._resident += bytes - this._bytes[j];
+		this._bytes[j] = bytes;
+		while (this._resident > this._budget && this._resident_pages > 1) {
+			this._evict(this._victim(j));
+		}
+	}
+
+	/*
+	 * the next page in memory under the hand whose referenced bit is clear,
+	 * skipping page p_keep. there must be such a page besides p_keep.
+	 */
+	private int _victim(int p_keep) {
+		for (;;) {
+			int j = this._hand;
+			this._hand = j + 1 < this._array.length ? j + 1 : 0;
+			if (j == p_keep || (this._array[j] == null && this._sparse[j] == null)) {
+				continue;
+			}
+			if (this._referenced[j]) {
+				this._referenced[j] = false;
+				continue;
+			}
+			return j;
+		}
+	}
+
+	private void _evict(int j) {
+		if (this._spilled[j] < 0) {
+			this._write(j);
+			this._writes++;
+		}
+		this._array[j] = null;
+		this._sparse[j] = null;
+		this._resident -= this._bytes[j];
+		this._bytes[j] = 0;
+		this._resident_pages--;
+		this._referenced[j] = false;
+		this._evictions++;
+	}
+
+	/*
+	 * write page j to its slot.
+	 */
+	private void _write(int j) {
+		final ByteBuffer slot = this._map(j);
+		try {
+			for (int w = 0; w < _BITMAP_BYTES; w += 8) {
+				slot.putLong(w, 0);
+			}
+			IntLongConsumer write = new IntLongConsumer() {
+				public void accept(int p_q, long p_value) {
+					int w = (p_q >>> 6) << 3;
+					slot.putLong(w, slot.getLong(w) | (1L << p_q));
+					slot.putLong(_BITMAP_BYTES + (p_q << 3), p_value);
+				}
+			};
+			FastHashtable dense = this._array[j];
+			if (dense != null) {
+				dense.forEach(write);
+				this._spilled[j] = dense.size();
+			} else {
+				this._sparse[j].forEach(0, write);
+				this._spilled[j] = this._sparse[j].size();
+			}
+		} finally {
+			BufferCleaner.free(slot);
+		}
+	}
+
+	/*
+	 * read page j from its slot, sparse if it has at most
+	 * SparsePage._MAX_SIZE keys.
+	 */
+	private void _read(int j) {
+		ByteBuffer slot = this._map(j);
+		try {
+			SparsePage sparse = this._spilled[j] <= SparsePage._MAX_SIZE ? new SparsePage() : null;
+			FastHashtable dense = sparse == null ? new FastHashtable(_PAGE_SIZE) : null;
+			for (int w = 0; w < _BITMAP_BYTES; w += 8) {
+				for (long bits = slot.getLong(w); bits != 0; bits &= bits - 1) {
+					int q = (w << 3) + Long.numberOfTrailingZeros(bits);
+					long value = slot.getLong(_BITMAP_BYTES + (q << 3));
+					if (sparse != null) {
+						sparse._append(q, value);
+					} else {
+						dense.put(q, value);
+					}
+				}
+			}
+			this._array[j] = dense;
+			this._sparse[j] = sparse;
+		} finally {
+			BufferCleaner.free(slot);
+		}
+	}
+
+	private ByteBuffer _map(int j) {
+		try {
+			return this._channel.map(FileChannel.MapMode.READ_WRITE, (long) j * _PAGE_BYTES,
+					_PAGE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * the budget the table was created with.
+	 */
+	public long getMemoryBudget() {
+		return this._budget;
+	}
+
+	/*
+	 * bytes of the pages in memory, as FastHashtableExtender.getMemoryUsage
+	 * counts them. at most the budget, unless a single page is larger.
+	 */
+	public long getResidentBytes() {
+		return this._resident;
+	}
+
+	public int getResidentPages() {
+		return this._resident_pages;
+	}
+
+	/*
+	 * the pages that exist, in memory or spilled.
+	 */
+	public int getPageCount() {
+		int count = 0;
+		for (int j = 0; j < this._directory().length; ++j) {
+			if (this._array[j] != null || this._sparse[j] != null || this._spilled[j] >= 0) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * accesses to a page that was in memory.
+	 */
+	public long getPageHits() {
+		return this._hits;
+	}
+
+	/*
+	 * accesses to a spilled page, which read it back.
+	 */
+	public long getPageFaults() {
+		return this._faults;
+	}
+
+	/*
+	 * the fraction of page accesses that were hits, 0 before any access.
+	 */
+	public double getHitRate() {
+		long accesses = this._hits + this._faults;
+		return accesses == 0 ? 0 : (double) this._hits / accesses;
+	}
+
+	public long getEvictions() {
+		return this._evictions;
+	}
+
+	/*
+	 * evictions that wrote the page to its slot. the others dropped a page
+	 * that had not changed since it was read.
+	 */
+	public long getSpillWrites() {
+		return this._writes;
+	}
+
+	/*
+	 * drop the pages, then close and delete the spill file. closing a closed
+	 * table does nothing.
+	 */
+	public void close() {
+		if (this._array == null) {
+			return;
+		}
+		this._array = null;
+		this._sparse = null;
+		this._resident = 0;
+		this._resident_pages = 0;
+		try {
+			this._channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}